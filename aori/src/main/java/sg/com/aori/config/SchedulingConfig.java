@@ -0,0 +1,18 @@
+package sg.com.aori.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs, such as the periodic refresh of the
+ * in-memory recommendation indexes.
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
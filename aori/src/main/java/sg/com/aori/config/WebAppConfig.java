@@ -1,9 +1,11 @@
 package sg.com.aori.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.MappedInterceptor;
 
 import sg.com.aori.interceptor.AuthInterceptor;
 
@@ -15,6 +17,10 @@ import sg.com.aori.interceptor.AuthInterceptor;
  * @author Yunhe
  * @date 2025-10-11
  * @version 1.0
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.1 - AuthInterceptor also guards the actuator endpoints
  */
 
 @Component
@@ -29,4 +35,13 @@ public class WebAppConfig implements WebMvcConfigurer {
                 .addPathPatterns("/**");
     }
 
+    /**
+     * Actuator endpoints have their own handler mapping, which does not see
+     * the interceptors added above but does pick up MappedInterceptor beans.
+     */
+    @Bean
+    public MappedInterceptor actuatorAuthInterceptor() {
+        return new MappedInterceptor(new String[] { AuthInterceptor.ACTUATOR_PATH_PREFIX + "/**" }, authInterceptor);
+    }
+
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.validation.BindingResult;
 
+import sg.com.aori.dto.SkuMatrixDTO;
 import sg.com.aori.model.Category;
 import sg.com.aori.model.Product;
 import sg.com.aori.repository.CategoryRepository;
@@ -46,6 +47,11 @@ import sg.com.aori.utils.SkuTool;
  * @author Ying Chun
  * @date 2025-10-14
  * @version 2.3 - Added SKU quantity fetching for product view page.
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 2.4 - SKU quantities read from one stock matrix query instead of
+ *          one query (and possibly an insert) per colour and size
  */
 
 @Controller
@@ -223,14 +229,11 @@ public class AdminProductController {
 			System.out.println("[AdminProductController] Edit Form - Colors: " + colors);
 			System.out.println("[AdminProductController] Edit Form - Sizes: " + sizes);
 
+			SkuMatrixDTO stock = skuService.getStockMatrix(product);
 			for (String color : colors) {
 				Map<String, Integer> sizeQuantityMap = new LinkedHashMap<>();
 				for (String size : sizes) {
-					String sku = SkuTool.createSku(product.getProductId(), color.replace("#", ""), size,
-							productService);
-					int quantity = skuService.getQuantity(sku);
-					System.out.println("[AdminProductController] Edit Form - SKU: " + sku + " = " + quantity);
-					sizeQuantityMap.put(size, quantity);
+					sizeQuantityMap.put(size, stock.quantityOf(color, size));
 				}
 				skuQuantities.put(color, sizeQuantityMap);
 			}
@@ -284,19 +287,15 @@ public class AdminProductController {
 			List<String> colors = product.getColorsAsList();
 			List<String> sizes = product.getSizesAsList();
 
+			SkuMatrixDTO stock = skuService.getStockMatrix(product);
 			for (String color : colors) {
 				Map<String, Integer> sizeQuantityMap = new HashMap<>();
 				for (String size : sizes) {
-					String sku = SkuTool.createSku(product.getProductId(), color.replace("#", ""), size,
-							productService);
-					int quantity = skuService.getQuantity(sku);
-					System.out.println("[AdminProductController] Fetched quantity for SKU: " + sku + " = " + quantity);
-					sizeQuantityMap.put(size, quantity);
-
+					sizeQuantityMap.put(size, stock.quantityOf(color, size));
 				}
 				skuQuantities.put(color, sizeQuantityMap);
-				System.out.println("[AdmninProductController] SKU Quantities: " + skuQuantities);
 			}
+			System.out.println("[AdminProductController] SKU Quantities: " + skuQuantities);
 			model.addAttribute("skuQuantities", skuQuantities);
 
 			model.addAttribute("activePage", "products");
@@ -0,0 +1,98 @@
+/**
+ * Controller for search diagnostics in the Admin Portal.
+ * Employee access is checked by AuthInterceptor for every /admin path.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Search analytics: top and zero-result queries, totals, and
+ *          cache pre-warming
+ */
+
+package sg.com.aori.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import sg.com.aori.service.ProductSearchService;
+import sg.com.aori.service.SearchAnalytics;
+import sg.com.aori.service.SearchResultCache;
+import sg.com.aori.utils.SpaceSaving;
+
+@RestController
+@RequestMapping("/admin/search")
+public class AdminSearchController {
+
+    private static final int MAX_QUERIES = 200;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private SearchAnalytics searchAnalytics;
+
+    @Autowired
+    private ProductSearchService productSearchService;
+
+    /**
+     * Search result cache counters: size, hit ratio, evictions,
+     * invalidations and average load time.
+     */
+    @GetMapping("/cache")
+    public Map<String, Object> getCacheStats() {
+        return searchResultCache.getStats();
+    }
+
+    /**
+     * Drop every cached search result.
+     */
+    @DeleteMapping("/cache")
+    public Map<String, Object> clearCache() {
+        searchResultCache.clear();
+        System.out.println("[AdminSearchController] Search result cache cleared");
+        return searchResultCache.getStats();
+    }
+
+    /**
+     * Re-run the most searched queries so their first pages are cached again.
+     */
+    @PostMapping("/cache/prewarm")
+    public Map<String, Object> prewarmCache() {
+        productSearchService.prewarmCache();
+        return searchResultCache.getStats();
+    }
+
+    /**
+     * Search counts since startup: searches, zero-result rate, average hits
+     * and latency.
+     */
+    @GetMapping("/analytics")
+    public Map<String, Object> getAnalytics() {
+        return searchAnalytics.getTotals();
+    }
+
+    /**
+     * Most searched queries since startup, with estimated counts.
+     */
+    @GetMapping("/top-queries")
+    public List<SpaceSaving.Counter> getTopQueries(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_QUERIES) {
+            limit = MAX_QUERIES;
+        }
+        return searchAnalytics.getTopQueries(limit);
+    }
+
+    /**
+     * Most searched queries that found nothing, since startup.
+     */
+    @GetMapping("/zero-results")
+    public List<SpaceSaving.Counter> getZeroResultQueries(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_QUERIES) {
+            limit = MAX_QUERIES;
+        }
+        return searchAnalytics.getZeroResultQueries(limit);
+    }
+}
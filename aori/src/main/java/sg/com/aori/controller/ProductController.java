@@ -5,10 +5,18 @@ import java.util.Optional;
 import jakarta.validation.constraints.NotBlank;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import sg.com.aori.dto.ProductCardPageDTO;
+import sg.com.aori.dto.ProductDetailDTO;
 import sg.com.aori.model.Product;
 import sg.com.aori.service.CRUDProductService;
 
@@ -30,6 +38,16 @@ import sg.com.aori.service.CRUDProductService;
  * @author Yunhe
  * @date 2025-10-13
  * @version 3.0 added recommendation APIs
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 3.1 added "frequently bought together" API
+ * @version 3.2 added blended home-feed recommendation API
+ * @version 3.3 personalized recommendations are served from precomputed lists
+ * @version 3.4 added paged product card listing; the full listing is
+ *          deprecated
+ * @version 3.5 getProductById no longer recomputes and saves the stock total
+ * @version 3.6 added aggregate product detail API with ETag revalidation
  */
 
 @CrossOrigin
@@ -45,7 +63,16 @@ public class ProductController {
     private sg.com.aori.service.ProductRecommendationService recommendationService;
 
     @Autowired
-    private sg.com.aori.service.SkuService skuService;
+    private sg.com.aori.service.RecommendationFeedService recommendationFeedService;
+
+    @Autowired
+    private sg.com.aori.service.PrecomputedRecommendationService precomputedRecommendationService;
+
+    @Autowired
+    private sg.com.aori.service.ProductDetailService productDetailService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     String collectionDisplay = "Shizen";
 
@@ -59,7 +86,10 @@ public class ProductController {
      * 
      * @param category Optional category slug or categoryId to filter products
      * @return List of products
+     * @deprecated Loads and serializes the whole catalog as entities; use
+     *             {@link #getProductCards} instead
      */
+    @Deprecated
     @GetMapping()
     public Optional<List<Product>> getAllProducts(
             @org.springframework.web.bind.annotation.RequestParam(required = false) String category) {
@@ -81,6 +111,25 @@ public class ProductController {
         return products;
     }
 
+    /**
+     * Get one page of product cards (id, name, price, image, rating, stock
+     * flag and category slug), ordered by name.
+     * Example: GET /api/products/cards?category=mens-shirts&limit=24, then
+     * pass the returned nextCursor as cursor for the next page.
+     *
+     * @param category Optional category slug or categoryId
+     * @param cursor   nextCursor from the previous page
+     * @param limit    Cards per page (default 24, max 100)
+     * @return The cards and the cursor of the next page (null on the last)
+     */
+    @GetMapping("/cards")
+    public ProductCardPageDTO getProductCards(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "24") int limit) {
+        return crudProductService.getProductCards(category, cursor, limit);
+    }
+
     /**
      * Get a product by ID.
      * Example response:
@@ -123,12 +172,41 @@ public class ProductController {
             @PathVariable @NotBlank(message = "Product ID Cannot be empty") String id) {
         System.out.println("[ProductController] Fetching product with ID: " + id);
         Optional<Product> product = crudProductService.getProductById(id);
-        product.ifPresent(p -> skuService.updateProductStockQuantityById(p.getProductId()));
-
         return product.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Get everything the product page shows in one call: the product, its
+     * colour x size stock matrix, rating average and buckets, approved reviews
+     * and (for a signed-in customer) whether it is wishlisted.
+     * 
+     * The response carries an ETag of its content; a request whose
+     * If-None-Match matches gets 304 Not Modified without a body.
+     * 
+     * @param id      The product ID
+     * @param session HTTP session, for the customer ID
+     * @return The product detail, or 404 if the product does not exist
+     */
+    @GetMapping(value = "/{id}/detail", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getProductDetail(
+            @PathVariable @NotBlank(message = "Product ID Cannot be empty") String id,
+            jakarta.servlet.http.HttpSession session) throws JsonProcessingException {
+        String customerId = (String) session.getAttribute("id");
+        Optional<ProductDetailDTO> detail = productDetailService.getDetail(id, customerId);
+        if (detail.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        byte[] body = objectMapper.writeValueAsBytes(detail.get());
+        String etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        // per-customer (wishlist), so only the browser may keep it, and must revalidate
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body);
+    }
+
     /**
      * Get personalized product recommendations based on user purchase history
      * 
@@ -140,6 +218,10 @@ public class ProductController {
      * 5. Only includes products that are in stock (stockQuantity > 0)
      * 
      * If no purchase history exists, returns popular products (highest rated)
+     * 
+     * Lists are precomputed in the background and served from the
+     * recommendation store; customers without an up-to-date list are computed
+     * on demand
      *
      * @param customerId The customer UUID from session or query parameter
      * @param limit      Maximum number of recommendations (default: 10, max: 50)
@@ -169,12 +251,45 @@ public class ProductController {
 
         System.out.println(
                 "[ProductController] Getting recommendations for customer: " + customerId + ", limit: " + limit);
-        List<Product> recommendations = recommendationService.getRecommendations(customerId, limit);
+        List<Product> recommendations = precomputedRecommendationService.getRecommendations(customerId, limit);
         System.out.println("[ProductController] Found " + recommendations.size() + " recommendations");
 
         return ResponseEntity.ok(recommendations);
     }
 
+    /**
+     * Get the blended home feed: purchase, cart, view-history and popular
+     * recommendations computed in one call, de-duplicated and interleaved.
+     * Replaces separate calls to the individual recommendation endpoints.
+     * 
+     * @param customerId Optional customer ID (will use session if not provided)
+     * @param limit      Maximum number of products per section and in the
+     *                   blended list (default: 20, max: 50)
+     * @param session    HTTP session
+     * @return Blended list plus the per-source sections
+     */
+    @GetMapping("/recommendations/feed")
+    public ResponseEntity<sg.com.aori.dto.RecommendationFeedDTO> getRecommendationFeed(
+            @RequestParam(required = false) String customerId,
+            @RequestParam(defaultValue = "20") int limit,
+            jakarta.servlet.http.HttpSession session) {
+
+        if (limit < 1)
+            limit = 20;
+        if (limit > 50)
+            limit = 50;
+
+        if (customerId == null || customerId.trim().isEmpty()) {
+            customerId = (String) session.getAttribute("id");
+        }
+
+        sg.com.aori.dto.RecommendationFeedDTO feed = recommendationFeedService.getFeed(customerId, limit);
+        System.out.println("[ProductController] Built recommendation feed with " + feed.getItems().size()
+                + " items, fallbacks: " + feed.getFallbackSources());
+
+        return ResponseEntity.ok(feed);
+    }
+
     /**
      * Get product recommendations based on cart contents
      * 
@@ -285,6 +400,28 @@ public class ProductController {
         return ResponseEntity.ok(similarProducts);
     }
 
+    /**
+     * Get products frequently bought together with a specific product
+     * Served from the in-memory co-purchase matrix, so it adds no database load
+     * to the product detail page
+     * 
+     * @param productId The product ID
+     * @param limit     Maximum number of products (default: 8, max: 20)
+     * @return List of products most often bought in the same orders
+     */
+    @GetMapping("/{productId}/bought-together")
+    public ResponseEntity<List<Product>> getBoughtTogether(
+            @PathVariable String productId,
+            @RequestParam(defaultValue = "8") int limit) {
+
+        if (limit < 1)
+            limit = 8;
+        if (limit > 20)
+            limit = 20;
+
+        return ResponseEntity.ok(recommendationService.getBoughtTogether(productId, limit));
+    }
+
     /**
      * Get product recommendations based on user's browsing/view history
      * 
@@ -4,11 +4,20 @@ import java.math.BigDecimal;
 import java.util.List;
 import jakarta.validation.constraints.Size;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
-import sg.com.aori.model.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import sg.com.aori.dto.ProductSearchResultDTO;
+import sg.com.aori.dto.SuggestionDTO;
 import sg.com.aori.service.ProductSearchService;
+import sg.com.aori.service.ProductSuggestService;
+import sg.com.aori.service.SearchMetrics;
 
 /**
  * Controller for product search and detail endpoints.
@@ -16,6 +25,15 @@ import sg.com.aori.service.ProductSearchService;
  * @author Lei Nuozhen
  * @date 2025-10-08
  * @version 1.0
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.1 - Search returns items plus facet counts
+ * @version 1.2 - Keyset paging via cursor and limit (max 100)
+ * @version 1.3 - Added typeahead suggestions
+ * @version 1.4 - Search serializes its own response so the JSON write is timed
+ *          with the other search stages
+ * @version 1.5 - The search trace is finished even when the search fails
  */
 
 @RestController
@@ -25,18 +43,50 @@ public class ProductSearchController {
 
     private final ProductSearchService productSearchService;
 
-    public ProductSearchController(ProductSearchService productSearchService) {
+    private final ProductSuggestService productSuggestService;
+
+    private final SearchMetrics searchMetrics;
+
+    private final ObjectMapper objectMapper;
+
+    public ProductSearchController(ProductSearchService productSearchService,
+            ProductSuggestService productSuggestService, SearchMetrics searchMetrics, ObjectMapper objectMapper) {
         this.productSearchService = productSearchService;
+        this.productSuggestService = productSuggestService;
+        this.searchMetrics = searchMetrics;
+        this.objectMapper = objectMapper;
     }
 
-    @GetMapping("/search")
-    public List<Product> search(
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] search(
             @RequestParam(name = "q", required = false) @Size(max = 120) String q,
             @RequestParam(name = "category", required = false) String category,
             @RequestParam(name = "color", required = false) String color,
             @RequestParam(name = "size", required = false) String size,
             @RequestParam(name = "priceMin", required = false) BigDecimal priceMin,
-            @RequestParam(name = "priceMax", required = false) BigDecimal priceMax) {
-        return productSearchService.search(q, category, color, size, priceMin, priceMax);
+            @RequestParam(name = "priceMax", required = false) BigDecimal priceMax,
+            @RequestParam(name = "cursor", required = false) @Size(max = 256) String cursor,
+            @RequestParam(name = "limit", defaultValue = "" + ProductSearchService.DEFAULT_PAGE_SIZE) int limit) {
+        SearchMetrics.Trace trace = searchMetrics.start();
+        try {
+            ProductSearchResultDTO result = productSearchService.search(q, category, color, size, priceMin,
+                    priceMax, cursor, limit, trace);
+
+            trace.begin();
+            byte[] body = objectMapper.writeValueAsBytes(result);
+            trace.end(SearchMetrics.Stage.SERIALIZE);
+            return body;
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not write search results", e);
+        } finally {
+            searchMetrics.finish(trace);
+        }
+    }
+
+    @GetMapping("/suggest")
+    public List<SuggestionDTO> suggest(
+            @RequestParam(name = "prefix") @Size(max = 60) String prefix,
+            @RequestParam(name = "limit", defaultValue = "8") int limit) {
+        return productSuggestService.suggest(prefix, limit);
     }
-}
\ No newline at end of file
+}
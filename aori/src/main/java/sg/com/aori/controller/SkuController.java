@@ -2,7 +2,9 @@ package sg.com.aori.controller;
 
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 
+import sg.com.aori.dto.SkuMatrixDTO;
 import sg.com.aori.service.CRUDProductService;
 import sg.com.aori.service.SkuService;
 import sg.com.aori.utils.SkuTool;
@@ -18,6 +20,10 @@ import sg.com.aori.utils.SkuTool;
  * @date 2025-10-15
  * @version 1.1 - SKU operations now automatically update product stock quantity
  *          by calculating the sum of all SKU quantities for that product
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.2 - Added stock matrix API
  */
 
 @RestController
@@ -59,6 +65,22 @@ public class SkuController {
         return skuService.getQuantity(sku);
     }
 
+    /**
+     * Stock of every colour and size of a product in one call, instead of one
+     * /sku call per combination. Combinations without a SKU read as zero.
+     * 
+     * @param id product UUID
+     * @return colors (hex without #), sizes and quantities[color][size], or
+     *         404 if the product does not exist
+     */
+    @GetMapping("sku/matrix")
+    public ResponseEntity<SkuMatrixDTO> getSkuMatrix(@RequestParam String id) {
+        return productService.getProductById(id)
+                .map(skuService::getStockMatrix)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Checkout (decrease by 1) the quantity of a specific SKU.
      * Automatically updates the product's total stock quantity after operation.
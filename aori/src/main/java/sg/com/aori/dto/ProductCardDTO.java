@@ -0,0 +1,68 @@
+package sg.com.aori.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * The fields a product card in a listing shows, selected directly by a
+ * projection query instead of loading the Product entity and its category.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class ProductCardDTO {
+
+    private final String productId;
+
+    private final String productName;
+
+    private final BigDecimal price;
+
+    private final String image;
+
+    private final Float rating;
+
+    private final boolean inStock;
+
+    private final String categorySlug;
+
+    public ProductCardDTO(String productId, String productName, BigDecimal price, String image, Float rating,
+            Integer stockQuantity, String categorySlug) {
+        this.productId = productId;
+        this.productName = productName;
+        this.price = price;
+        this.image = image;
+        this.rating = rating;
+        this.inStock = stockQuantity != null && stockQuantity > 0;
+        this.categorySlug = categorySlug;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public Float getRating() {
+        return rating;
+    }
+
+    public boolean isInStock() {
+        return inStock;
+    }
+
+    public String getCategorySlug() {
+        return categorySlug;
+    }
+}
@@ -0,0 +1,36 @@
+package sg.com.aori.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the product listing and the token for the next page.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class ProductCardPageDTO {
+
+    private List<ProductCardDTO> items = new ArrayList<>();
+
+    // opaque token for the next page; null on the last page
+    private String nextCursor;
+
+    public List<ProductCardDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<ProductCardDTO> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,83 @@
+package sg.com.aori.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sg.com.aori.model.Product;
+
+/**
+ * Response of the product detail endpoint: everything the product page shows,
+ * in one payload.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class ProductDetailDTO {
+
+    private Product product;
+
+    private SkuMatrixDTO stock;
+
+    private double averageRating;
+
+    // rating 1..5 -> number of reviews
+    private Map<Integer, Long> ratingBuckets = new LinkedHashMap<>();
+
+    // approved reviews, newest first
+    private List<Map<String, Object>> reviews = new ArrayList<>();
+
+    // null for anonymous visitors
+    private Boolean wishlisted;
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+
+    public SkuMatrixDTO getStock() {
+        return stock;
+    }
+
+    public void setStock(SkuMatrixDTO stock) {
+        this.stock = stock;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public Map<Integer, Long> getRatingBuckets() {
+        return ratingBuckets;
+    }
+
+    public void setRatingBuckets(Map<Integer, Long> ratingBuckets) {
+        this.ratingBuckets = ratingBuckets;
+    }
+
+    public List<Map<String, Object>> getReviews() {
+        return reviews;
+    }
+
+    public void setReviews(List<Map<String, Object>> reviews) {
+        this.reviews = reviews;
+    }
+
+    public Boolean getWishlisted() {
+        return wishlisted;
+    }
+
+    public void setWishlisted(Boolean wishlisted) {
+        this.wishlisted = wishlisted;
+    }
+}
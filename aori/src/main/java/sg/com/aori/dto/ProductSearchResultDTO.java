@@ -0,0 +1,64 @@
+package sg.com.aori.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sg.com.aori.model.Product;
+
+/**
+ * Response of the product search endpoint: one page of matching products, the
+ * total number of matches, the token for the next page and, for the filter
+ * panel, how many matches have each category, colour, size and price band.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Added total and nextCursor for keyset paging
+ */
+
+public class ProductSearchResultDTO {
+
+    private List<Product> items = new ArrayList<>();
+
+    private int total;
+
+    // opaque token for the next page; null on the last page
+    private String nextCursor;
+
+    // facet name ("category", "color", "size", "price") -> value -> count
+    private Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+
+    public List<Product> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Product> items) {
+        this.items = items;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Integer>> facets) {
+        this.facets = facets;
+    }
+}
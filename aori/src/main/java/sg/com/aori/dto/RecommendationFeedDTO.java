@@ -0,0 +1,62 @@
+package sg.com.aori.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sg.com.aori.model.Product;
+
+/**
+ * Response of the home-feed recommendation endpoint: one blended, de-duplicated
+ * list plus the per-source sections it was built from.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class RecommendationFeedDTO {
+
+    private String customerId;
+
+    private List<Product> items = new ArrayList<>();
+
+    private Map<String, List<Product>> sections = new LinkedHashMap<>();
+
+    // sources that failed or missed their latency budget and were replaced
+    // with popular products
+    private List<String> fallbackSources = new ArrayList<>();
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public List<Product> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Product> items) {
+        this.items = items;
+    }
+
+    public Map<String, List<Product>> getSections() {
+        return sections;
+    }
+
+    public void setSections(Map<String, List<Product>> sections) {
+        this.sections = sections;
+    }
+
+    public List<String> getFallbackSources() {
+        return fallbackSources;
+    }
+
+    public void setFallbackSources(List<String> fallbackSources) {
+        this.fallbackSources = fallbackSources;
+    }
+}
@@ -0,0 +1,77 @@
+package sg.com.aori.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stock of every colour and size of a product: quantities[c][s] is the
+ * quantity of colors[c] in sizes[s], zero where no SKU exists.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Added quantityOf for callers keyed by declared colour/size
+ */
+
+public class SkuMatrixDTO {
+
+    // hex codes without '#', as used in SKUs
+    private List<String> colors = new ArrayList<>();
+
+    private List<String> sizes = new ArrayList<>();
+
+    private int[][] quantities = new int[0][0];
+
+    private int total;
+
+    public List<String> getColors() {
+        return colors;
+    }
+
+    public void setColors(List<String> colors) {
+        this.colors = colors;
+    }
+
+    public List<String> getSizes() {
+        return sizes;
+    }
+
+    public void setSizes(List<String> sizes) {
+        this.sizes = sizes;
+    }
+
+    public int[][] getQuantities() {
+        return quantities;
+    }
+
+    public void setQuantities(int[][] quantities) {
+        this.quantities = quantities;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    /**
+     * Quantity of one colour (with or without '#') and size, matched
+     * case-insensitively; zero if either is not in the matrix.
+     */
+    public int quantityOf(String color, String size) {
+        int c = indexOf(colors, color.startsWith("#") ? color.substring(1) : color);
+        int s = indexOf(sizes, size);
+        return c < 0 || s < 0 ? 0 : quantities[c][s];
+    }
+
+    private static int indexOf(List<String> axis, String value) {
+        for (int i = 0; i < axis.size(); i++) {
+            if (axis.get(i).equalsIgnoreCase(value.trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
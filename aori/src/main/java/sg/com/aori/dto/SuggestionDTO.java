@@ -0,0 +1,38 @@
+package sg.com.aori.dto;
+
+/**
+ * One typeahead suggestion: a product name, category name or collection.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class SuggestionDTO {
+
+    private final String text;
+
+    // "product", "category" or "collection"
+    private final String type;
+
+    // product ID or category slug; null for collections
+    private final String id;
+
+    public SuggestionDTO(String text, String type, String id) {
+        this.text = text;
+        this.type = type;
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
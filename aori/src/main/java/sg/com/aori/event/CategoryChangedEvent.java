@@ -0,0 +1,46 @@
+package sg.com.aori.event;
+
+/**
+ * Published whenever a category is created, updated or deleted, so that
+ * in-memory caches depending on category data can refresh.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class CategoryChangedEvent {
+
+    private final String categoryId;
+
+    private final boolean deleted;
+
+    public CategoryChangedEvent(String categoryId, boolean deleted) {
+        this.categoryId = categoryId;
+        this.deleted = deleted;
+    }
+
+    public static CategoryChangedEvent saved(String categoryId) {
+        return new CategoryChangedEvent(categoryId, false);
+    }
+
+    public static CategoryChangedEvent deleted(String categoryId) {
+        return new CategoryChangedEvent(categoryId, true);
+    }
+
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "categoryId='" + categoryId + '\'' +
+                ", deleted=" + deleted +
+                '}';
+    }
+}
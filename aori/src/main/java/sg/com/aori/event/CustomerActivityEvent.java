@@ -0,0 +1,41 @@
+package sg.com.aori.event;
+
+/**
+ * Published when a customer's cart changes or they view a product, so that
+ * per-customer derived data (such as stored recommendation lists) can be
+ * marked out of date.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class CustomerActivityEvent {
+
+    public enum Type {
+        CART_CHANGED,
+        PRODUCT_VIEWED
+    }
+
+    private final Type type;
+
+    private final String customerId;
+
+    public CustomerActivityEvent(Type type, String customerId) {
+        this.type = type;
+        this.customerId = customerId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    @Override
+    public String toString() {
+        return "CustomerActivityEvent{type=" + type + ", customerId=" + customerId + "}";
+    }
+}
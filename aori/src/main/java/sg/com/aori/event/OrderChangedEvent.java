@@ -0,0 +1,69 @@
+package sg.com.aori.event;
+
+import java.util.List;
+
+/**
+ * Published when an order is placed, cancelled, returned or set back to an
+ * active status after being cancelled or returned, carrying the
+ * product ID of every order line so that per-customer caches can be updated
+ * incrementally after the transaction commits.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Add REACTIVATED
+ */
+
+public class OrderChangedEvent {
+
+    public enum Type {
+        PLACED,
+        CANCELLED,
+        RETURNED,
+        REACTIVATED
+    }
+
+    private final Type type;
+
+    private final String customerId;
+
+    private final String orderId;
+
+    private final List<String> productIds;
+
+    public OrderChangedEvent(Type type, String customerId, String orderId, List<String> productIds) {
+        this.type = type;
+        this.customerId = customerId;
+        this.orderId = orderId;
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    /**
+     * One entry per order line, so a product bought on two lines appears twice.
+     */
+    public List<String> getProductIds() {
+        return productIds;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "type=" + type +
+                ", customerId='" + customerId + '\'' +
+                ", orderId='" + orderId + '\'' +
+                ", productIds=" + productIds +
+                '}';
+    }
+}
@@ -0,0 +1,47 @@
+package sg.com.aori.event;
+
+/**
+ * Published whenever a product row is created, updated (including stock
+ * quantity changes) or deleted, so that in-memory product indexes can
+ * refresh the affected entry instead of re-reading the whole catalog.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class ProductChangedEvent {
+
+    private final String productId;
+
+    private final boolean deleted;
+
+    public ProductChangedEvent(String productId, boolean deleted) {
+        this.productId = productId;
+        this.deleted = deleted;
+    }
+
+    public static ProductChangedEvent saved(String productId) {
+        return new ProductChangedEvent(productId, false);
+    }
+
+    public static ProductChangedEvent deleted(String productId) {
+        return new ProductChangedEvent(productId, true);
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "productId='" + productId + '\'' +
+                ", deleted=" + deleted +
+                '}';
+    }
+}
@@ -0,0 +1,61 @@
+package sg.com.aori.event;
+
+/**
+ * Published whenever a SKU row (PRODUCTCODE&COLOR&SIZE) is created or its
+ * quantity changes, so that in-memory variant indexes can refresh that SKU
+ * and the product's stock total can be adjusted by the change.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Added delta, the change in quantity
+ */
+
+public class SkuChangedEvent {
+
+    private final String sku;
+
+    private final int quantity;
+
+    // new quantity minus old quantity
+    private final int delta;
+
+    public SkuChangedEvent(String sku, int quantity) {
+        this(sku, quantity, 0);
+    }
+
+    public SkuChangedEvent(String sku, int quantity, int delta) {
+        this.sku = sku;
+        this.quantity = quantity;
+        this.delta = delta;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    /**
+     * @return The product code part of the SKU
+     */
+    public String getProductCode() {
+        int amp = sku.indexOf('&');
+        return amp < 0 ? sku : sku.substring(0, amp);
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "sku='" + sku + '\'' +
+                ", quantity=" + quantity +
+                ", delta=" + delta +
+                '}';
+    }
+}
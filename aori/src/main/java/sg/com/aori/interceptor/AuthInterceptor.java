@@ -34,6 +34,10 @@ import sg.com.aori.config.DebugMode;
  * @author Yunhe
  * @date 2025-10-09
  * @version 3.1 - Optimized
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 3.2 - Actuator endpoints require an employee session
  */
 
 @Component
@@ -46,6 +50,8 @@ public class AuthInterceptor implements HandlerInterceptor {
 
     private static final String EMPLOYEE_PATH_PREFIX = "/api/permissions";
 
+    public static final String ACTUATOR_PATH_PREFIX = "/actuator";
+
     @Override
     public boolean preHandle(HttpServletRequest request,
             HttpServletResponse response, Object handler) throws Exception {
@@ -67,7 +73,8 @@ public class AuthInterceptor implements HandlerInterceptor {
             return true;
         }
 
-        if (path.startsWith(EMPLOYEE_PATH_PREFIX) || path.contains("/admin")) {
+        if (path.startsWith(EMPLOYEE_PATH_PREFIX) || path.contains("/admin")
+                || path.startsWith(ACTUATOR_PATH_PREFIX)) {
             return AuthHandler.handleEmployeeAccess(request, response, handler, employeeService);
         }
 
@@ -0,0 +1,35 @@
+package sg.com.aori.interfaces;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Key-value store of precomputed recommendation lists (product IDs, best
+ * first), keyed by customer ID.
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public interface IRecommendationStore {
+
+    /**
+     * @return The stored list, or null if there is none or it is stale
+     */
+    List<String> get(String customerId);
+
+    /**
+     * Store a list. Ignored if the customer was marked stale after
+     * computedAt, since the list no longer reflects their activity.
+     * 
+     * @param computedAt System.currentTimeMillis() taken before computing
+     */
+    void put(String customerId, List<String> productIds, long computedAt);
+
+    void markStale(String customerId);
+
+    Set<String> getStaleCustomers();
+
+    int size();
+}
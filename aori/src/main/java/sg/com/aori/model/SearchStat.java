@@ -0,0 +1,152 @@
+package sg.com.aori.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import jakarta.persistence.*;
+
+/**
+ * One rollup row of search analytics for a time window.
+ *
+ * A TOTAL row holds the window's overall counts; TOP and ZERO_RESULT rows
+ * hold the estimated count of one frequent query, or one frequent query that
+ * matched nothing, with the most that estimate may be overcounted by.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Entity
+@Table(name = "search_stats", indexes = {
+        @Index(name = "idx_ss_kind_period", columnList = "kind, period_start")
+})
+public class SearchStat {
+
+    public enum Kind {
+        TOTAL,
+        TOP,
+        ZERO_RESULT
+    }
+
+    @Id
+    @Column(name = "stat_id", length = 36, nullable = false)
+    private String statId = UUID.randomUUID().toString();
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDateTime periodStart;
+
+    @Column(name = "period_end", nullable = false)
+    private LocalDateTime periodEnd;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", length = 16, nullable = false)
+    private Kind kind;
+
+    @Column(name = "query_text", length = 120)
+    private String query;
+
+    @Column(name = "searches", nullable = false)
+    private long searches;
+
+    @Column(name = "count_error", nullable = false)
+    private long countError;
+
+    @Column(name = "zero_results", nullable = false)
+    private long zeroResults;
+
+    @Column(name = "total_results", nullable = false)
+    private long totalResults;
+
+    @Column(name = "total_latency_ms", nullable = false)
+    private double totalLatencyMs;
+
+    public SearchStat() {
+    }
+
+    public SearchStat(Kind kind, String query, LocalDateTime periodStart, LocalDateTime periodEnd) {
+        this.kind = kind;
+        this.query = query;
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd;
+    }
+
+    public String getStatId() {
+        return statId;
+    }
+
+    public void setStatId(String statId) {
+        this.statId = statId;
+    }
+
+    public LocalDateTime getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(LocalDateTime periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public LocalDateTime getPeriodEnd() {
+        return periodEnd;
+    }
+
+    public void setPeriodEnd(LocalDateTime periodEnd) {
+        this.periodEnd = periodEnd;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    public void setSearches(long searches) {
+        this.searches = searches;
+    }
+
+    public long getCountError() {
+        return countError;
+    }
+
+    public void setCountError(long countError) {
+        this.countError = countError;
+    }
+
+    public long getZeroResults() {
+        return zeroResults;
+    }
+
+    public void setZeroResults(long zeroResults) {
+        this.zeroResults = zeroResults;
+    }
+
+    public long getTotalResults() {
+        return totalResults;
+    }
+
+    public void setTotalResults(long totalResults) {
+        this.totalResults = totalResults;
+    }
+
+    public double getTotalLatencyMs() {
+        return totalLatencyMs;
+    }
+
+    public void setTotalLatencyMs(double totalLatencyMs) {
+        this.totalLatencyMs = totalLatencyMs;
+    }
+}
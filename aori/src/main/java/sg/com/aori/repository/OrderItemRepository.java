@@ -1,5 +1,7 @@
 package sg.com.aori.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -8,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import sg.com.aori.model.OrderItem;
+import sg.com.aori.model.Orders;
 
 /**
  * @author Jiayi
@@ -21,6 +24,12 @@ import sg.com.aori.model.OrderItem;
  * @author Yibai
  * @date 2025-10-10
  * @version 1.2 - Aded findByOrderId
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.3 - Added countPurchasedProductsByCustomer projection
+ * @version 1.4 - Added findOrderProductPairs projection
+ * @version 1.5 - Added sumQuantityByProductAndDay projection
  */
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, String> {
@@ -60,4 +69,46 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, String> {
     List<OrderItem> findByOrderIdWithProduct(@Param("orderId") String orderId);
 
     boolean existsByOrderId(String orderId);
+
+    /**
+     * Lists the distinct products a customer has bought, with the number of
+     * order lines for each, without loading the product entities.
+     * 
+     * @param customerId       The customer ID
+     * @param excludedStatuses Orders in these statuses are ignored
+     * @return Rows of [productId (String), lineCount (Long)]
+     */
+    @Query("SELECT oi.productId, COUNT(oi) FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.customerId = :customerId AND o.orderStatus NOT IN :excludedStatuses " +
+            "GROUP BY oi.productId")
+    List<Object[]> countPurchasedProductsByCustomer(@Param("customerId") String customerId,
+            @Param("excludedStatuses") Collection<Orders.OrderStatus> excludedStatuses);
+
+    /**
+     * Lists (orderId, productId) for every order line, ordered by order so
+     * that lines of the same order are adjacent. Used to build the
+     * co-purchase matrix.
+     * 
+     * @param excludedStatuses Orders in these statuses are ignored
+     * @return Rows of [orderId (String), productId (String)]
+     */
+    @Query("SELECT oi.orderId, oi.productId FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.orderStatus NOT IN :excludedStatuses ORDER BY oi.orderId")
+    List<Object[]> findOrderProductPairs(
+            @Param("excludedStatuses") Collection<Orders.OrderStatus> excludedStatuses);
+
+    /**
+     * Units sold per product per order day since the given time, used to
+     * compute time-decayed popularity.
+     * 
+     * @param since            Only orders created at or after this time
+     * @param excludedStatuses Orders in these statuses are ignored
+     * @return Rows of [productId (String), orderDate (LocalDate), units (Long)]
+     */
+    @Query("SELECT oi.productId, cast(o.createdAt as LocalDate), SUM(oi.quantity) " +
+            "FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.createdAt >= :since AND o.orderStatus NOT IN :excludedStatuses " +
+            "GROUP BY oi.productId, cast(o.createdAt as LocalDate)")
+    List<Object[]> sumQuantityByProductAndDay(@Param("since") LocalDateTime since,
+            @Param("excludedStatuses") Collection<Orders.OrderStatus> excludedStatuses);
 }
@@ -1,5 +1,6 @@
 package sg.com.aori.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,6 +26,10 @@ import sg.com.aori.model.Orders;
  * 
  * @author Ying Chun
  * @version 1.4 - Added findByIdWithCustomer
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.5 - Added findCustomerIdsWithOrdersSince
  */
 
 @Repository
@@ -67,4 +72,7 @@ public interface OrderRepository extends JpaRepository<Orders, String> {
         @Query("SELECT o FROM Orders o LEFT JOIN FETCH o.customer WHERE o.orderId = :orderId")
         Optional<Orders> findByIdWithCustomer(@Param("orderId") String orderId);
 
+        @Query("SELECT DISTINCT o.customerId FROM Orders o WHERE o.createdAt >= :since")
+        List<String> findCustomerIdsWithOrdersSince(@Param("since") LocalDateTime since);
+
 }
\ No newline at end of file
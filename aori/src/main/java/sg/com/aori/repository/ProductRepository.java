@@ -1,6 +1,7 @@
 package sg.com.aori.repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Collection;
 
 import org.springframework.data.domain.Page;
@@ -10,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import sg.com.aori.dto.ProductCardDTO;
 import sg.com.aori.model.Product;
 
 /**
@@ -22,6 +24,14 @@ import sg.com.aori.model.Product;
  * @author Lei Nuozhen
  * @date 2025-10-08
  * @version 1.1 - Added findByProductNameContainingIgnoreCase
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.2 - Added category fetch-join queries for the in-memory
+ *          recommendation index
+ * @version 1.3 - Added findAllWithCategoryByIdIn to hydrate search results
+ * @version 1.4 - Added findCardsAfter, a keyset-paged card projection
+ * @version 1.5 - Added stock quantity bulk updates for ProductStockAggregator
  */
 
 @Repository
@@ -77,4 +87,57 @@ public interface ProductRepository extends JpaRepository<Product, String>, JpaSp
 
     @Query("SELECT p.id FROM Product p WHERE p.productCode = :productCode")
     String findProductIdByProductCode(@Param("productCode") String productCode);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category")
+    List<Product> findAllWithCategory();
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.productId = :productId")
+    Optional<Product> findByIdWithCategory(@Param("productId") String productId);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.productId IN :productIds")
+    List<Product> findAllWithCategoryByIdIn(@Param("productIds") Collection<String> productIds);
+
+    /**
+     * Product cards ordered by name then ID, starting after the given name and
+     * ID (both null for the first page), optionally in one category. Only the
+     * card columns are selected; no entities are loaded.
+     */
+    @Query("""
+                select new sg.com.aori.dto.ProductCardDTO(
+                    p.productId, p.productName, p.price, p.image, p.rating, p.stockQuantity, c.slug)
+                from Product p
+                left join p.category c
+                where (:categoryId is null or p.categoryId = :categoryId)
+                and (
+                    :afterName is null
+                    or p.productName > :afterName
+                    or (p.productName = :afterName and p.productId > :afterId)
+                )
+                order by p.productName, p.productId
+            """)
+    List<ProductCardDTO> findCardsAfter(
+            @Param("categoryId") String categoryId,
+            @Param("afterName") String afterName,
+            @Param("afterId") String afterId,
+            Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :delta WHERE p.productCode = :productCode")
+    int addStockQuantity(@Param("productCode") String productCode, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.stockQuantity = :quantity WHERE p.productCode = :productCode")
+    int setStockQuantity(@Param("productCode") String productCode, @Param("quantity") int quantity);
+
+    /**
+     * @return Rows of [productCode, productId, stockQuantity]
+     */
+    @Query("SELECT p.productCode, p.productId, p.stockQuantity FROM Product p")
+    List<Object[]> findStockQuantities();
+
+    /**
+     * @return Rows of [productCode, productId]
+     */
+    @Query("SELECT p.productCode, p.productId FROM Product p WHERE p.productCode IN :productCodes")
+    List<Object[]> findIdsByProductCodeIn(@Param("productCodes") Collection<String> productCodes);
 }
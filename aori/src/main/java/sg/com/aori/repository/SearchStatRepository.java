@@ -0,0 +1,35 @@
+package sg.com.aori.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import sg.com.aori.model.SearchStat;
+
+/**
+ * Repository for search analytics rollups.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Repository
+public interface SearchStatRepository extends JpaRepository<SearchStat, String> {
+
+    /**
+     * The most searched queries since the given time, summed over the
+     * rollup windows, most searched first.
+     *
+     * @return Rows of [query, searches]
+     */
+    @Query("SELECT s.query, SUM(s.searches) FROM SearchStat s " +
+            "WHERE s.kind = sg.com.aori.model.SearchStat.Kind.TOP AND s.periodStart >= :since " +
+            "GROUP BY s.query ORDER BY SUM(s.searches) DESC")
+    List<Object[]> findTopQueriesSince(@Param("since") LocalDateTime since, Pageable pageable);
+}
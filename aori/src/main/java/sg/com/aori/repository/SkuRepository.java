@@ -20,6 +20,10 @@ import sg.com.aori.model.Sku;
  * @date 2025-10-15
  * @version 1.1 - Added method to find SKUs by product code prefix and calculate
  *          total quantity
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.2 - Added sumQuantityByProductCode for stock reconciliation
  */
 
 @Repository
@@ -43,4 +47,13 @@ public interface SkuRepository extends JpaRepository<Sku, String> {
     @Query("SELECT COALESCE(SUM(s.quantity), 0) FROM Sku s WHERE s.sku LIKE CONCAT(:productCode, '&%')")
     Integer getTotalQuantityByProductCode(@Param("productCode") String productCode);
 
+    /**
+     * Total SKU quantity of every product code that has SKUs.
+     *
+     * @return Rows of [productCode, total quantity]
+     */
+    @Query("SELECT SUBSTRING(s.sku, 1, LOCATE('&', s.sku) - 1), SUM(s.quantity) FROM Sku s " +
+            "WHERE LOCATE('&', s.sku) > 1 GROUP BY SUBSTRING(s.sku, 1, LOCATE('&', s.sku) - 1)")
+    List<Object[]> sumQuantityByProductCode();
+
 }
@@ -2,7 +2,10 @@ package sg.com.aori.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import sg.com.aori.model.ViewHistory;
@@ -13,6 +16,12 @@ import sg.com.aori.model.ViewHistory;
  * @Author Yunhe
  * @date 2025-10-12
  * @version 1.0
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.1 - Added bounded, most-recent-first history lookup
+ * @version 1.2 - Added countViewsByProductAndDay projection
+ * @version 1.3 - Added findUserIdsWithViewsSince
  */
 
 @Repository
@@ -23,4 +32,21 @@ public interface ViewHistoryRepository extends JpaRepository<ViewHistory, String
     List<ViewHistory> findByUserIdAndProductId(String userId, String productId);
 
     List<ViewHistory> findByUserIdOrderByTimestampDesc(String userId);
+
+    List<ViewHistory> findByUserIdOrderByTimestampDesc(String userId, Pageable pageable);
+
+    /**
+     * Views per product per day (days since the epoch) since the given time,
+     * used to compute time-decayed popularity.
+     * 
+     * @param since Only views at or after this time (epoch millis)
+     * @return Rows of [productId (String), epochDay (Number), views (Long)]
+     */
+    @Query("SELECT v.productId, FLOOR(v.timestamp / 86400000), COUNT(v) FROM ViewHistory v " +
+            "WHERE v.timestamp >= :since " +
+            "GROUP BY v.productId, FLOOR(v.timestamp / 86400000)")
+    List<Object[]> countViewsByProductAndDay(@Param("since") long since);
+
+    @Query("SELECT DISTINCT v.userId FROM ViewHistory v WHERE v.timestamp >= :since")
+    List<String> findUserIdsWithViewsSince(@Param("since") long since);
 }
@@ -1,17 +1,25 @@
 package sg.com.aori.service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import org.springframework.util.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.persistence.criteria.Predicate;
+import sg.com.aori.dto.ProductCardDTO;
+import sg.com.aori.dto.ProductCardPageDTO;
+import sg.com.aori.event.ProductChangedEvent;
 import sg.com.aori.interfaces.IProduct;
 import sg.com.aori.repository.OrderItemRepository;
 import sg.com.aori.repository.ProductRepository;
+import sg.com.aori.model.Category;
 import sg.com.aori.model.Product;
 
 /**
@@ -33,19 +41,41 @@ import sg.com.aori.model.Product;
  * @author Yibai
  * @date 2025-10-16
  * @version 2.2 - Added findProductIdByProductCode method
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 2.3 - Publish ProductChangedEvent on create/update/delete so the
+ *          in-memory product indexes stay current
+ * @version 2.4 - Category slug/ID resolved through CategoryRegistry, so a
+ *          listing by category is a single product query
+ * @version 2.5 - Added getProductCards, a keyset-paged listing of card
+ *          projections
  */
 
 @Service
 public class CRUDProductService implements IProduct {
+
+    public static final int DEFAULT_CARD_PAGE_SIZE = 24;
+
+    public static final int MAX_CARD_PAGE_SIZE = 100;
+
     @Autowired
     private ProductRepository productRepository;
 
     @Autowired
     private OrderItemRepository orderItemRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
     @Override
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(saved.getProductId()));
+        return saved;
     }
 
     @Override
@@ -68,13 +98,74 @@ public class CRUDProductService implements IProduct {
      * First tries to find by slug, then by categoryId
      */
     public Optional<List<Product>> getProductsByCategorySlugOrId(String categoryIdentifier) {
-        List<Product> products = productRepository.findProductsByCategorySlug(categoryIdentifier);
+        Optional<Category> category = categoryRegistry.findBySlugOrId(categoryIdentifier);
+        if (category.isEmpty()) {
+            return Optional.of(new ArrayList<>());
+        }
+        return Optional.ofNullable(productRepository.findByCategoryId(category.get().getCategoryId()));
+    }
+
+    /**
+     * One page of product cards ordered by name, optionally in one category.
+     *
+     * @param categoryIdentifier Category slug or categoryId (null for all)
+     * @param cursor             Token from the previous page (null for the
+     *                           first page)
+     * @param pageSize           Cards per page, capped at
+     *                           {@link #MAX_CARD_PAGE_SIZE}
+     */
+    public ProductCardPageDTO getProductCards(String categoryIdentifier, String cursor, int pageSize) {
+        if (pageSize < 1) {
+            pageSize = DEFAULT_CARD_PAGE_SIZE;
+        }
+        pageSize = Math.min(pageSize, MAX_CARD_PAGE_SIZE);
+
+        ProductCardPageDTO page = new ProductCardPageDTO();
+        String categoryId = null;
+        if (StringUtils.hasText(categoryIdentifier)) {
+            Optional<Category> category = categoryRegistry.findBySlugOrId(categoryIdentifier.trim());
+            if (category.isEmpty()) {
+                return page;
+            }
+            categoryId = category.get().getCategoryId();
+        }
+
+        String afterId = null;
+        String afterName = null;
+        if (StringUtils.hasText(cursor)) {
+            String key = decodeCardCursor(cursor);
+            afterId = key.substring(0, key.indexOf(':'));
+            afterName = key.substring(key.indexOf(':') + 1);
+        }
 
-        if (products == null || products.isEmpty()) {
-            products = productRepository.findByCategoryId(categoryIdentifier);
+        // one extra row tells whether there is a next page
+        List<ProductCardDTO> cards = productRepository.findCardsAfter(categoryId, afterName, afterId,
+                PageRequest.of(0, pageSize + 1));
+        if (cards.size() > pageSize) {
+            cards = new ArrayList<>(cards.subList(0, pageSize));
+            ProductCardDTO last = cards.get(pageSize - 1);
+            String key = last.getProductId() + ":" + last.getProductName();
+            page.setNextCursor(
+                    Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8)));
         }
+        page.setItems(cards);
+        return page;
+    }
 
-        return Optional.ofNullable(products);
+    /**
+     * The cursor is the sort key of the last card: its product ID (which has
+     * no colon) and name.
+     */
+    private static String decodeCardCursor(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (key.indexOf(':') < 1) {
+                throw new IllegalArgumentException(cursor);
+            }
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
     }
 
     @Override
@@ -90,12 +181,16 @@ public class CRUDProductService implements IProduct {
     @Override
     public Product updateProduct(String productId, Product product) {
         product.setProductId(productId);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(saved.getProductId()));
+        return saved;
     }
 
     @Override
     public Product saveProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(saved.getProductId()));
+        return saved;
     }
 
     @Override
@@ -110,6 +205,7 @@ public class CRUDProductService implements IProduct {
         }
 
         productRepository.delete(productToDelete);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(productId));
 
         return productToDelete;
     }
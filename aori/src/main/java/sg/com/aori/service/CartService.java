@@ -5,11 +5,15 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import sg.com.aori.event.CustomerActivityEvent;
+import sg.com.aori.event.OrderChangedEvent;
 import sg.com.aori.interfaces.ICart;
 import sg.com.aori.model.*;
 import sg.com.aori.repository.*;
@@ -29,6 +33,13 @@ import sg.com.aori.repository.*;
  *          to productId
  * @version 1.6 - Changed default order status to Shipped and payment status to
  *          Paid
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.7 - Publish OrderChangedEvent when an order is placed
+ * @version 1.8 - Publish CustomerActivityEvent when the cart changes
+ * @version 1.9 - createOrder reserves the stock of all cart lines in one
+ *          batch of conditional decrements
  */
 
 @Service
@@ -50,6 +61,9 @@ public class CartService implements ICart {
     @Autowired
     private SkuService skuService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public List<ShoppingCart> findCartByCustomerId(String customerId) {
         return cartRepository.findByCustomerId(customerId);
     }
@@ -85,10 +99,12 @@ public class CartService implements ICart {
                 throw new RuntimeException("Cannot create order: Shopping cart is empty");
             }
 
-            boolean inventoryAvailable = checkInventory(customerId);
-            if (!inventoryAvailable) {
-                throw new RuntimeException("Insufficient inventory for some items");
+            // all or nothing: throws (rolling the order back) if any SKU is short
+            Map<String, Integer> reserved = new LinkedHashMap<>();
+            for (ShoppingCart cartItem : cartItems) {
+                reserved.merge(cartItem.getSku(), cartItem.getQuantity(), Integer::sum);
             }
+            skuService.reserve(reserved);
 
             Orders order = new Orders();
             String orderId = java.util.UUID.randomUUID().toString();
@@ -127,19 +143,14 @@ public class CartService implements ICart {
 
                 System.out.println("Saving order item: " + orderItem);
                 orderItemRepository.save(orderItem);
-
-                String sku = cartItem.getSku();
-                int quantity = cartItem.getQuantity();
-                System.out.println("Decreasing SKU " + sku + " inventory by " + quantity);
-                int newSkuStock = skuService.decreaseQuantity(sku, quantity);
-
-                if (newSkuStock < 0) {
-                    throw new RuntimeException("Failed to update inventory for SKU: " + sku);
-                }
-
-                System.out.println("SKU " + sku + " new stock: " + newSkuStock);
             }
 
+            List<String> orderedProductIds = cartItems.stream()
+                    .map(ShoppingCart::getProductId)
+                    .collect(Collectors.toList());
+            eventPublisher.publishEvent(new OrderChangedEvent(OrderChangedEvent.Type.PLACED,
+                    customerId, savedOrder.getOrderId(), orderedProductIds));
+
             System.out.println("Clearing cart for customer: " + customerId);
             cartRepository.deleteByCustomerId(customerId);
 
@@ -202,9 +213,12 @@ public class CartService implements ICart {
 
             cartRepository.save(cartItem);
         }
+        eventPublisher.publishEvent(new CustomerActivityEvent(CustomerActivityEvent.Type.CART_CHANGED, customerId));
     }
 
     public void removeFromCart(String cartId) {
+        cartRepository.findById(cartId).ifPresent(cartItem -> eventPublisher.publishEvent(
+                new CustomerActivityEvent(CustomerActivityEvent.Type.CART_CHANGED, cartItem.getCustomerId())));
         cartRepository.deleteById(cartId);
     }
 
@@ -0,0 +1,61 @@
+package sg.com.aori.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.CategoryChangedEvent;
+import sg.com.aori.event.SkuChangedEvent;
+
+/**
+ * Global catalogue version, bumped when something search results depend on
+ * changes: a product's indexed fields, price or category (by
+ * {@link ProductSearchIndex}, once it has applied the change), a category, or
+ * whether a SKU is in stock. Plain stock movements and orders leave it alone.
+ * Caches tag their entries with the version they were computed at and drop
+ * entries tagged with an older one.
+ *
+ * The listeners run last, after the in-memory indexes have applied the same
+ * event, so a result computed at the new version always reflects the change.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Bumped on SKU changes
+ * @version 1.2 - Only bumped for changes that can alter a search result; the
+ *          search index bumps it for product changes
+ */
+
+@Service
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public void bump() {
+        version.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onSkuChanged(SkuChangedEvent event) {
+        // only the variant filters see SKU stock, and only as in stock or not;
+        // a zero delta is a new SKU (or an unknown change)
+        int previous = event.getQuantity() - event.getDelta();
+        if (event.getDelta() == 0 || (previous > 0) != (event.getQuantity() > 0)) {
+            version.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package sg.com.aori.service;
+
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.CategoryChangedEvent;
+import sg.com.aori.model.Category;
+import sg.com.aori.repository.CategoryRepository;
+
+/**
+ * In-memory dictionary of all categories, looked up by ID, slug, code or
+ * name (case-insensitive), so search, product listing and recommendations
+ * resolve categories without reading the category table per request.
+ *
+ * The maps are immutable and replaced together as one snapshot, so readers
+ * never see a half-applied refresh. The registry is loaded on first use and
+ * reloaded whole on every {@link CategoryChangedEvent} (the table is small).
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Service
+public class CategoryRegistry {
+
+    private static final class Snapshot {
+
+        final List<Category> all;
+
+        final Map<String, Category> byId;
+
+        final Map<String, Category> bySlug;
+
+        final Map<String, Category> byCode;
+
+        final Map<String, Category> byName;
+
+        Snapshot(List<Category> categories) {
+            Map<String, Category> ids = new HashMap<>();
+            Map<String, Category> slugs = new HashMap<>();
+            Map<String, Category> codes = new HashMap<>();
+            Map<String, Category> names = new HashMap<>();
+            for (Category category : categories) {
+                ids.put(category.getCategoryId(), category);
+                if (category.getSlug() != null) {
+                    slugs.put(category.getSlug(), category);
+                }
+                if (category.getCategoryCode() != null) {
+                    codes.put(category.getCategoryCode(), category);
+                }
+                if (category.getCategoryName() != null && !category.getCategoryName().isBlank()) {
+                    names.putIfAbsent(lower(category.getCategoryName()), category);
+                }
+            }
+            this.all = List.copyOf(categories);
+            this.byId = Map.copyOf(ids);
+            this.bySlug = Map.copyOf(slugs);
+            this.byCode = Map.copyOf(codes);
+            this.byName = Map.copyOf(names);
+        }
+    }
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private volatile Snapshot snapshot;
+
+    public List<Category> getAll() {
+        return current().all;
+    }
+
+    public Optional<Category> findById(String categoryId) {
+        return categoryId == null ? Optional.empty() : Optional.ofNullable(current().byId.get(categoryId));
+    }
+
+    public Optional<Category> findBySlug(String slug) {
+        return slug == null ? Optional.empty() : Optional.ofNullable(current().bySlug.get(slug));
+    }
+
+    public Optional<Category> findByCode(String code) {
+        return code == null ? Optional.empty() : Optional.ofNullable(current().byCode.get(code));
+    }
+
+    /**
+     * Find a category by name, ignoring case.
+     */
+    public Optional<Category> findByName(String name) {
+        return name == null ? Optional.empty() : Optional.ofNullable(current().byName.get(lower(name)));
+    }
+
+    public boolean isCategoryName(String name) {
+        return findByName(name).isPresent();
+    }
+
+    /**
+     * Resolve a category from a slug or an ID, as accepted by the product
+     * listing and recommendation endpoints. Slugs are tried first.
+     */
+    public Optional<Category> findBySlugOrId(String identifier) {
+        if (identifier == null) {
+            return Optional.empty();
+        }
+        Snapshot current = current();
+        Category category = current.bySlug.get(identifier);
+        return Optional.ofNullable(category != null ? category : current.byId.get(identifier));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        refresh();
+    }
+
+    /**
+     * Reload every category from the database.
+     */
+    public synchronized void refresh() {
+        List<Category> categories = categoryRepository.findAll();
+        snapshot = new Snapshot(categories);
+        System.out.println("[CategoryRegistry] Loaded " + categories.size() + " categories");
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static String lower(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -4,8 +4,10 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import sg.com.aori.event.CategoryChangedEvent;
 import sg.com.aori.interfaces.ICategory;
 import sg.com.aori.model.Category;
 import sg.com.aori.repository.CategoryRepository;
@@ -16,6 +18,7 @@ import sg.com.aori.repository.CategoryRepository;
  * @author Yunhe
  * @date 2025-10-07
  * @version 1.0
+ * @version 1.1 - Publishes CategoryChangedEvent on create, update and delete
  */
 
 @Service
@@ -24,6 +27,9 @@ public class CategoryService implements ICategory {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public Optional<Category> findCategoryById(String id) {
         return categoryRepository.findById(id);
@@ -61,7 +67,9 @@ public class CategoryService implements ICategory {
             throw new IllegalArgumentException("Broad category ID is required");
         }
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.saved(saved.getCategoryId()));
+        return saved;
     }
 
     @Override
@@ -71,7 +79,9 @@ public class CategoryService implements ICategory {
             throw new IllegalArgumentException("Category not found with ID: " + categoryId);
         }
         category.setCategoryId(categoryId);
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.saved(categoryId));
+        return saved;
     }
 
     @Override
@@ -83,6 +93,7 @@ public class CategoryService implements ICategory {
 
         Category category = existingCategory.get();
         categoryRepository.deleteById(categoryId);
+        eventPublisher.publishEvent(CategoryChangedEvent.deleted(categoryId));
         return category;
     }
 }
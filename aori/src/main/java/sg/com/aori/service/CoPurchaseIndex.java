@@ -0,0 +1,294 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.OrderChangedEvent;
+import sg.com.aori.model.Product;
+import sg.com.aori.repository.OrderItemRepository;
+import sg.com.aori.utils.IntIntHashMap;
+
+/**
+ * "Frequently bought together" engine built from order_item co-occurrence.
+ *
+ * Every product gets an int index. A batch job scans order_item grouped by
+ * order and counts, for each pair of products in the same order, how many
+ * orders contain both. Counts are accumulated in primitive per-product maps
+ * and published as sparse rows (neighbour indexes and counts, highest count
+ * first), so a lookup is an array walk with no database access.
+ *
+ * Placed orders are queued from {@link OrderChangedEvent}s and folded in by a
+ * short periodic job, which only republishes the rows they touched. A nightly
+ * full rebuild drops counts from cancelled and returned orders. Queued orders
+ * carry their order ID, so an order the rebuild's scan already counted is
+ * skipped when its event is folded in.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Skip queued orders already counted by a rebuild
+ */
+
+@Service
+public class CoPurchaseIndex {
+
+    /** Neighbours kept per product in the published rows. */
+    static final int MAX_NEIGHBOURS = 50;
+
+    /** Larger baskets are truncated so one bulk order cannot add n^2 pairs. */
+    static final int MAX_BASKET = 50;
+
+    private static final int[] NO_ROW = new int[0];
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    private final Queue<PendingOrder> pendingOrders = new ConcurrentLinkedQueue<>();
+
+    // orders counted by the last rebuild's scan, kept until the next fold so
+    // that events of orders committed during the scan are not counted twice
+    private Set<String> scannedOrderIds = Collections.emptySet();
+
+    // builder state, only touched by the (synchronized) batch jobs
+    private Map<String, Integer> indexById = new HashMap<>();
+    private List<String> idByIndex = new ArrayList<>();
+    private List<IntIntHashMap> counts = new ArrayList<>();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private boolean built = false;
+
+    /**
+     * Get the products most often bought together with the given product.
+     *
+     * @param productId The product ID
+     * @param limit     Maximum number of products to return
+     * @return In-stock products ordered by co-purchase count, highest first
+     */
+    public List<Product> getBoughtTogether(String productId, int limit) {
+        Snapshot current = snapshot;
+        Integer idx = current.indexById.get(productId);
+        if (idx == null || idx >= current.neighbours.length) {
+            return Collections.emptyList();
+        }
+
+        int[] row = current.neighbours[idx];
+        List<Product> result = new ArrayList<>(Math.min(limit, row.length));
+        for (int i = 0; i < row.length && result.size() < limit; i++) {
+            categoryIndex.getProduct(current.ids[row[i]])
+                    .filter(ProductCategoryIndex::inStock)
+                    .ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Number of orders containing both products (0 if unknown).
+     */
+    public int getCoPurchaseCount(String productId, String otherProductId) {
+        Snapshot current = snapshot;
+        Integer a = current.indexById.get(productId);
+        Integer b = current.indexById.get(otherProductId);
+        if (a == null || b == null || a >= current.neighbours.length) {
+            return 0;
+        }
+        int[] row = current.neighbours[a];
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] == b) {
+                return current.weights[a][i];
+            }
+        }
+        return 0;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.getType() == OrderChangedEvent.Type.PLACED) {
+            pendingOrders.add(new PendingOrder(event.getOrderId(), event.getProductIds()));
+        }
+    }
+
+    /**
+     * Fold queued orders into the counts and republish the touched rows. Runs
+     * the initial full build on its first invocation.
+     */
+    @Scheduled(initialDelayString = "${aori.copurchase.initial-delay-ms:5000}", fixedDelayString = "${aori.copurchase.apply-interval-ms:30000}")
+    public synchronized void applyPendingOrders() {
+        if (!built) {
+            rebuild();
+            return;
+        }
+
+        Set<Integer> touched = new HashSet<>();
+        foldPendingOrders(touched);
+        scannedOrderIds = Collections.emptySet();
+        if (!touched.isEmpty()) {
+            publish(touched);
+        }
+    }
+
+    /**
+     * Rebuild all counts from order_item.
+     */
+    @Scheduled(cron = "${aori.copurchase.rebuild-cron:0 30 3 * * *}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        indexById = new HashMap<>();
+        idByIndex = new ArrayList<>();
+        counts = new ArrayList<>();
+
+        List<Object[]> rows = orderItemRepository.findOrderProductPairs(PurchaseHistoryCache.EXCLUDED_STATUSES);
+        Set<String> scanned = new HashSet<>();
+        List<String> basket = new ArrayList<>();
+        String currentOrderId = null;
+        for (Object[] row : rows) {
+            String orderId = (String) row[0];
+            if (!orderId.equals(currentOrderId)) {
+                addBasket(basket, null);
+                basket.clear();
+                currentOrderId = orderId;
+                scanned.add(orderId);
+            }
+            basket.add((String) row[1]);
+        }
+        addBasket(basket, null);
+
+        // orders queued before or during the scan are only added if it missed them
+        scannedOrderIds = scanned;
+        foldPendingOrders(null);
+
+        publish(null);
+        built = true;
+        System.out.println("[CoPurchaseIndex] Built co-purchase matrix for " + idByIndex.size()
+                + " products from " + rows.size() + " order lines in " + (System.currentTimeMillis() - start)
+                + " ms");
+    }
+
+    private void foldPendingOrders(Set<Integer> touched) {
+        PendingOrder order;
+        while ((order = pendingOrders.poll()) != null) {
+            if (!scannedOrderIds.contains(order.orderId)) {
+                addBasket(order.productIds, touched);
+            }
+        }
+    }
+
+    private void addBasket(List<String> productIds, Set<Integer> touched) {
+        int[] items = productIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .limit(MAX_BASKET)
+                .mapToInt(this::indexOf)
+                .toArray();
+        for (int i = 0; i < items.length; i++) {
+            IntIntHashMap row = counts.get(items[i]);
+            for (int j = 0; j < items.length; j++) {
+                if (i != j) {
+                    row.addTo(items[j], 1);
+                }
+            }
+            if (touched != null && items.length > 1) {
+                touched.add(items[i]);
+            }
+        }
+    }
+
+    private int indexOf(String productId) {
+        Integer idx = indexById.get(productId);
+        if (idx == null) {
+            idx = idByIndex.size();
+            indexById.put(productId, idx);
+            idByIndex.add(productId);
+            counts.add(new IntIntHashMap());
+        }
+        return idx;
+    }
+
+    /**
+     * Publish a new snapshot, rebuilding only the given rows (or every row if
+     * touched is null).
+     */
+    private void publish(Set<Integer> touched) {
+        Snapshot previous = snapshot;
+        int n = idByIndex.size();
+        int[][] neighbours = new int[n][];
+        int[][] weights = new int[n][];
+        for (int i = 0; i < n; i++) {
+            boolean reuse = touched != null && !touched.contains(i) && i < previous.neighbours.length;
+            if (reuse) {
+                neighbours[i] = previous.neighbours[i];
+                weights[i] = previous.weights[i];
+            } else {
+                buildRow(counts.get(i), i, neighbours, weights);
+            }
+        }
+        snapshot = new Snapshot(new ConcurrentHashMap<>(indexById), idByIndex.toArray(new String[0]),
+                neighbours, weights);
+    }
+
+    private static void buildRow(IntIntHashMap row, int i, int[][] neighbours, int[][] weights) {
+        int size = row.size();
+        if (size == 0) {
+            neighbours[i] = NO_ROW;
+            weights[i] = NO_ROW;
+            return;
+        }
+        int[] keys = new int[size];
+        int[] values = new int[size];
+        row.copyTo(keys, values);
+
+        // sort by count desc, then index asc, packing both into one long
+        long[] packed = new long[size];
+        for (int k = 0; k < size; k++) {
+            packed[k] = ((long) (Integer.MAX_VALUE - values[k]) << 32) | keys[k];
+        }
+        Arrays.sort(packed);
+
+        int kept = Math.min(size, MAX_NEIGHBOURS);
+        int[] rowNeighbours = new int[kept];
+        int[] rowWeights = new int[kept];
+        for (int k = 0; k < kept; k++) {
+            rowNeighbours[k] = (int) packed[k];
+            rowWeights[k] = Integer.MAX_VALUE - (int) (packed[k] >>> 32);
+        }
+        neighbours[i] = rowNeighbours;
+        weights[i] = rowWeights;
+    }
+
+    private static final class PendingOrder {
+
+        final String orderId;
+        final List<String> productIds;
+
+        PendingOrder(String orderId, List<String> productIds) {
+            this.orderId = orderId;
+            this.productIds = productIds;
+        }
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Map.of(), new String[0], new int[0][], new int[0][]);
+
+        final Map<String, Integer> indexById;
+        final String[] ids;
+        final int[][] neighbours;
+        final int[][] weights;
+
+        Snapshot(Map<String, Integer> indexById, String[] ids, int[][] neighbours, int[][] weights) {
+            this.indexById = indexById;
+            this.ids = ids;
+            this.neighbours = neighbours;
+            this.weights = weights;
+        }
+    }
+}
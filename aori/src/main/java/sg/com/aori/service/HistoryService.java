@@ -4,8 +4,10 @@ import java.util.List;
 
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import sg.com.aori.event.CustomerActivityEvent;
 import sg.com.aori.repository.ViewHistoryRepository;
 import sg.com.aori.model.ViewHistory;
 import sg.com.aori.interfaces.IViewHistory;
@@ -16,6 +18,10 @@ import sg.com.aori.interfaces.IViewHistory;
  * @author Yunhe
  * @date 2025-10-12
  * @version 1.0
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.1 - Publish CustomerActivityEvent for each view
  */
 
 @Service
@@ -24,6 +30,9 @@ public class HistoryService implements IViewHistory {
     @Autowired
     private ViewHistoryRepository viewHistoryRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public String addView(String userId, String productId) {
         JSONObject jsonObject = new JSONObject();
@@ -54,6 +63,7 @@ public class HistoryService implements IViewHistory {
             jsonObject.put("id", newView.getId());
         }
 
+        eventPublisher.publishEvent(new CustomerActivityEvent(CustomerActivityEvent.Type.PRODUCT_VIEWED, userId));
         return jsonObject.toString();
     }
 
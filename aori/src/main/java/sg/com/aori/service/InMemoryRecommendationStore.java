@@ -0,0 +1,85 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import sg.com.aori.interfaces.IRecommendationStore;
+
+/**
+ * In-process IRecommendationStore. Lists are kept as String arrays sharing
+ * the product ID instances of the catalogue indexes, so an entry costs little
+ * more than the array itself.
+ * 
+ * Redis auto-configuration is disabled in this application; a Redis-backed
+ * implementation can replace this bean without changing callers.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Service
+public class InMemoryRecommendationStore implements IRecommendationStore {
+
+    static final int MAX_CUSTOMERS = 100_000;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // customer ID -> time of the activity that made their list stale
+    private final Map<String, Long> staleSince = new ConcurrentHashMap<>();
+
+    @Override
+    public List<String> get(String customerId) {
+        Entry entry = entries.get(customerId);
+        if (entry == null || staleSince.containsKey(customerId)) {
+            return null;
+        }
+        return Arrays.asList(entry.productIds);
+    }
+
+    @Override
+    public void put(String customerId, List<String> productIds, long computedAt) {
+        Long stale = staleSince.get(customerId);
+        if (stale != null && stale >= computedAt) {
+            return;
+        }
+        if (entries.size() >= MAX_CUSTOMERS && !entries.containsKey(customerId)) {
+            Iterator<String> it = entries.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        entries.put(customerId, new Entry(productIds.toArray(new String[0])));
+        if (stale != null) {
+            // keeps the mark if newer activity arrived meanwhile
+            staleSince.remove(customerId, stale);
+        }
+    }
+
+    @Override
+    public void markStale(String customerId) {
+        staleSince.put(customerId, System.currentTimeMillis());
+    }
+
+    @Override
+    public Set<String> getStaleCustomers() {
+        return new HashSet<>(staleSince.keySet());
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+
+        final String[] productIds;
+
+        Entry(String[] productIds) {
+            this.productIds = productIds;
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package sg.com.aori.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory SKU stock for flash sales, so that availability reads never touch
+ * the database and reservations of the same few SKUs do not queue on the
+ * same MySQL row lock. Off unless aori.inventory.ledger.enabled=true.
+ *
+ * Every SKU has a cell (in a ConcurrentHashMap, itself lock-striped), loaded
+ * from the sku table at startup, holding two AtomicIntegers: the available
+ * quantity, which reservations take from with a compare-and-set loop, and the
+ * committed quantity, which only changes once the reserving transaction
+ * commits. A multi-SKU reservation takes its SKUs in order and gives back
+ * what it took if one is short; a reservation whose transaction rolls back
+ * is given back. Outside a transaction a reservation commits at once.
+ *
+ * Only committed quantities are journaled. On commit the SKUs are handed to
+ * a single writer thread, which appends the current committed quantity of
+ * every SKU handed to it since its last write and then flushes the journal
+ * once for the whole group; the committing thread waits for that flush. A
+ * crash therefore never replays a reservation that did not commit. A short
+ * periodic job writes the latest quantity of every journaled SKU to the sku
+ * table in one batch (so a hundred checkouts of one SKU are one row update)
+ * and then drops the journal segment it covered. The journal holds absolute
+ * quantities, so replaying it is idempotent: at startup any segments left by
+ * a crash are replayed into the sku table before the cells are loaded.
+ *
+ * The journal is written through to the OS, which survives a process crash
+ * (not a power loss). The ledger assumes it is the only writer of sku
+ * quantities, so it must only be enabled on a single instance.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Journal on commit only, through a group-commit writer
+ *          thread; added variants for the stock matrix
+ * @version 1.2 - set applies the restock as a change against the committed
+ *          quantity on commit, so in-flight reservations are not lost
+ */
+
+@Service
+public class InventoryLedger {
+
+    private static final String FLUSH_SQL = "UPDATE sku SET quantity = ? WHERE sku = ?";
+
+    /** How long a committing thread waits for its journal write at most. */
+    private static final long JOURNAL_WAIT_MS = 1000;
+
+    private static final JournalRequest STOP = new JournalRequest(List.of());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final boolean enabled;
+
+    private final Path journalPath;
+
+    private final ConcurrentHashMap<String, Cell> cells = new ConcurrentHashMap<>();
+
+    // product code -> its SKUs
+    private final ConcurrentHashMap<String, Set<String>> skusByProduct = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<JournalRequest> journalQueue = new LinkedBlockingQueue<>();
+
+    private Thread journalWriter;
+
+    // the fields below are guarded by journalLock, which the writer thread
+    // takes once per group and the flush job once per rotation
+
+    private final Object journalLock = new Object();
+
+    private BufferedWriter journal;
+
+    // SKU -> committed quantity not yet written to the sku table
+    private Map<String, Integer> dirty = new HashMap<>();
+
+    // closed journal segments whose quantities are not yet all written
+    private final List<Path> closedSegments = new ArrayList<>();
+
+    private long segmentSequence;
+
+    public InventoryLedger(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            @Value("${aori.inventory.ledger.enabled:false}") boolean enabled,
+            @Value("${aori.inventory.ledger.journal:data/inventory-journal.log}") String journalPath) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+        this.enabled = enabled;
+        this.journalPath = Paths.get(journalPath).toAbsolutePath();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replay the journal left by the previous run, then load every SKU and
+     * start the journal writer.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(journalPath.getParent());
+        recover();
+
+        cells.clear();
+        skusByProduct.clear();
+        jdbcTemplate.query("SELECT sku, quantity FROM sku",
+                rs -> {
+                    cell(rs.getString(1)).load(rs.getInt(2));
+                });
+        synchronized (journalLock) {
+            journal = openJournal();
+        }
+        journalWriter = new Thread(this::writeJournal, "inventory-journal");
+        journalWriter.setDaemon(true);
+        journalWriter.start();
+        System.out.println("[InventoryLedger] Loaded " + cells.size() + " SKUs, journal " + journalPath);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (journalWriter != null) {
+            journalQueue.add(STOP);
+            try {
+                journalWriter.join(JOURNAL_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            journalWriter = null;
+            // whatever was handed over after the writer stopped
+            List<JournalRequest> rest = new ArrayList<>();
+            journalQueue.drainTo(rest);
+            append(rest);
+        }
+        flush();
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * @return The quantity of a SKU, or 0 if it does not exist
+     */
+    public int available(String sku) {
+        Cell cell = cells.get(sku);
+        return cell == null ? 0 : cell.available.get();
+    }
+
+    /**
+     * @return The quantity of a SKU as of the last committed change, or 0 if
+     *         it does not exist
+     */
+    public int committed(String sku) {
+        Cell cell = cells.get(sku);
+        return cell == null ? 0 : cell.committed.get();
+    }
+
+    /**
+     * @return SKU -> quantity of every SKU of a product, in SKU order
+     */
+    public Map<String, Integer> variants(String productCode) {
+        Map<String, Integer> variants = new TreeMap<>();
+        for (String sku : skusByProduct.getOrDefault(productCode, Collections.emptySet())) {
+            variants.put(sku, available(sku));
+        }
+        return variants;
+    }
+
+    /**
+     * Set a SKU's quantity, e.g. after an admin restock. The caller has
+     * already written the sku row; when its transaction commits the quantity
+     * is journaled, and available moves by the change against the committed
+     * quantity, so reservations still in flight keep what they took (and give
+     * it back correctly if they roll back).
+     */
+    public void set(String sku, int quantity) {
+        Cell cell = cell(sku);
+        whenCommitted(() -> {
+            cell.available.addAndGet(quantity - cell.committed.getAndSet(quantity));
+            journal(List.of(sku));
+        }, null);
+    }
+
+    /**
+     * Take quantity of a SKU if that much is left.
+     *
+     * @return The remaining quantity, or -1 if the SKU does not exist or is
+     *         short
+     */
+    public int reserve(String sku, int quantity) {
+        Cell cell = cells.get(sku);
+        if (cell == null || quantity <= 0) {
+            return -1;
+        }
+        int remaining = take(cell.available, quantity);
+        if (remaining < 0) {
+            return -1;
+        }
+        commitOrRelease(Map.of(sku, quantity));
+        return remaining;
+    }
+
+    /**
+     * Take the given quantities of several SKUs, all or nothing.
+     *
+     * @param quantities SKU -> quantity, in SKU order
+     * @return SKU -> remaining quantity
+     * @throws RuntimeException if a SKU does not exist or is short; nothing is
+     *                          taken
+     */
+    public Map<String, Integer> reserveAll(SortedMap<String, Integer> quantities) {
+        Map<String, Integer> remaining = new HashMap<>();
+        Map<String, Integer> taken = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            Cell cell = cells.get(entry.getKey());
+            int left = cell == null ? -1 : take(cell.available, entry.getValue());
+            if (left < 0) {
+                taken.forEach(this::release);
+                throw new RuntimeException("Insufficient inventory for SKU: " + entry.getKey());
+            }
+            taken.put(entry.getKey(), entry.getValue());
+            remaining.put(entry.getKey(), left);
+        }
+        commitOrRelease(taken);
+        return remaining;
+    }
+
+    /**
+     * Write the latest committed quantity of every journaled SKU to the sku
+     * table in one batch, then drop the journal segments that covered them.
+     *
+     * @return Number of SKUs written
+     */
+    @Scheduled(initialDelayString = "${aori.inventory.ledger.flush-interval-ms:500}", fixedDelayString = "${aori.inventory.ledger.flush-interval-ms:500}")
+    public int flush() {
+        if (!enabled) {
+            return 0;
+        }
+        Map<String, Integer> batch;
+        List<Path> covered;
+        synchronized (journalLock) {
+            if (dirty.isEmpty() || journal == null) {
+                return 0;
+            }
+            batch = dirty;
+            dirty = new HashMap<>();
+            try {
+                journal.close();
+                Path segment = journalPath.resolveSibling(journalPath.getFileName() + "." + nextSegmentSuffix());
+                Files.move(journalPath, segment);
+                closedSegments.add(segment);
+                journal = openJournal();
+            } catch (IOException e) {
+                System.err.println("[InventoryLedger] Error rotating journal: " + e.getMessage());
+                try {
+                    journal = openJournal();
+                } catch (IOException reopen) {
+                    journal = null; // changes stay dirty until the journal is back
+                }
+            }
+            covered = new ArrayList<>(closedSegments);
+        }
+
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            // keep newer quantities recorded since the swap
+            synchronized (journalLock) {
+                batch.forEach(dirty::putIfAbsent);
+            }
+            System.err.println("[InventoryLedger] Error writing SKU quantities: " + e.getMessage());
+            return 0;
+        }
+
+        synchronized (journalLock) {
+            closedSegments.removeAll(covered);
+        }
+        for (Path segment : covered) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                System.err.println("[InventoryLedger] Error deleting journal segment: " + e.getMessage());
+            }
+        }
+        return batch.size();
+    }
+
+    /**
+     * Write the last journaled quantity of every SKU in the journal (and any
+     * closed segments) to the sku table, then delete them.
+     */
+    void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        String prefix = journalPath.getFileName() + ".";
+        try (Stream<Path> siblings = Files.list(journalPath.getParent())) {
+            siblings.filter(p -> p.getFileName().toString().startsWith(prefix))
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .forEach(files::add);
+        }
+        if (Files.exists(journalPath)) {
+            files.add(journalPath);
+        }
+
+        Map<String, Integer> latest = new HashMap<>();
+        for (Path file : files) {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            // a line without its newline was torn by the crash and is ignored
+            for (String line : content.substring(0, content.lastIndexOf('\n') + 1).split("\n")) {
+                int tab = line.lastIndexOf('\t');
+                if (tab > 0) {
+                    latest.put(line.substring(0, tab), Integer.parseInt(line.substring(tab + 1)));
+                }
+            }
+        }
+        if (!latest.isEmpty()) {
+            write(latest);
+            System.out.println("[InventoryLedger] Recovered " + latest.size() + " SKU quantities from "
+                    + files.size() + " journal files");
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    private Cell cell(String sku) {
+        return cells.computeIfAbsent(sku, k -> {
+            int amp = k.indexOf('&');
+            skusByProduct.computeIfAbsent(amp < 0 ? k : k.substring(0, amp), code -> ConcurrentHashMap.newKeySet())
+                    .add(k);
+            return new Cell();
+        });
+    }
+
+    private static int take(AtomicInteger available, int quantity) {
+        while (true) {
+            int current = available.get();
+            if (current < quantity) {
+                return -1;
+            }
+            if (available.compareAndSet(current, current - quantity)) {
+                return current - quantity;
+            }
+        }
+    }
+
+    private void release(String sku, int quantity) {
+        cells.get(sku).available.addAndGet(quantity);
+    }
+
+    /**
+     * Commit what was taken (and journal it) once the current transaction
+     * commits, or give it back if it rolls back.
+     */
+    private void commitOrRelease(Map<String, Integer> taken) {
+        whenCommitted(() -> {
+            taken.forEach((sku, quantity) -> cells.get(sku).committed.addAndGet(-quantity));
+            journal(taken.keySet());
+        }, () -> taken.forEach(this::release));
+    }
+
+    private static void whenCommitted(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                onCommit.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK && onRollback != null) {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Hand committed SKUs to the journal writer and wait until their
+     * quantities are flushed to the journal. A wait that times out leaves
+     * them to the next flush of the sku table.
+     */
+    private void journal(Collection<String> skus) {
+        JournalRequest request = new JournalRequest(skus);
+        journalQueue.add(request);
+        try {
+            request.written.await(JOURNAL_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Body of the journal writer thread: take whatever requests are queued,
+     * write them as one group, release their callers, repeat.
+     */
+    private void writeJournal() {
+        List<JournalRequest> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(journalQueue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            journalQueue.drainTo(group);
+            boolean stopping = group.remove(STOP);
+            append(group);
+            group.clear();
+            if (stopping) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Journal the committed quantity of every SKU in the requests, as it is
+     * now, and flush once. Quantities are read at write time, so the last line
+     * for a SKU always holds its latest committed quantity whatever order the
+     * requests arrived in.
+     */
+    private void append(List<JournalRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        Set<String> skus = new LinkedHashSet<>();
+        for (JournalRequest request : requests) {
+            skus.addAll(request.skus);
+        }
+        synchronized (journalLock) {
+            StringBuilder lines = new StringBuilder();
+            for (String sku : skus) {
+                int quantity = cells.get(sku).committed.get();
+                dirty.put(sku, quantity);
+                lines.append(sku).append('\t').append(quantity).append('\n');
+            }
+            if (journal != null) {
+                try {
+                    journal.write(lines.toString());
+                    journal.flush();
+                } catch (IOException e) {
+                    // still dirty, so the next flush persists it
+                    System.err.println("[InventoryLedger] Error writing journal: " + e.getMessage());
+                }
+            }
+        }
+        for (JournalRequest request : requests) {
+            request.written.countDown();
+        }
+    }
+
+    private void write(Map<String, Integer> quantities) {
+        List<Object[]> batch = new ArrayList<>(quantities.size());
+        quantities.forEach((sku, quantity) -> batch.add(new Object[] { quantity, sku }));
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batch));
+    }
+
+    private BufferedWriter openJournal() throws IOException {
+        return Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    private String nextSegmentSuffix() {
+        // zero-padded so that name order is write order; recovery clears the
+        // previous run's segments before the sequence restarts
+        return String.format("%010d", ++segmentSequence);
+    }
+
+    private static final class Cell {
+
+        // what reservations can still take, uncommitted ones included
+        final AtomicInteger available = new AtomicInteger();
+
+        // as of the last committed change; what is journaled and written
+        final AtomicInteger committed = new AtomicInteger();
+
+        void load(int quantity) {
+            available.set(quantity);
+            committed.set(quantity);
+        }
+    }
+
+    private static final class JournalRequest {
+
+        final Collection<String> skus;
+
+        final CountDownLatch written = new CountDownLatch(1);
+
+        JournalRequest(Collection<String> skus) {
+            this.skus = skus;
+        }
+    }
+}
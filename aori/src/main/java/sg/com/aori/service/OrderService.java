@@ -5,11 +5,15 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import sg.com.aori.event.OrderChangedEvent;
+import sg.com.aori.event.ProductChangedEvent;
 import sg.com.aori.interfaces.IOrder;
 import sg.com.aori.model.*;
 import sg.com.aori.repository.InventoryRepository;
@@ -21,6 +25,14 @@ import sg.com.aori.repository.OrderRepository;
  * @version 1.0
  * @version 1.1 - Removed variant, modified it into product
  * @version 1.2 - Timeout limit 60s -> 10s
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.3 - Publish ProductChangedEvent when inventory is restored
+ * @version 1.4 - Publish OrderChangedEvent when an order is cancelled or
+ *          returned
+ * @version 1.5 - Publish OrderChangedEvent when a cancelled or returned order
+ *          is set back to an active status
  */
 
 @Service
@@ -36,6 +48,9 @@ public class OrderService implements IOrder {
     @Autowired
     private FinanceService financeService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public Orders findOrderById(String orderId) {
         return orderRepository.findById(orderId).orElse(null);
     }
@@ -123,6 +138,8 @@ public class OrderService implements IOrder {
         order.setPaymentStatus(Orders.PaymentStatus.Refunded);
         order.setUpdatedAt(LocalDateTime.now());
         orderRepository.save(order);
+
+        publishOrderChanged(order, OrderChangedEvent.Type.RETURNED);
     }
 
     public void cancelOrder(String orderId) {
@@ -146,6 +163,7 @@ public class OrderService implements IOrder {
         orderRepository.save(order);
 
         restoreInventory(orderId);
+        publishOrderChanged(order, OrderChangedEvent.Type.CANCELLED);
     }
 
     @Override
@@ -171,15 +189,34 @@ public class OrderService implements IOrder {
             Product product = item.getProduct();
             product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
             inventoryRepository.save(product);
+            eventPublisher.publishEvent(ProductChangedEvent.saved(product.getProductId()));
         }
     }
 
+    private void publishOrderChanged(Orders order, OrderChangedEvent.Type type) {
+        List<String> productIds = findOrderItemsByOrderId(order.getOrderId()).stream()
+                .map(OrderItem::getProductId)
+                .collect(Collectors.toList());
+        eventPublisher.publishEvent(new OrderChangedEvent(type, order.getCustomerId(), order.getOrderId(), productIds));
+    }
+
     public void updateOrderStatus(String orderId, Orders.OrderStatus status) {
         Orders order = findOrderById(orderId);
         if (order != null) {
+            Orders.OrderStatus previous = order.getOrderStatus();
             order.setOrderStatus(status);
             order.setUpdatedAt(LocalDateTime.now());
             orderRepository.save(order);
+
+            boolean wasActive = previous != Orders.OrderStatus.Cancelled && previous != Orders.OrderStatus.Returned;
+            boolean isActive = status != Orders.OrderStatus.Cancelled && status != Orders.OrderStatus.Returned;
+            if (wasActive && status == Orders.OrderStatus.Cancelled) {
+                publishOrderChanged(order, OrderChangedEvent.Type.CANCELLED);
+            } else if (wasActive && status == Orders.OrderStatus.Returned) {
+                publishOrderChanged(order, OrderChangedEvent.Type.RETURNED);
+            } else if (!wasActive && isActive) {
+                publishOrderChanged(order, OrderChangedEvent.Type.REACTIVATED);
+            }
         }
     }
 
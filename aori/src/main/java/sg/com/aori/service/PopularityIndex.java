@@ -0,0 +1,178 @@
+package sg.com.aori.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import sg.com.aori.model.Product;
+import sg.com.aori.repository.OrderItemRepository;
+import sg.com.aori.repository.ViewHistoryRepository;
+
+/**
+ * Background-refreshed popularity ranking, used for popular products and as
+ * the fallback of every other recommendation strategy.
+ *
+ * A product's score combines units sold and views over the last window
+ * (both aggregated per day in the database and weighted by an exponential
+ * decay on their age) with its rating:
+ *
+ * score = orderWeight * sum(units * decay) + viewWeight * sum(views * decay)
+ * + ratingWeight * rating, where decay = 0.5 ^ (ageDays / halfLifeDays)
+ *
+ * The top product IDs are published as an immutable array swapped in
+ * atomically. Stock is checked against the category index at read time, so a
+ * product going out of stock drops out immediately.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Exposes every product's score for suggestion ranking
+ * @version 1.2 - Age view buckets against the UTC date they are grouped by
+ */
+
+@Service
+public class PopularityIndex {
+
+    /** Number of ranked products kept in the snapshot. */
+    static final int TOP_N = 500;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private ViewHistoryRepository viewHistoryRepository;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    @Value("${aori.popularity.window-days:90}")
+    private int windowDays = 90;
+
+    @Value("${aori.popularity.half-life-days:7}")
+    private double halfLifeDays = 7;
+
+    @Value("${aori.popularity.order-weight:1.0}")
+    private double orderWeight = 1.0;
+
+    @Value("${aori.popularity.view-weight:0.1}")
+    private double viewWeight = 0.1;
+
+    @Value("${aori.popularity.rating-weight:0.5}")
+    private double ratingWeight = 0.5;
+
+    private volatile String[] topProductIds;
+
+    private volatile Map<String, Double> scoreByProductId = Collections.emptyMap();
+
+    /**
+     * Get the most popular in-stock products.
+     *
+     * @param limit Maximum number of products to return
+     * @return Up to limit products, most popular first
+     */
+    public List<Product> getTopProducts(int limit) {
+        String[] ranked = topProductIds;
+        if (ranked == null) {
+            refresh();
+            ranked = topProductIds;
+        }
+
+        List<Product> result = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        for (int i = 0; i < ranked.length && result.size() < limit; i++) {
+            categoryIndex.getProduct(ranked[i])
+                    .filter(ProductCategoryIndex::inStock)
+                    .ifPresent(result::add);
+        }
+
+        // more than TOP_N products went out of stock since the last refresh
+        if (result.size() < limit) {
+            Set<String> added = new HashSet<>();
+            result.forEach(p -> added.add(p.getProductId()));
+            for (Product product : categoryIndex.allInStock()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                if (added.add(product.getProductId())) {
+                    result.add(product);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get a product's score from the last refresh.
+     *
+     * @return The score, or 0 for products not scored yet
+     */
+    public double getScore(String productId) {
+        return scoreByProductId.getOrDefault(productId, 0.0);
+    }
+
+    /**
+     * Recompute all scores and publish a new ranking.
+     */
+    @Scheduled(initialDelayString = "${aori.popularity.initial-delay-ms:10000}", fixedDelayString = "${aori.popularity.refresh-interval-ms:600000}")
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        LocalDateTime since = today.minusDays(windowDays).atStartOfDay();
+        double lambda = Math.log(2) / halfLifeDays;
+
+        Map<String, Double> activity = new HashMap<>();
+        for (Object[] row : orderItemRepository.sumQuantityByProductAndDay(since,
+                PurchaseHistoryCache.EXCLUDED_STATUSES)) {
+            long ageDays = Math.max(0, today.toEpochDay() - toLocalDate(row[1]).toEpochDay());
+            double units = ((Number) row[2]).doubleValue();
+            activity.merge((String) row[0], orderWeight * units * Math.exp(-lambda * ageDays), Double::sum);
+        }
+
+        // views are bucketed by UTC epoch day, so they are aged against the UTC date
+        LocalDate todayUtc = LocalDate.now(ZoneOffset.UTC);
+        long sinceMillis = todayUtc.minusDays(windowDays).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        for (Object[] row : viewHistoryRepository.countViewsByProductAndDay(sinceMillis)) {
+            long ageDays = Math.max(0, todayUtc.toEpochDay() - ((Number) row[1]).longValue());
+            double views = ((Number) row[2]).doubleValue();
+            activity.merge((String) row[0], viewWeight * views * Math.exp(-lambda * ageDays), Double::sum);
+        }
+
+        List<Product> products = new ArrayList<>(categoryIndex.allProducts());
+        String[] ids = new String[products.size()];
+        double[] scores = new double[products.size()];
+        Integer[] order = new Integer[products.size()];
+        Map<String, Double> scoreMap = new HashMap<>(products.size() * 2);
+        int n = 0;
+        for (Product product : products) {
+            ids[n] = product.getProductId();
+            float rating = product.getRating() != null ? product.getRating() : 0f;
+            scores[n] = activity.getOrDefault(ids[n], 0.0) + ratingWeight * rating;
+            scoreMap.put(ids[n], scores[n]);
+            order[n] = n;
+            n++;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int cmp = Double.compare(scores[b], scores[a]);
+            return cmp != 0 ? cmp : ids[a].compareTo(ids[b]);
+        });
+
+        String[] ranked = new String[Math.min(TOP_N, n)];
+        for (int i = 0; i < ranked.length; i++) {
+            ranked[i] = ids[order[i]];
+        }
+        topProductIds = ranked;
+        scoreByProductId = scoreMap;
+
+        System.out.println("[PopularityIndex] Ranked " + n + " products (" + activity.size()
+                + " with recent activity) in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) value;
+    }
+}
@@ -0,0 +1,224 @@
+package sg.com.aori.service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.CustomerActivityEvent;
+import sg.com.aori.event.OrderChangedEvent;
+import sg.com.aori.interfaces.IRecommendationStore;
+import sg.com.aori.model.Product;
+import sg.com.aori.repository.OrderRepository;
+import sg.com.aori.repository.ViewHistoryRepository;
+
+/**
+ * Serves purchase-history recommendations from precomputed per-customer lists.
+ *
+ * A nightly batch job computes the list of every customer active in the last
+ * window (orders or views) on a fork/join pool and writes it to the
+ * {@link IRecommendationStore}. Order changes mark the customer's list stale,
+ * so it is recomputed on demand if read before the short periodic job gets to
+ * it (as are customers with no list). Cart changes and product views only
+ * queue the list for that periodic job: the stored list keeps being served
+ * meanwhile, so browsing does not turn every read into a recomputation.
+ *
+ * Lists are stored as product IDs and hydrated from the category index at
+ * read time, dropping products that have gone out of stock.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Cart and view activity queues a background refresh instead
+ *          of invalidating the stored list
+ */
+
+@Service
+public class PrecomputedRecommendationService {
+
+    /** Length of each stored list, the largest limit the endpoint accepts. */
+    static final int STORED_SIZE = 50;
+
+    private static final int BATCH_THRESHOLD = 64;
+
+    @Autowired
+    private IRecommendationStore store;
+
+    @Autowired
+    private ProductRecommendationService recommendationService;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ViewHistoryRepository viewHistoryRepository;
+
+    // customers whose cart or views changed since the last periodic refresh
+    private final Set<String> recentlyActive = ConcurrentHashMap.newKeySet();
+
+    @Value("${aori.recommendation.precompute.active-days:30}")
+    private int activeDays = 30;
+
+    @Value("${aori.recommendation.precompute.parallelism:4}")
+    private int parallelism = 4;
+
+    /**
+     * Get a customer's recommendations, from the store if an up-to-date list is
+     * there.
+     *
+     * @param customerId The customer ID (blank for anonymous users)
+     * @param limit      Maximum number of recommendations
+     * @return List of recommended in-stock products
+     */
+    public List<Product> getRecommendations(String customerId, int limit) {
+        if (customerId == null || customerId.isBlank()) {
+            return recommendationService.getPopularProducts(limit);
+        }
+
+        List<String> stored = store.get(customerId);
+        if (stored != null) {
+            List<Product> products = hydrate(stored, limit);
+            if (products.size() >= limit || products.size() == stored.size()) {
+                return products;
+            }
+            // too many stored products went out of stock; fall through
+        }
+
+        List<Product> computed = compute(customerId);
+        return computed.size() > limit ? new ArrayList<>(computed.subList(0, limit)) : computed;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.getCustomerId() != null) {
+            store.markStale(event.getCustomerId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCustomerActivity(CustomerActivityEvent event) {
+        if (event.getCustomerId() != null) {
+            recentlyActive.add(event.getCustomerId());
+        }
+    }
+
+    /**
+     * Recompute the lists of all recently active customers.
+     */
+    @Scheduled(cron = "${aori.recommendation.precompute.cron:0 0 2 * * *}")
+    public void precomputeActiveCustomers() {
+        long start = System.currentTimeMillis();
+        Set<String> customers = new HashSet<>(orderRepository
+                .findCustomerIdsWithOrdersSince(LocalDateTime.now().minusDays(activeDays)));
+        customers.addAll(viewHistoryRepository
+                .findUserIdsWithViewsSince(start - activeDays * 24L * 60 * 60 * 1000));
+
+        int computed = precompute(new ArrayList<>(customers));
+        System.out.println("[PrecomputedRecommendationService] Precomputed " + computed + " of "
+                + customers.size() + " active customers in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Recompute lists marked stale by orders or queued by cart and view
+     * activity.
+     */
+    @Scheduled(initialDelayString = "${aori.recommendation.precompute.stale-initial-delay-ms:60000}", fixedDelayString = "${aori.recommendation.precompute.stale-interval-ms:60000}")
+    public void refreshStale() {
+        Set<String> stale = new HashSet<>(store.getStaleCustomers());
+        for (Iterator<String> it = recentlyActive.iterator(); it.hasNext();) {
+            stale.add(it.next());
+            it.remove();
+        }
+        if (!stale.isEmpty()) {
+            precompute(new ArrayList<>(stale));
+        }
+    }
+
+    /**
+     * Compute and store the lists of the given customers in parallel.
+     *
+     * @return Number of lists computed
+     */
+    int precompute(List<String> customerIds) {
+        AtomicInteger computed = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new PrecomputeTask(customerIds, 0, customerIds.size(), computed));
+        } finally {
+            pool.shutdown();
+        }
+        return computed.get();
+    }
+
+    private List<Product> compute(String customerId) {
+        long computedAt = System.currentTimeMillis();
+        List<Product> products = recommendationService.getRecommendations(customerId, STORED_SIZE);
+        List<String> ids = new ArrayList<>(products.size());
+        for (Product product : products) {
+            ids.add(product.getProductId());
+        }
+        store.put(customerId, ids, computedAt);
+        return products;
+    }
+
+    private List<Product> hydrate(List<String> productIds, int limit) {
+        List<Product> products = new ArrayList<>(Math.min(limit, productIds.size()));
+        for (int i = 0; i < productIds.size() && products.size() < limit; i++) {
+            categoryIndex.getProduct(productIds.get(i))
+                    .filter(ProductCategoryIndex::inStock)
+                    .ifPresent(products::add);
+        }
+        return products;
+    }
+
+    /** Splits the customer list until chunks are small enough to compute. */
+    private class PrecomputeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> customerIds;
+
+        private final int from;
+
+        private final int to;
+
+        private final AtomicInteger computed;
+
+        PrecomputeTask(List<String> customerIds, int from, int to, AtomicInteger computed) {
+            this.customerIds = customerIds;
+            this.from = from;
+            this.to = to;
+            this.computed = computed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    try {
+                        PrecomputedRecommendationService.this.compute(customerIds.get(i));
+                        computed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        System.out.println("[PrecomputedRecommendationService] Failed for customer "
+                                + customerIds.get(i) + ": " + e.getMessage());
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PrecomputeTask(customerIds, from, mid, computed),
+                    new PrecomputeTask(customerIds, mid, to, computed));
+        }
+    }
+}
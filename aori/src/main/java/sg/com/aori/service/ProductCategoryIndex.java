@@ -0,0 +1,275 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.CategoryChangedEvent;
+import sg.com.aori.event.ProductChangedEvent;
+import sg.com.aori.model.Product;
+import sg.com.aori.repository.ProductRepository;
+
+/**
+ * Shared in-memory index of products per category, used by the
+ * recommendation endpoints instead of querying and sorting the product table
+ * on every request.
+ *
+ * Each category holds an array of its in-stock products, kept sorted by
+ * rating (highest first), so a top-K lookup is a walk over the front of the
+ * array. All products (including out-of-stock ones) are also kept by ID so
+ * callers can resolve a product's category without a query.
+ *
+ * The index is loaded lazily on first use and kept current through
+ * {@link ProductChangedEvent}s published by CRUDProductService and, for
+ * stock totals, by ProductStockAggregator. The products of a changed
+ * category are reloaded so they carry its new name.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Added allProducts for the popularity ranking
+ * @version 1.2 - Applies product changes before the indexes that read from it
+ * @version 1.3 - Reloads a category's products when the category changes
+ */
+
+@Service
+public class ProductCategoryIndex {
+
+    static final Comparator<Product> BY_RATING = Comparator
+            .comparing(Product::getRating, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Product::getProductId);
+
+    private static final Product[] EMPTY = new Product[0];
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private volatile Map<String, Product> productsById = new ConcurrentHashMap<>();
+
+    private volatile Map<String, Product[]> inStockByCategory = new ConcurrentHashMap<>();
+
+    // category each product was filed under, since cached entities may be
+    // mutated in place before their change event arrives
+    private volatile Map<String, String> indexedCategory = new HashMap<>();
+
+    private volatile boolean loaded = false;
+
+    /**
+     * Get the highest rated in-stock products of a category.
+     *
+     * @param categoryId The category ID
+     * @param limit      Maximum number of products to return
+     * @param exclude    Products matching this predicate are skipped (may be
+     *                   null)
+     * @return Up to limit products, highest rated first
+     */
+    public List<Product> topInCategory(String categoryId, int limit, Predicate<Product> exclude) {
+        List<Product> result = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        collectTopInCategory(categoryId, limit, exclude, result);
+        return result;
+    }
+
+    /**
+     * Append the highest rated in-stock products of a category to an existing
+     * list until it holds limit entries.
+     *
+     * @return true if the list is full
+     */
+    public boolean collectTopInCategory(String categoryId, int limit, Predicate<Product> exclude,
+            List<Product> target) {
+        if (categoryId == null || target.size() >= limit) {
+            return target.size() >= limit;
+        }
+        ensureLoaded();
+        Product[] ranked = inStockByCategory.getOrDefault(categoryId, EMPTY);
+        for (Product product : ranked) {
+            if (target.size() >= limit) {
+                break;
+            }
+            if (exclude == null || !exclude.test(product)) {
+                target.add(product);
+            }
+        }
+        return target.size() >= limit;
+    }
+
+    public Optional<Product> getProduct(String productId) {
+        if (productId == null) {
+            return Optional.empty();
+        }
+        ensureLoaded();
+        return Optional.ofNullable(productsById.get(productId));
+    }
+
+    public String getCategoryId(String productId) {
+        return getProduct(productId).map(Product::getCategoryId).orElse(null);
+    }
+
+    public boolean isInStock(String productId) {
+        return getProduct(productId).map(ProductCategoryIndex::inStock).orElse(false);
+    }
+
+    /**
+     * All in-stock products across every category, highest rated first.
+     */
+    public List<Product> allInStock() {
+        ensureLoaded();
+        List<Product> all = new ArrayList<>();
+        for (Product[] ranked : inStockByCategory.values()) {
+            Collections.addAll(all, ranked);
+        }
+        all.sort(BY_RATING);
+        return all;
+    }
+
+    /**
+     * Every indexed product, in no particular order.
+     */
+    public Collection<Product> allProducts() {
+        ensureLoaded();
+        return Collections.unmodifiableCollection(productsById.values());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE) // SimilarProductIndex reads the updated product from here
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!loaded) {
+            return;
+        }
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            productRepository.findByIdWithCategory(event.getProductId()).ifPresentOrElse(
+                    this::upsert,
+                    () -> remove(event.getProductId()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1) // after CategoryRegistry, before the search index re-keys
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!loaded) {
+            return;
+        }
+        List<String> productIds = new ArrayList<>();
+        for (Product product : productsById.values()) {
+            if (event.getCategoryId().equals(product.getCategoryId())) {
+                productIds.add(product.getProductId());
+            }
+        }
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Set<String> missing = new HashSet<>(productIds);
+        for (Product product : productRepository.findAllWithCategoryByIdIn(productIds)) {
+            upsert(product);
+            missing.remove(product.getProductId());
+        }
+        missing.forEach(this::remove);
+    }
+
+    /**
+     * Rebuild the whole index from the product table.
+     */
+    public synchronized void refresh() {
+        List<Product> products = productRepository.findAllWithCategory();
+
+        Map<String, Product> byId = new ConcurrentHashMap<>();
+        Map<String, String> filedUnder = new HashMap<>();
+        Map<String, List<Product>> grouped = new HashMap<>();
+        for (Product product : products) {
+            byId.put(product.getProductId(), product);
+            if (product.getCategoryId() != null && inStock(product)) {
+                filedUnder.put(product.getProductId(), product.getCategoryId());
+                grouped.computeIfAbsent(product.getCategoryId(), k -> new ArrayList<>()).add(product);
+            }
+        }
+
+        Map<String, Product[]> byCategory = new ConcurrentHashMap<>();
+        grouped.forEach((categoryId, list) -> {
+            Product[] ranked = list.toArray(EMPTY);
+            Arrays.sort(ranked, BY_RATING);
+            byCategory.put(categoryId, ranked);
+        });
+
+        productsById = byId;
+        inStockByCategory = byCategory;
+        indexedCategory = filedUnder;
+        loaded = true;
+        System.out.println("[ProductCategoryIndex] Indexed " + products.size() + " products in "
+                + inStockByCategory.size() + " categories");
+    }
+
+    synchronized void upsert(Product product) {
+        productsById.put(product.getProductId(), product);
+        String previousCategory = indexedCategory.remove(product.getProductId());
+        if (previousCategory != null) {
+            removeFromCategory(previousCategory, product.getProductId());
+        }
+        if (product.getCategoryId() != null && inStock(product)) {
+            insertIntoCategory(product.getCategoryId(), product);
+            indexedCategory.put(product.getProductId(), product.getCategoryId());
+        }
+    }
+
+    synchronized void remove(String productId) {
+        productsById.remove(productId);
+        String previousCategory = indexedCategory.remove(productId);
+        if (previousCategory != null) {
+            removeFromCategory(previousCategory, productId);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    refresh();
+                }
+            }
+        }
+    }
+
+    private void insertIntoCategory(String categoryId, Product product) {
+        Product[] ranked = inStockByCategory.getOrDefault(categoryId, EMPTY);
+        int pos = Arrays.binarySearch(ranked, product, BY_RATING);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        Product[] updated = new Product[ranked.length + 1];
+        System.arraycopy(ranked, 0, updated, 0, pos);
+        updated[pos] = product;
+        System.arraycopy(ranked, pos, updated, pos + 1, ranked.length - pos);
+        inStockByCategory.put(categoryId, updated);
+    }
+
+    private void removeFromCategory(String categoryId, String productId) {
+        Product[] ranked = inStockByCategory.get(categoryId);
+        if (ranked == null) {
+            return;
+        }
+        for (int i = 0; i < ranked.length; i++) {
+            if (ranked[i].getProductId().equals(productId)) {
+                if (ranked.length == 1) {
+                    inStockByCategory.remove(categoryId);
+                } else {
+                    Product[] updated = new Product[ranked.length - 1];
+                    System.arraycopy(ranked, 0, updated, 0, i);
+                    System.arraycopy(ranked, i + 1, updated, i, ranked.length - i - 1);
+                    inStockByCategory.put(categoryId, updated);
+                }
+                return;
+            }
+        }
+    }
+
+    static boolean inStock(Product product) {
+        return product.getStockQuantity() != null && product.getStockQuantity() > 0;
+    }
+}
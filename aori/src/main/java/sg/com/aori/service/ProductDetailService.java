@@ -0,0 +1,152 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import sg.com.aori.dto.ProductDetailDTO;
+import sg.com.aori.dto.SkuMatrixDTO;
+import sg.com.aori.model.Customer;
+import sg.com.aori.model.Product;
+import sg.com.aori.model.ProductReview;
+import sg.com.aori.repository.ProductRepository;
+import sg.com.aori.repository.ProductReviewRepository;
+import sg.com.aori.repository.WishlistRepository;
+
+/**
+ * Builds the product page payload in one call instead of one request per
+ * part (and one per colour and size for stock).
+ *
+ * It runs four queries, three of them in parallel: the product with its
+ * category, then its SKUs (one prefix query, see
+ * {@link SkuService#getStockMatrix}); all its reviews with their authors, from
+ * which the rating average, the rating buckets and the approved review list
+ * are all derived; and, for a signed-in customer, the wishlist check.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Service
+public class ProductDetailService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SkuService skuService;
+
+    @Autowired
+    private ProductReviewRepository reviewRepository;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    @Value("${aori.product.detail.threads:8}")
+    private int threads;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void startExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "product-detail-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        // bounded queue; when saturated the request thread runs the task itself
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 32), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Everything the product page shows.
+     *
+     * @param productId  The product ID
+     * @param customerId The signed-in customer (null or blank for anonymous)
+     * @return The detail, or empty if the product does not exist
+     */
+    public Optional<ProductDetailDTO> getDetail(String productId, String customerId) {
+        CompletableFuture<Optional<Product>> product = CompletableFuture
+                .supplyAsync(() -> productRepository.findByIdWithCategory(productId), executor);
+        CompletableFuture<SkuMatrixDTO> stock = product
+                .thenApplyAsync(p -> p.map(skuService::getStockMatrix).orElse(null), executor);
+        CompletableFuture<List<ProductReview>> reviews = CompletableFuture
+                .supplyAsync(() -> reviewRepository.findByProductIdByCreatedAtDesc(productId), executor);
+        CompletableFuture<Boolean> wishlisted = customerId == null || customerId.isBlank()
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(
+                        () -> wishlistRepository.existsByCustomerIdAndProductId(customerId, productId), executor);
+
+        try {
+            Optional<Product> found = product.join();
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            ProductDetailDTO detail = new ProductDetailDTO();
+            detail.setProduct(found.get());
+            detail.setStock(stock.join());
+            addReviews(detail, reviews.join());
+            detail.setWishlisted(wishlisted.join());
+            return Optional.of(detail);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Rating average and buckets over all reviews (as ViewReviewService
+     * computes them), and the approved ones for display.
+     */
+    static void addReviews(ProductDetailDTO detail, List<ProductReview> reviews) {
+        long sum = 0;
+        long rated = 0;
+        for (int i = 1; i <= 5; i++) {
+            detail.getRatingBuckets().put(i, 0L);
+        }
+        for (ProductReview review : reviews) {
+            if (review.getRating() != null) {
+                sum += review.getRating();
+                rated++;
+                detail.getRatingBuckets().merge(review.getRating(), 1L, Long::sum);
+            }
+            if (review.getStatus() == ProductReview.ReviewStatus.Approved) {
+                Map<String, Object> reviewData = new HashMap<>();
+                reviewData.put("reviewId", review.getReviewId());
+                reviewData.put("productId", review.getProductId());
+                reviewData.put("rating", review.getRating());
+                reviewData.put("title", review.getTitle());
+                reviewData.put("comment", review.getComment());
+                reviewData.put("createdAt", review.getCreatedAt());
+                reviewData.put("customerName", customerName(review.getUser()));
+                detail.getReviews().add(reviewData);
+            }
+        }
+        detail.setAverageRating(rated == 0 ? 0 : (double) sum / rated);
+    }
+
+    private static String customerName(Customer customer) {
+        if (customer == null) {
+            return "Anonymous";
+        }
+        String name = ((customer.getFirstName() != null ? customer.getFirstName() : "") +
+                (customer.getLastName() != null ? " " + customer.getLastName() : "")).trim();
+        return name.isEmpty() ? "Anonymous" : name;
+    }
+}
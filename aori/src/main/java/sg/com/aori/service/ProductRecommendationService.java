@@ -4,10 +4,12 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import sg.com.aori.model.*;
 import sg.com.aori.repository.*;
+import sg.com.aori.service.PurchaseHistoryCache.PurchasedProducts;
 
 /**
  * Service for generating product recommendations based on user purchase history
@@ -21,25 +23,57 @@ import sg.com.aori.repository.*;
  * @author Yunhe
  * @date 2025-10-12
  * @version 1.0
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.1 - Category lookups now walk the pre-sorted
+ *          ProductCategoryIndex instead of querying and sorting per request
+ * @version 1.2 - Purchased products come from PurchaseHistoryCache instead of
+ *          reloading every order item with its product on each call
+ * @version 1.3 - Added "frequently bought together" from CoPurchaseIndex
+ * @version 1.4 - Cart and view-history recommendations resolve categories in
+ *          one pass over the index instead of one findById per row, and only
+ *          scan the most recent views
+ * @version 1.5 - Split each strategy into a loader and a recommendFrom*
+ *          method over already-loaded data, so the home feed can share one
+ *          customer context across sources; popular products come from the
+ *          category index
+ * @version 1.6 - Popular products come from the time-decayed PopularityIndex
+ * @version 1.7 - Similar products come from the content-vector
+ *          SimilarProductIndex, topped up from the same category
+ * @version 1.8 - Category recommendations accept a slug as well as an ID,
+ *          resolved through CategoryRegistry
  */
 
 @Service
 public class ProductRecommendationService {
 
+    /** Most recent views considered by view-history recommendations. */
+    static final int VIEW_HISTORY_WINDOW = 50;
+
     @Autowired
-    private OrderRepository orderRepository;
+    private CartRepository cartRepository;
 
     @Autowired
-    private OrderItemRepository orderItemRepository;
+    private sg.com.aori.repository.ViewHistoryRepository viewHistoryRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private ProductCategoryIndex categoryIndex;
 
     @Autowired
-    private CartRepository cartRepository;
+    private CategoryRegistry categoryRegistry;
 
     @Autowired
-    private sg.com.aori.repository.ViewHistoryRepository viewHistoryRepository;
+    private PurchaseHistoryCache purchaseHistoryCache;
+
+    @Autowired
+    private CoPurchaseIndex coPurchaseIndex;
+
+    @Autowired
+    private PopularityIndex popularityIndex;
+
+    @Autowired
+    private SimilarProductIndex similarProductIndex;
 
     /**
      * Generate product recommendations based on user's purchase history
@@ -49,31 +83,26 @@ public class ProductRecommendationService {
      * @return List of recommended products
      */
     public List<Product> getRecommendations(String customerId, int limit) {
-        List<Orders> customerOrders = orderRepository.findByCustomerId(customerId);
-
-        if (customerOrders.isEmpty()) {
-            return getPopularProducts(limit);
-        }
-
-        List<String> orderIds = customerOrders.stream()
-                .map(Orders::getOrderId)
-                .collect(Collectors.toList());
-
-        List<OrderItem> orderItems = orderItemRepository.findOrderItemsWithProductDetails(orderIds);
+        return recommendFromPurchases(purchaseHistoryCache.get(customerId), limit);
+    }
 
-        if (orderItems.isEmpty()) {
+    /**
+     * Purchase-history recommendations over an already loaded purchase set
+     * 
+     * @param purchasedProductIds The customer's purchased products
+     * @param limit               Maximum number of recommendations to return
+     * @return List of recommended products
+     */
+    public List<Product> recommendFromPurchases(PurchasedProducts purchasedProductIds, int limit) {
+        if (purchasedProductIds.isEmpty()) {
             return getPopularProducts(limit);
         }
 
-        Set<String> purchasedProductIds = orderItems.stream()
-                .map(OrderItem::getProductId)
-                .collect(Collectors.toSet());
-
         Map<String, Integer> categoryFrequency = new HashMap<>();
-        for (OrderItem item : orderItems) {
-            Product product = item.getProduct();
-            if (product != null && product.getCategoryId() != null) {
-                categoryFrequency.merge(product.getCategoryId(), 1, Integer::sum);
+        for (int i = 0; i < purchasedProductIds.size(); i++) {
+            String categoryId = categoryIndex.getCategoryId(purchasedProductIds.getProductId(i));
+            if (categoryId != null) {
+                categoryFrequency.merge(categoryId, purchasedProductIds.getLineCount(i), Integer::sum);
             }
         }
 
@@ -85,28 +114,13 @@ public class ProductRecommendationService {
         List<Product> recommendations = new ArrayList<>();
         Set<String> addedProductIds = new HashSet<>();
 
+        // addedProductIds.add() doubles as the duplicate check across categories
         for (Map.Entry<String, Integer> entry : sortedCategories) {
-            String categoryId = entry.getKey();
-
-            List<Product> categoryProducts = productRepository.findByCategoryId(categoryId);
-
-            List<Product> filteredProducts = categoryProducts.stream()
-                    .filter(p -> !purchasedProductIds.contains(p.getProductId()))
-                    .filter(p -> !addedProductIds.contains(p.getProductId()))
-                    .filter(p -> p.getStockQuantity() != null && p.getStockQuantity() > 0) // Only in-stock products
-                    .sorted(Comparator.comparing(Product::getRating,
-                            Comparator.nullsLast(Comparator.reverseOrder())))
-                    .collect(Collectors.toList());
-
-            for (Product product : filteredProducts) {
-                if (recommendations.size() >= limit) {
-                    break;
-                }
-                recommendations.add(product);
-                addedProductIds.add(product.getProductId());
-            }
-
-            if (recommendations.size() >= limit) {
+            boolean full = categoryIndex.collectTopInCategory(entry.getKey(), limit,
+                    p -> purchasedProductIds.contains(p.getProductId())
+                            || !addedProductIds.add(p.getProductId()),
+                    recommendations);
+            if (full) {
                 break;
             }
         }
@@ -131,58 +145,37 @@ public class ProductRecommendationService {
      * Get popular products (fallback when no purchase history)
      * 
      * @param limit Maximum number of products to return
-     * @return List of popular products sorted by rating
+     * @return List of popular products, ranked by recent sales, views and
+     *         rating
      */
     public List<Product> getPopularProducts(int limit) {
-        List<Product> allProducts = productRepository.findAll();
-
-        return allProducts.stream()
-                .filter(p -> p.getStockQuantity() != null && p.getStockQuantity() > 0)
-                .sorted(Comparator.comparing(Product::getRating,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return popularityIndex.getTopProducts(limit);
     }
 
     /**
      * Get recommendations for a specific category based on user history
      * 
      * @param customerId The customer ID
-     * @param categoryId The category to get recommendations from
-     * @param limit      Maximum number of recommendations
+     * @param categoryIdOrSlug The category (ID or slug) to get recommendations
+     *                         from
+     * @param limit            Maximum number of recommendations
      * @return List of recommended products from the specified category
      */
-    public List<Product> getRecommendationsByCategory(String customerId, String categoryId, int limit) {
-        List<Orders> customerOrders = orderRepository.findByCustomerId(customerId);
-
-        Set<String> purchasedProductIds = new HashSet<>();
-        if (!customerOrders.isEmpty()) {
-            List<String> orderIds = customerOrders.stream()
-                    .map(Orders::getOrderId)
-                    .collect(Collectors.toList());
-
-            List<OrderItem> orderItems = orderItemRepository.findOrderItemsWithProductDetails(orderIds);
-            purchasedProductIds = orderItems.stream()
-                    .map(OrderItem::getProductId)
-                    .collect(Collectors.toSet());
-        }
-
-        List<Product> categoryProducts = productRepository.findByCategoryId(categoryId);
-
-        final Set<String> finalPurchasedProductIds = purchasedProductIds;
-
-        return categoryProducts.stream()
-                .filter(p -> !finalPurchasedProductIds.contains(p.getProductId()))
-                .filter(p -> p.getStockQuantity() != null && p.getStockQuantity() > 0)
-                .sorted(Comparator.comparing(Product::getRating,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(limit)
-                .collect(Collectors.toList());
+    public List<Product> getRecommendationsByCategory(String customerId, String categoryIdOrSlug, int limit) {
+        PurchasedProducts purchasedProductIds = purchaseHistoryCache.get(customerId);
+        String categoryId = categoryRegistry.findBySlugOrId(categoryIdOrSlug)
+                .map(Category::getCategoryId)
+                .orElse(categoryIdOrSlug);
+
+        return categoryIndex.topInCategory(categoryId, limit,
+                p -> purchasedProductIds.contains(p.getProductId()));
     }
 
     /**
      * Get similar products based on a specific product
-     * (products from the same category, excluding the product itself)
+     * (nearest products by content vector: category, collection, material,
+     * season, tags, colours, sizes and price band; excluding the product
+     * itself)
      * 
      * @param productId  The product ID to find similar products for
      * @param customerId The customer ID (to exclude already purchased)
@@ -190,46 +183,42 @@ public class ProductRecommendationService {
      * @return List of similar products
      */
     public List<Product> getSimilarProducts(String productId, String customerId, int limit) {
-        Optional<Product> productOpt = productRepository.findById(productId);
+        Optional<Product> productOpt = categoryIndex.getProduct(productId);
 
         if (productOpt.isEmpty()) {
             return Collections.emptyList();
         }
 
         Product product = productOpt.get();
-        String categoryId = product.getCategoryId();
-
-        if (categoryId == null) {
-            return Collections.emptyList();
+        PurchasedProducts purchasedProductIds = purchaseHistoryCache.get(customerId);
+
+        List<Product> similar = new ArrayList<>(similarProductIndex.findSimilar(productId, limit,
+                p -> purchasedProductIds.contains(p.getProductId())));
+
+        // top up from the same category if the graph returned too few
+        if (similar.size() < limit && product.getCategoryId() != null) {
+            Set<String> addedProductIds = new HashSet<>();
+            similar.forEach(p -> addedProductIds.add(p.getProductId()));
+            categoryIndex.collectTopInCategory(product.getCategoryId(), limit,
+                    p -> p.getProductId().equals(productId) // Exclude the product itself
+                            || purchasedProductIds.contains(p.getProductId())
+                            || !addedProductIds.add(p.getProductId()),
+                    similar);
         }
 
-        Set<String> purchasedProductIds = new HashSet<>();
-        if (customerId != null && !customerId.isEmpty()) {
-            List<Orders> customerOrders = orderRepository.findByCustomerId(customerId);
-            if (!customerOrders.isEmpty()) {
-                List<String> orderIds = customerOrders.stream()
-                        .map(Orders::getOrderId)
-                        .collect(Collectors.toList());
-
-                List<OrderItem> orderItems = orderItemRepository.findOrderItemsWithProductDetails(orderIds);
-                purchasedProductIds = orderItems.stream()
-                        .map(OrderItem::getProductId)
-                        .collect(Collectors.toSet());
-            }
-        }
-
-        List<Product> categoryProducts = productRepository.findByCategoryId(categoryId);
-
-        final Set<String> finalPurchasedProductIds = purchasedProductIds;
+        return similar;
+    }
 
-        return categoryProducts.stream()
-                .filter(p -> !p.getProductId().equals(productId)) // Exclude the product itself
-                .filter(p -> !finalPurchasedProductIds.contains(p.getProductId()))
-                .filter(p -> p.getStockQuantity() != null && p.getStockQuantity() > 0)
-                .sorted(Comparator.comparing(Product::getRating,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(limit)
-                .collect(Collectors.toList());
+    /**
+     * Get products frequently bought together with a specific product
+     * (products that appear in the same orders most often)
+     * 
+     * @param productId The product ID
+     * @param limit     Maximum number of products
+     * @return List of co-purchased in-stock products, most frequent first
+     */
+    public List<Product> getBoughtTogether(String productId, int limit) {
+        return coPurchaseIndex.getBoughtTogether(productId, limit);
     }
 
     /**
@@ -246,8 +235,23 @@ public class ProductRecommendationService {
      * @return List of recommended products based on cart contents
      */
     public List<Product> getRecommendationsFromCart(String customerId, int limit) {
-        List<ShoppingCart> cartItems = cartRepository.findByCustomerId(customerId);
+        List<String> cartItems = cartRepository.findByCustomerId(customerId).stream()
+                .map(ShoppingCart::getProductId)
+                .collect(Collectors.toList());
 
+        return recommendFromCart(cartItems, purchaseHistoryCache.get(customerId), limit);
+    }
+
+    /**
+     * Cart recommendations over already loaded cart contents
+     * 
+     * @param cartItems           Product IDs of the cart lines
+     * @param purchasedProductIds The customer's purchased products
+     * @param limit               Maximum number of recommendations to return
+     * @return List of recommended products based on cart contents
+     */
+    public List<Product> recommendFromCart(List<String> cartItems, PurchasedProducts purchasedProductIds,
+            int limit) {
         if (cartItems.isEmpty()) {
             return getPopularProducts(limit);
         }
@@ -255,16 +259,12 @@ public class ProductRecommendationService {
         Set<String> cartProductIds = new HashSet<>();
         Map<String, Integer> categoryFrequency = new HashMap<>();
 
-        for (ShoppingCart cartItem : cartItems) {
-            String productId = cartItem.getProductId();
+        for (String productId : cartItems) {
             cartProductIds.add(productId);
 
-            Optional<Product> productOpt = productRepository.findById(productId);
-            if (productOpt.isPresent()) {
-                Product product = productOpt.get();
-                if (product.getCategoryId() != null) {
-                    categoryFrequency.merge(product.getCategoryId(), 1, Integer::sum);
-                }
+            String categoryId = categoryIndex.getCategoryId(productId);
+            if (categoryId != null) {
+                categoryFrequency.merge(categoryId, 1, Integer::sum);
             }
         }
 
@@ -273,47 +273,16 @@ public class ProductRecommendationService {
                 .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
                 .collect(Collectors.toList());
 
-        Set<String> purchasedProductIds = new HashSet<>();
-        List<Orders> customerOrders = orderRepository.findByCustomerId(customerId);
-        if (!customerOrders.isEmpty()) {
-            List<String> orderIds = customerOrders.stream()
-                    .map(Orders::getOrderId)
-                    .collect(Collectors.toList());
-
-            List<OrderItem> orderItems = orderItemRepository.findOrderItemsWithProductDetails(orderIds);
-            purchasedProductIds = orderItems.stream()
-                    .map(OrderItem::getProductId)
-                    .collect(Collectors.toSet());
-        }
-
         List<Product> recommendations = new ArrayList<>();
         Set<String> addedProductIds = new HashSet<>();
 
         for (Map.Entry<String, Integer> entry : sortedCategories) {
-            String categoryId = entry.getKey();
-
-            List<Product> categoryProducts = productRepository.findByCategoryId(categoryId);
-
-            final Set<String> finalPurchasedProductIds = purchasedProductIds;
-
-            List<Product> filteredProducts = categoryProducts.stream()
-                    .filter(p -> !cartProductIds.contains(p.getProductId()))
-                    .filter(p -> !finalPurchasedProductIds.contains(p.getProductId()))
-                    .filter(p -> !addedProductIds.contains(p.getProductId()))
-                    .filter(p -> p.getStockQuantity() != null && p.getStockQuantity() > 0)
-                    .sorted(Comparator.comparing(Product::getRating,
-                            Comparator.nullsLast(Comparator.reverseOrder())))
-                    .collect(Collectors.toList());
-
-            for (Product product : filteredProducts) {
-                if (recommendations.size() >= limit) {
-                    break;
-                }
-                recommendations.add(product);
-                addedProductIds.add(product.getProductId());
-            }
-
-            if (recommendations.size() >= limit) {
+            boolean full = categoryIndex.collectTopInCategory(entry.getKey(), limit,
+                    p -> cartProductIds.contains(p.getProductId())
+                            || purchasedProductIds.contains(p.getProductId())
+                            || !addedProductIds.add(p.getProductId()),
+                    recommendations);
+            if (full) {
                 break;
             }
         }
@@ -352,9 +321,30 @@ public class ProductRecommendationService {
      * @return List of recommended products based on browsing history
      */
     public List<Product> getRecommendationsFromViewHistory(String customerId, int limit) {
-        List<sg.com.aori.model.ViewHistory> viewHistory = viewHistoryRepository
-                .findByUserIdOrderByTimestampDesc(customerId);
+        return recommendFromViewHistory(findRecentViews(customerId), purchaseHistoryCache.get(customerId), limit);
+    }
 
+    /**
+     * The customer's most recent views, newest first
+     * 
+     * @param customerId The customer ID
+     * @return At most VIEW_HISTORY_WINDOW views
+     */
+    public List<sg.com.aori.model.ViewHistory> findRecentViews(String customerId) {
+        return viewHistoryRepository.findByUserIdOrderByTimestampDesc(customerId,
+                PageRequest.of(0, VIEW_HISTORY_WINDOW));
+    }
+
+    /**
+     * View-history recommendations over already loaded views
+     * 
+     * @param viewHistory         Recent views, newest first
+     * @param purchasedProductIds The customer's purchased products
+     * @param limit               Maximum number of recommendations to return
+     * @return List of recommended products based on browsing history
+     */
+    public List<Product> recommendFromViewHistory(List<sg.com.aori.model.ViewHistory> viewHistory,
+            PurchasedProducts purchasedProductIds, int limit) {
         if (viewHistory.isEmpty()) {
             return getPopularProducts(limit);
         }
@@ -367,18 +357,13 @@ public class ProductRecommendationService {
             String productId = view.getProductId();
             viewedProductIds.add(productId);
 
-            Optional<Product> productOpt = productRepository.findById(productId);
-            if (productOpt.isPresent()) {
-                Product product = productOpt.get();
-                if (product.getCategoryId() != null) {
-                    String categoryId = product.getCategoryId();
+            String categoryId = categoryIndex.getCategoryId(productId);
+            if (categoryId != null) {
+                categoryFrequency.merge(categoryId, 1, Integer::sum);
 
-                    categoryFrequency.merge(categoryId, 1, Integer::sum);
-
-                    Long viewTime = view.getTimestamp();
-                    if (viewTime != null) {
-                        categoryRecency.merge(categoryId, viewTime, Math::max);
-                    }
+                Long viewTime = view.getTimestamp();
+                if (viewTime != null) {
+                    categoryRecency.merge(categoryId, viewTime, Math::max);
                 }
             }
         }
@@ -396,47 +381,16 @@ public class ProductRecommendationService {
                 })
                 .collect(Collectors.toList());
 
-        Set<String> purchasedProductIds = new HashSet<>();
-        List<Orders> customerOrders = orderRepository.findByCustomerId(customerId);
-        if (!customerOrders.isEmpty()) {
-            List<String> orderIds = customerOrders.stream()
-                    .map(Orders::getOrderId)
-                    .collect(Collectors.toList());
-
-            List<OrderItem> orderItems = orderItemRepository.findOrderItemsWithProductDetails(orderIds);
-            purchasedProductIds = orderItems.stream()
-                    .map(OrderItem::getProductId)
-                    .collect(Collectors.toSet());
-        }
-
         List<Product> recommendations = new ArrayList<>();
         Set<String> addedProductIds = new HashSet<>();
 
         for (Map.Entry<String, Integer> entry : sortedCategories) {
-            String categoryId = entry.getKey();
-
-            List<Product> categoryProducts = productRepository.findByCategoryId(categoryId);
-
-            final Set<String> finalPurchasedProductIds = purchasedProductIds;
-
-            List<Product> filteredProducts = categoryProducts.stream()
-                    .filter(p -> !viewedProductIds.contains(p.getProductId()))
-                    .filter(p -> !finalPurchasedProductIds.contains(p.getProductId()))
-                    .filter(p -> !addedProductIds.contains(p.getProductId()))
-                    .filter(p -> p.getStockQuantity() != null && p.getStockQuantity() > 0)
-                    .sorted(Comparator.comparing(Product::getRating,
-                            Comparator.nullsLast(Comparator.reverseOrder())))
-                    .collect(Collectors.toList());
-
-            for (Product product : filteredProducts) {
-                if (recommendations.size() >= limit) {
-                    break;
-                }
-                recommendations.add(product);
-                addedProductIds.add(product.getProductId());
-            }
-
-            if (recommendations.size() >= limit) {
+            boolean full = categoryIndex.collectTopInCategory(entry.getKey(), limit,
+                    p -> viewedProductIds.contains(p.getProductId())
+                            || purchasedProductIds.contains(p.getProductId())
+                            || !addedProductIds.add(p.getProductId()),
+                    recommendations);
+            if (full) {
                 break;
             }
         }
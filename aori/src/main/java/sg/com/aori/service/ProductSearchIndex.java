@@ -0,0 +1,894 @@
+package sg.com.aori.service;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.CategoryChangedEvent;
+import sg.com.aori.event.ProductChangedEvent;
+import sg.com.aori.model.Product;
+import sg.com.aori.utils.BitsetFacet;
+import sg.com.aori.utils.ColorNames;
+import sg.com.aori.utils.ProductVectorEncoder;
+import sg.com.aori.utils.SearchTokenizer;
+import sg.com.aori.utils.TrigramIndex;
+
+/**
+ * In-process inverted index for product search, replacing LIKE '%token%'
+ * scans of the product table.
+ *
+ * Indexed fields (with boosts): product name (3), category name (2), tags
+ * (1.5), collection (1), material (1) and description (0.5). Documents are
+ * ranked with BM25 over the boost-weighted term frequencies. Every query term
+ * must match; a term also matches indexed words it is a prefix of ("hood"
+ * finds "hoodie"), at a lower weight.
+ *
+ * The index is built at startup from the category index and updated from
+ * {@link ProductChangedEvent}s: a changed product's old document is dropped
+ * and a new one appended, unless none of its indexed fields changed (a stock
+ * update, for one). It is rebuilt once a quarter of its documents are
+ * dropped; the new index is built aside and swapped in, so searches are not
+ * held up by the rebuild.
+ *
+ * Category (by ID, so a rename only re-indexes the category's products),
+ * colour, size and price band are also held as dictionary-encoded bitsets
+ * over the documents ({@link BitsetFacet}). Filters are ANDed into
+ * the result bitset, and the facet counts of the result are one AND/popcount
+ * pass per value. Colour and size filters are answered from the SKU table
+ * ({@link SkuAttributeIndex}): a product matches if it has that variant in
+ * stock. Only products with no SKUs at all use their declared colours.
+ *
+ * A query term matching no indexed word, not even as a prefix, is treated as
+ * a typo. It is replaced by the product and category name words within one
+ * or two edits ({@link TrigramIndex}), at a lower weight. The trigram index
+ * has a memory budget and keeps the most frequent words.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Filters and facet counts over per-attribute bitsets
+ * @version 1.2 - Keyset paging: search returns one page after a given hit,
+ *          plus the exact total
+ * @version 1.3 - Typo tolerance through a trigram index of name words
+ * @version 1.4 - Product updates are applied before the catalogue version is
+ *          bumped
+ * @version 1.5 - Colour and size filters match in-stock SKU variants from
+ *          SkuAttributeIndex; products without SKUs fall back to their
+ *          declared colours and sizes
+ * @version 1.6 - Products whose indexed fields are unchanged are not
+ *          re-indexed; rebuilds run off-lock and are swapped in
+ * @version 1.7 - Bumps the catalogue version itself, only when a document
+ *          changed
+ * @version 1.8 - Category facet and filter keyed by category ID; a category
+ *          change re-indexes that category's products
+ */
+
+@Service
+public class ProductSearchIndex {
+
+    static final float K1 = 1.2f;
+
+    static final float B = 0.75f;
+
+    static final float PREFIX_WEIGHT = 0.7f;
+
+    static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    /** Weight of a corrected term, by edit distance. */
+    static final float[] TYPO_WEIGHTS = { 1f, 0.6f, 0.4f };
+
+    static final int MAX_CORRECTIONS = 8;
+
+    /** Upper bounds of the price facet buckets; the last bucket is open. */
+    static final int[] PRICE_BUCKETS = { 50, 100, 200, 500 };
+
+    private static final Comparator<SearchHit> RANKING = Comparator.comparing(SearchHit::getScore).reversed()
+            .thenComparing(SearchHit::getProductId);
+
+    /** Optional filters; null fields do not filter. */
+    public static final class Filters {
+
+        private final String category;
+
+        private final String color;
+
+        private final String size;
+
+        private final BigDecimal priceMin;
+
+        private final BigDecimal priceMax;
+
+        /**
+         * @param category Category ID
+         * @param color    Colour hex code or colour name, matched against
+         *                 in-stock variants
+         * @param size     Size label (case-insensitive), matched against
+         *                 in-stock variants
+         */
+        public Filters(String category, String color, String size, BigDecimal priceMin, BigDecimal priceMax) {
+            this.category = category;
+            this.color = color;
+            this.size = size;
+            this.priceMin = priceMin;
+            this.priceMax = priceMax;
+        }
+    }
+
+    /** One page of matches plus the total and facet counts over all of them. */
+    public static final class Result {
+
+        private final List<SearchHit> hits;
+
+        private final int total;
+
+        private final boolean hasMore;
+
+        private final Map<String, Map<String, Integer>> facets;
+
+        Result(List<SearchHit> hits, int total, boolean hasMore, Map<String, Map<String, Integer>> facets) {
+            this.hits = hits;
+            this.total = total;
+            this.hasMore = hasMore;
+            this.facets = facets;
+        }
+
+        public List<SearchHit> getHits() {
+            return hits;
+        }
+
+        /** Number of matches over all pages. */
+        public int getTotal() {
+            return total;
+        }
+
+        /** Whether matches follow the last hit of this page. */
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        /**
+         * @return Facet ("category", "color", "size", "price") to value to
+         *         number of matching products
+         */
+        public Map<String, Map<String, Integer>> getFacets() {
+            return facets;
+        }
+    }
+
+    /**
+     * A match and its sort key: score descending then product ID ascending for
+     * text queries, product ID descending otherwise. A hit is also the
+     * position to continue from on the next page.
+     */
+    public static final class SearchHit {
+
+        private final String productId;
+
+        private final float score;
+
+        public SearchHit(String productId, float score) {
+            this.productId = productId;
+            this.score = score;
+        }
+
+        public String getProductId() {
+            return productId;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    @Autowired
+    private SkuAttributeIndex skuIndex;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Value("${aori.search.typo.memory-budget-kb:8192}")
+    private long typoBudgetKb = 8192;
+
+    // guards in-place changes to the current index against searches; a
+    // rebuild only takes it to swap the new index in
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object rebuildLock = new Object();
+
+    private final ThreadLocal<Accumulator> accumulators = ThreadLocal.withInitial(Accumulator::new);
+
+    private volatile Index index = new Index(0);
+
+    // products changed while a rebuild runs, re-applied to the new index
+    // before it is swapped in; guarded by the write lock
+    private Set<String> changedDuringRebuild;
+
+    private volatile boolean built = false;
+
+    /**
+     * Find one page of the products matching every term of a query and the
+     * filters.
+     *
+     * @param text    Free-text query; blank matches every product
+     * @param filters Attribute filters (may be null)
+     * @param after   Last hit of the previous page (null for the first page)
+     * @param limit   Page size
+     * @return Matches after the given hit, best first (ties by product ID);
+     *         without query terms, by product ID descending. The total and
+     *         facets count all matches.
+     */
+    public Result search(String text, Filters filters, SearchHit after, int limit) {
+        List<String> terms = SearchTokenizer.tokenize(text);
+        ensureBuilt();
+
+        lock.readLock().lock();
+        try {
+            return index.search(terms, filters, after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Apply a product change, then bump the catalogue version if the
+     * product's document changed, so cached results tagged with the new
+     * version see the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!built) {
+            return;
+        }
+        boolean rebuildNeeded;
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event.getProductId());
+            }
+            if (!apply(index, event.getProductId(), event.isDeleted())) {
+                return;
+            }
+            rebuildNeeded = index.isFragmented();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        catalogVersion.bump();
+        if (rebuildNeeded) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Re-index the products of a changed category, whose name is one of
+     * their indexed fields. Runs after ProductCategoryIndex has reloaded them.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        if (!built) {
+            return;
+        }
+        int changed = 0;
+        lock.writeLock().lock();
+        try {
+            List<String> productIds = new ArrayList<>();
+            index.fieldsByProductId.forEach((productId, fields) -> {
+                if (event.getCategoryId().equals(fields.get(1))) {
+                    productIds.add(productId);
+                }
+            });
+            for (String productId : productIds) {
+                if (changedDuringRebuild != null) {
+                    changedDuringRebuild.add(productId);
+                }
+                if (apply(index, productId, false)) {
+                    changed++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (changed > 0) {
+            catalogVersion.bump();
+            System.out.println("[ProductSearchIndex] Re-indexed " + changed + " products of category "
+                    + event.getCategoryId());
+        }
+    }
+
+    /**
+     * Rebuild the whole index from the category index. The new index is built
+     * without the lock, so searches keep using the current one meanwhile.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = new HashSet<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            List<Product> products = new ArrayList<>(categoryIndex.allProducts());
+            Index fresh = build(products);
+
+            lock.writeLock().lock();
+            try {
+                for (String productId : changedDuringRebuild) {
+                    apply(fresh, productId, false);
+                }
+                changedDuringRebuild = null;
+                index = fresh;
+                built = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            catalogVersion.bump();
+            System.out.println("[ProductSearchIndex] Indexed " + products.size() + " products, "
+                    + fresh.postings.size() + " terms in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * Bring one product's document up to date with the category index. A
+     * product whose indexed fields did not change (e.g. only its stock did)
+     * is left alone.
+     *
+     * @return Whether the index changed
+     */
+    private boolean apply(Index target, String productId, boolean deleted) {
+        Product product = deleted ? null : categoryIndex.getProduct(productId).orElse(null);
+        if (product == null) {
+            return target.removeDocument(productId);
+        }
+        List<Object> fields = indexedFields(product);
+        List<Object> previous = target.fieldsByProductId.get(productId);
+        if (fields.equals(previous)) {
+            return false;
+        }
+        target.removeDocument(productId);
+        target.addDocument(product, fields);
+        // the typo index only holds product and category name words
+        if (previous == null || !fields.subList(0, 3).equals(previous.subList(0, 3))) {
+            nameTerms(product).forEach(target.nameWords::add);
+        }
+        return true;
+    }
+
+    private Index build(List<Product> products) {
+        Index fresh = new Index(products.size());
+        Map<String, Integer> nameTermCounts = new HashMap<>();
+        for (Product product : products) {
+            fresh.addDocument(product, indexedFields(product));
+            for (String term : nameTerms(product)) {
+                nameTermCounts.merge(term, 1, Integer::sum);
+            }
+        }
+
+        // most frequent words first, so the budget keeps the useful ones
+        List<String> vocabulary = new ArrayList<>(nameTermCounts.keySet());
+        vocabulary.sort((a, b) -> {
+            int cmp = Integer.compare(nameTermCounts.get(b), nameTermCounts.get(a));
+            return cmp != 0 ? cmp : a.compareTo(b);
+        });
+        fresh.nameWords = new TrigramIndex(typoBudgetKb * 1024);
+        for (String term : vocabulary) {
+            if (!fresh.nameWords.add(term)) {
+                System.out.println("[ProductSearchIndex] Typo index budget reached at " + fresh.nameWords.size()
+                        + " of " + vocabulary.size() + " words");
+                break;
+            }
+        }
+        return fresh;
+    }
+
+    /** Largest edit distance accepted when correcting a term. */
+    static int maxEdits(String term) {
+        return term.length() < 4 ? 0 : term.length() < 5 ? 1 : 2;
+    }
+
+    private static Set<String> nameTerms(Product product) {
+        Set<String> terms = new HashSet<>(SearchTokenizer.tokenize(product.getProductName()));
+        if (product.getCategory() != null) {
+            terms.addAll(SearchTokenizer.tokenize(product.getCategory().getCategoryName()));
+        }
+        return terms;
+    }
+
+    /**
+     * Everything a product's document, facets and price filter are built
+     * from, to tell whether a change needs re-indexing.
+     */
+    private static List<Object> indexedFields(Product product) {
+        return Arrays.asList(
+                product.getProductName(),
+                product.getCategoryId(),
+                product.getCategory() != null ? product.getCategory().getCategoryName() : null,
+                product.getTags(),
+                product.getCollection(),
+                product.getMaterial(),
+                product.getDescription(),
+                product.getColors(),
+                product.getSize(),
+                product.getPrice() != null ? product.getPrice().stripTrailingZeros() : null);
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    static String priceBucket(double price) {
+        int lower = 0;
+        for (int upper : PRICE_BUCKETS) {
+            if (price < upper) {
+                return lower + "-" + upper;
+            }
+            lower = upper;
+        }
+        return lower + "+";
+    }
+
+    private static float addField(Map<String, Float> weighted, String text, float boost) {
+        List<String> terms = SearchTokenizer.tokenize(text);
+        for (String term : terms) {
+            weighted.merge(term, boost, Float::sum);
+        }
+        return terms.size() * boost;
+    }
+
+    /**
+     * The documents, postings and facets. Changed in place (under the write
+     * lock) by product updates, and replaced as a whole by a rebuild.
+     */
+    private final class Index {
+
+        final TreeMap<String, Postings> postings = new TreeMap<>();
+
+        final Map<String, Integer> docByProductId = new HashMap<>();
+
+        // indexed fields of every live document, by product ID
+        final Map<String, List<Object>> fieldsByProductId = new HashMap<>();
+
+        String[] productIdByDoc;
+
+        float[] docLength;
+
+        long[] live;
+
+        double[] priceByDoc;
+
+        TrigramIndex nameWords = new TrigramIndex(0);
+
+        final BitsetFacet categoryFacet = new BitsetFacet();
+
+        final BitsetFacet colorFacet = new BitsetFacet();
+
+        final BitsetFacet sizeFacet = new BitsetFacet();
+
+        final BitsetFacet priceFacet = new BitsetFacet();
+
+        // live docs ordered by product ID descending, the order of unranked
+        // results; rebuilt on the first read after a change
+        volatile int[] docsByIdDesc;
+
+        int docCount;
+
+        int liveCount;
+
+        double totalLiveLength;
+
+        Index(int capacity) {
+            productIdByDoc = new String[Math.max(16, capacity)];
+            docLength = new float[productIdByDoc.length];
+            priceByDoc = new double[productIdByDoc.length];
+            live = new long[BitsetFacet.words(productIdByDoc.length)];
+        }
+
+        /** Whether over a quarter of the documents are dropped ones. */
+        boolean isFragmented() {
+            return (docCount - liveCount) * 4 > docCount;
+        }
+
+        Result search(List<String> terms, Filters filters, SearchHit after, int limit) {
+            long[] matches;
+            Accumulator acc = null;
+            if (terms.isEmpty()) {
+                matches = live.clone();
+            } else {
+                acc = accumulators.get();
+                scoreTerms(terms, acc);
+                matches = acc.matchedBits(terms.size(), live.length);
+            }
+            if (filters != null) {
+                applyFilters(matches, filters);
+            }
+
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            facets.put("category", categoryFacet.count(matches));
+            facets.put("color", colorFacet.count(matches));
+            facets.put("size", sizeFacet.count(matches));
+            facets.put("price", priceFacet.count(matches));
+
+            int total = 0;
+            for (long word : matches) {
+                total += Long.bitCount(word);
+            }
+
+            // one extra hit tells whether another page follows
+            List<SearchHit> hits = acc != null ? acc.collect(matches, productIdByDoc, after, limit + 1)
+                    : unranked(matches, after, limit + 1);
+            boolean hasMore = hits.size() > limit;
+            if (hasMore) {
+                hits = hits.subList(0, limit);
+            }
+            return new Result(hits, total, hasMore, facets);
+        }
+
+        private void scoreTerms(List<String> terms, Accumulator acc) {
+            acc.reset(docCount);
+            float avgLength = liveCount == 0 ? 1f : (float) (totalLiveLength / liveCount);
+
+            for (int t = 0; t < terms.size(); t++) {
+                String term = terms.get(t);
+                acc.beginTerm();
+
+                Postings exact = postings.get(term);
+                if (exact != null) {
+                    score(exact, 1f, t, avgLength, acc);
+                }
+                int expansions = 0;
+                for (Map.Entry<String, Postings> entry : postings
+                        .subMap(term, false, term + Character.MAX_VALUE, false).entrySet()) {
+                    if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    score(entry.getValue(), PREFIX_WEIGHT, t, avgLength, acc);
+                }
+
+                if (exact == null && expansions == 0) {
+                    for (TrigramIndex.Correction correction : nameWords.correct(term, maxEdits(term),
+                            MAX_CORRECTIONS)) {
+                        Postings corrected = postings.get(correction.getWord());
+                        if (corrected != null) {
+                            score(corrected, TYPO_WEIGHTS[correction.getDistance()], t, avgLength, acc);
+                        }
+                    }
+                }
+
+                acc.endTerm(t);
+            }
+        }
+
+        private void applyFilters(long[] matches, Filters filters) {
+            if (filters.category != null) {
+                BitsetFacet.and(matches, categoryFacet.union(filters.category::equals, matches.length));
+            }
+            if (filters.color != null || filters.size != null) {
+                applyVariantFilter(matches, filters.color, filters.size);
+            }
+            if (filters.priceMin != null || filters.priceMax != null) {
+                double min = filters.priceMin != null ? filters.priceMin.doubleValue() : Double.NEGATIVE_INFINITY;
+                double max = filters.priceMax != null ? filters.priceMax.doubleValue() : Double.POSITIVE_INFINITY;
+                for (int w = 0; w < matches.length; w++) {
+                    long word = matches[w];
+                    while (word != 0) {
+                        int doc = (w << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        if (Double.isNaN(priceByDoc[doc]) || priceByDoc[doc] < min || priceByDoc[doc] > max) {
+                            matches[w] &= ~(1L << doc);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Keep the matches that have an in-stock SKU of the colour and size, or
+         * that have no SKUs and declare both.
+         */
+        private void applyVariantFilter(long[] matches, String color, String size) {
+            long[] declared = matches.clone();
+            if (color != null) {
+                BitsetFacet.and(declared, colorFacet.union(hex -> ColorNames.matches(hex, color), declared.length));
+            }
+            if (size != null) {
+                BitsetFacet.and(declared, sizeFacet.union(size::equalsIgnoreCase, declared.length));
+            }
+            for (int w = 0; w < declared.length; w++) {
+                long word = declared[w];
+                while (word != 0) {
+                    int doc = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (skuIndex.hasVariants(productIdByDoc[doc])) {
+                        declared[w] &= ~(1L << doc);
+                    }
+                }
+            }
+
+            long[] inStock = new long[matches.length];
+            for (String productId : skuIndex.productsInStock(color, size)) {
+                Integer doc = docByProductId.get(productId);
+                if (doc != null) {
+                    inStock[doc >>> 6] |= 1L << doc;
+                }
+            }
+            for (int w = 0; w < matches.length; w++) {
+                matches[w] &= declared[w] | inStock[w];
+            }
+        }
+
+        private List<SearchHit> unranked(long[] matches, SearchHit after, int limit) {
+            int[] order = docsByIdDesc;
+            if (order == null) {
+                order = sortDocsByIdDesc();
+                docsByIdDesc = order;
+            }
+            int start = after == null ? 0 : firstBelow(order, after.getProductId());
+            List<SearchHit> hits = new ArrayList<>(Math.min(limit, 64));
+            for (int i = start; i < order.length && hits.size() < limit; i++) {
+                int doc = order[i];
+                if ((matches[doc >>> 6] & (1L << doc)) != 0) {
+                    hits.add(new SearchHit(productIdByDoc[doc], 0f));
+                }
+            }
+            return hits;
+        }
+
+        /** Position of the first doc whose product ID sorts below the given one. */
+        private int firstBelow(int[] order, String productId) {
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (productIdByDoc[order[mid]].compareTo(productId) >= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int[] sortDocsByIdDesc() {
+            Integer[] docs = new Integer[liveCount];
+            int n = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                if (isLive(doc)) {
+                    docs[n++] = doc;
+                }
+            }
+            Arrays.sort(docs, (a, b) -> productIdByDoc[b].compareTo(productIdByDoc[a]));
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = docs[i];
+            }
+            return order;
+        }
+
+        private void score(Postings list, float weight, int termIndex, float avgLength, Accumulator acc) {
+            float idf = (float) Math.log(1 + (liveCount - list.size + 0.5) / (list.size + 0.5));
+            for (int i = 0; i < list.size; i++) {
+                int doc = list.docs[i];
+                if (!isLive(doc) || !acc.matchedAllBefore(doc, termIndex)) {
+                    continue;
+                }
+                float tf = list.tfs[i];
+                float norm = K1 * (1 - B + B * docLength[doc] / avgLength);
+                acc.offer(doc, weight * idf * tf * (K1 + 1) / (tf + norm));
+            }
+        }
+
+        void addDocument(Product product, List<Object> fields) {
+            Map<String, Float> weighted = new HashMap<>();
+            float length = 0;
+            length += addField(weighted, product.getProductName(), 3f);
+            length += addField(weighted,
+                    product.getCategory() != null ? product.getCategory().getCategoryName() : null, 2f);
+            length += addField(weighted, product.getTags(), 1.5f);
+            length += addField(weighted, product.getCollection(), 1f);
+            length += addField(weighted, product.getMaterial(), 1f);
+            length += addField(weighted, product.getDescription(), 0.5f);
+
+            int doc = docCount++;
+            if (doc >= productIdByDoc.length) {
+                productIdByDoc = Arrays.copyOf(productIdByDoc, doc * 2);
+                docLength = Arrays.copyOf(docLength, doc * 2);
+                priceByDoc = Arrays.copyOf(priceByDoc, doc * 2);
+                live = Arrays.copyOf(live, BitsetFacet.words(doc * 2));
+            }
+            productIdByDoc[doc] = product.getProductId();
+            docLength[doc] = length;
+            priceByDoc[doc] = product.getPrice() != null ? product.getPrice().doubleValue() : Double.NaN;
+            live[doc >>> 6] |= 1L << doc;
+            liveCount++;
+            totalLiveLength += length;
+            docByProductId.put(product.getProductId(), doc);
+            fieldsByProductId.put(product.getProductId(), fields);
+            docsByIdDesc = null;
+
+            // doc IDs only grow, so appending keeps every postings list sorted
+            weighted.forEach((term, tf) -> postings.computeIfAbsent(term, k -> new Postings()).add(doc, tf));
+
+            if (product.getCategoryId() != null) {
+                categoryFacet.add(doc, product.getCategoryId());
+            }
+            for (String color : new LinkedHashSet<>(ProductVectorEncoder.parseJsonStrings(product.getColors()))) {
+                colorFacet.add(doc, color.toLowerCase(Locale.ROOT));
+            }
+            for (String size : new LinkedHashSet<>(ProductVectorEncoder.parseJsonStrings(product.getSize()))) {
+                sizeFacet.add(doc, size.toUpperCase(Locale.ROOT));
+            }
+            if (product.getPrice() != null) {
+                priceFacet.add(doc, priceBucket(product.getPrice().doubleValue()));
+            }
+        }
+
+        /**
+         * @return Whether the product had a live document
+         */
+        boolean removeDocument(String productId) {
+            fieldsByProductId.remove(productId);
+            Integer doc = docByProductId.remove(productId);
+            if (doc == null || !isLive(doc)) {
+                return false;
+            }
+            live[doc >>> 6] &= ~(1L << doc);
+            liveCount--;
+            totalLiveLength -= docLength[doc];
+            docsByIdDesc = null;
+            return true;
+        }
+
+        private boolean isLive(int doc) {
+            return (live[doc >>> 6] & (1L << doc)) != 0;
+        }
+    }
+
+    private static final class Postings {
+
+        int[] docs = new int[4];
+
+        float[] tfs = new float[4];
+
+        int size;
+
+        void add(int doc, float tf) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2);
+            }
+            docs[size] = doc;
+            tfs[size] = tf;
+            size++;
+        }
+    }
+
+    /**
+     * Per-thread scoring state, reused across queries. A document stays a
+     * candidate only while it has matched every term so far; for each term
+     * the best-scoring expansion counts.
+     */
+    private static final class Accumulator {
+
+        float[] scores = new float[0];
+
+        float[] best = new float[0];
+
+        int[] matched = new int[0];
+
+        int[] touched = new int[0];
+
+        int touchedCount;
+
+        int[] termTouched = new int[0];
+
+        int termTouchedCount;
+
+        void reset(int docCount) {
+            if (scores.length < docCount) {
+                int capacity = Math.max(docCount, scores.length * 2);
+                scores = new float[capacity];
+                best = new float[capacity];
+                matched = new int[capacity];
+                touched = new int[capacity];
+                termTouched = new int[capacity];
+            } else {
+                for (int i = 0; i < touchedCount; i++) {
+                    scores[touched[i]] = 0;
+                    matched[touched[i]] = 0;
+                }
+            }
+            touchedCount = 0;
+        }
+
+        boolean matchedAllBefore(int doc, int termIndex) {
+            return matched[doc] == termIndex;
+        }
+
+        void beginTerm() {
+            termTouchedCount = 0;
+        }
+
+        void offer(int doc, float score) {
+            if (best[doc] == 0) {
+                termTouched[termTouchedCount++] = doc;
+            }
+            if (score > best[doc]) {
+                best[doc] = score;
+            }
+        }
+
+        void endTerm(int termIndex) {
+            for (int i = 0; i < termTouchedCount; i++) {
+                int doc = termTouched[i];
+                if (termIndex == 0) {
+                    touched[touchedCount++] = doc;
+                }
+                scores[doc] += best[doc];
+                matched[doc] = termIndex + 1;
+                best[doc] = 0;
+            }
+        }
+
+        long[] matchedBits(int termCount, int words) {
+            long[] bits = new long[words];
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (matched[doc] == termCount) {
+                    bits[doc >>> 6] |= 1L << doc;
+                }
+            }
+            return bits;
+        }
+
+        /**
+         * The best {@code limit} matches ranked after {@code after}, kept in a
+         * bounded heap so a page costs the same however many docs match.
+         */
+        List<SearchHit> collect(long[] matches, String[] productIdByDoc, SearchHit after, int limit) {
+            PriorityQueue<SearchHit> best = new PriorityQueue<>(RANKING.reversed());
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if ((matches[doc >>> 6] & (1L << doc)) == 0) {
+                    continue;
+                }
+                SearchHit hit = new SearchHit(productIdByDoc[doc], scores[doc]);
+                if (after != null && RANKING.compare(hit, after) <= 0) {
+                    continue;
+                }
+                if (best.size() < limit) {
+                    best.add(hit);
+                } else if (RANKING.compare(hit, best.peek()) < 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+            List<SearchHit> hits = new ArrayList<>(best);
+            hits.sort(RANKING);
+            return hits;
+        }
+    }
+}
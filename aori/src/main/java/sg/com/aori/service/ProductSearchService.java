@@ -1,15 +1,22 @@
 package sg.com.aori.service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
-import jakarta.persistence.*;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
 
+import sg.com.aori.dto.ProductSearchResultDTO;
+import sg.com.aori.model.Category;
 import sg.com.aori.model.Product;
-import sg.com.aori.repository.CategoryRepository;
+import sg.com.aori.repository.ProductRepository;
+import sg.com.aori.utils.ColorNames;
 
 /**
  * Service for searching products with pagination and sorting.
@@ -18,106 +25,309 @@ import sg.com.aori.repository.CategoryRepository;
  * @date 2025-10-08
  * @version 1.0
  * @version 1.1
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.2 - Free-text matching and ranking moved to the in-memory
+ *          ProductSearchIndex; filters are applied to the indexed products and
+ *          only the final IDs are loaded from the database. The color filter
+ *          now matches the product's colour swatches.
+ * @version 1.3 - Filtering moved into the index's attribute bitsets; the
+ *          response carries category/color/size/price facet counts
+ * @version 1.4 - Keyset pagination with an opaque cursor and a total hit
+ *          count; only the page is loaded from the database
+ * @version 1.5 - Responses cached by normalised query in SearchResultCache,
+ *          invalidated by catalogue version
+ * @version 1.6 - Category names come from CategoryRegistry instead of a
+ *          table read per search; the category parameter also accepts a slug
+ *          or ID
+ * @version 1.7 - Stage timings, result sizes and cache hits recorded through
+ *          SearchMetrics
+ * @version 1.8 - First-page searches recorded in SearchAnalytics; the cache is
+ *          pre-warmed with the most searched queries at startup
+ * @version 1.9 - The cache holds product IDs; products are loaded per request
+ *          so their stock is current
+ * @version 2.0 - Categories are filtered by ID; the category facet is mapped
+ *          back to current names through CategoryRegistry
+ * @version 2.1 - Search traces, including pre-warm ones, are finished in a
+ *          finally block
  */
 
 @Service
 public class ProductSearchService {
 
-    @PersistenceContext
-    private EntityManager em;
+    public static final int DEFAULT_PAGE_SIZE = 24;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final CategoryRegistry categoryRegistry;
+
+    private final ProductRepository productRepository;
+
+    private final ProductSearchIndex searchIndex;
+
+    private final SearchResultCache resultCache;
 
-    private final CategoryRepository categoryRepository;
+    private final SearchMetrics searchMetrics;
+
+    private final SearchAnalytics searchAnalytics;
+
+    @Value("${aori.search.analytics.prewarm-count:20}")
+    private int prewarmCount = 20;
 
     private static final Set<String> COLOR_SET = Set.of(
             "red", "blue", "green", "black", "white", "yellow", "pink", "purple", "grey", "gray", "brown", "beige",
             "navy", "orange");
     private static final Set<String> SIZE_SET = Set.of("xs", "s", "m", "l", "xl", "2xl", "2x", "xxl");
 
-    public ProductSearchService(CategoryRepository categoryRepository) {
-        this.categoryRepository = categoryRepository;
+    public ProductSearchService(CategoryRegistry categoryRegistry, ProductRepository productRepository,
+            ProductSearchIndex searchIndex, SearchResultCache resultCache, SearchMetrics searchMetrics,
+            SearchAnalytics searchAnalytics) {
+        this.categoryRegistry = categoryRegistry;
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.resultCache = resultCache;
+        this.searchMetrics = searchMetrics;
+        this.searchAnalytics = searchAnalytics;
     }
 
-    public List<Product> search(String q,
+    /**
+     * Search products, one page at a time.
+     *
+     * @param cursor   Continuation token from the previous page (null for the
+     *                 first page)
+     * @param pageSize Page size, capped at {@link #MAX_PAGE_SIZE}
+     * @return One page of products, the total hit count, facet counts and the
+     *         token for the next page (null on the last page)
+     */
+    public ProductSearchResultDTO search(String q,
             String categoryParam,
             String colorParam,
             String sizeParam,
             BigDecimal priceMin,
-            BigDecimal priceMax) {
+            BigDecimal priceMax,
+            String cursor,
+            int pageSize) {
+        SearchMetrics.Trace trace = searchMetrics.start();
+        try {
+            return search(q, categoryParam, colorParam, sizeParam, priceMin, priceMax, cursor, pageSize, trace);
+        } finally {
+            searchMetrics.finish(trace);
+        }
+    }
 
-        String query = (q == null) ? "" : q.trim();
+    /**
+     * Search products, noting the time of each stage in a trace that the
+     * caller finishes (so it can add the serialization time).
+     */
+    public ProductSearchResultDTO search(String q,
+            String categoryParam,
+            String colorParam,
+            String sizeParam,
+            BigDecimal priceMin,
+            BigDecimal priceMax,
+            String cursor,
+            int pageSize,
+            SearchMetrics.Trace trace) {
+        long start = System.nanoTime();
+        ProductSearchResultDTO result = execute(q, categoryParam, colorParam, sizeParam, priceMin, priceMax, cursor,
+                pageSize, trace);
+        // later pages are the same search, so only first pages are counted
+        if (!StringUtils.hasText(cursor)) {
+            searchAnalytics.record(q, result.getTotal(), System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Run the most searched queries once so their first pages are cached.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarmCache() {
+        List<String> queries = searchAnalytics.getPrewarmQueries(prewarmCount);
+        for (String query : queries) {
+            SearchMetrics.Trace trace = searchMetrics.start();
+            try {
+                execute(query, null, null, null, null, null, null, DEFAULT_PAGE_SIZE, trace);
+            } finally {
+                searchMetrics.finish(trace);
+            }
+        }
+        System.out.println("[ProductSearchService] Pre-warmed search cache with " + queries.size() + " queries");
+    }
+
+    private ProductSearchResultDTO execute(String q,
+            String categoryParam,
+            String colorParam,
+            String sizeParam,
+            BigDecimal priceMin,
+            BigDecimal priceMax,
+            String cursor,
+            int pageSize,
+            SearchMetrics.Trace trace) {
 
-        Set<String> categoryNames = categoryRepository.findAll().stream()
-                .map(c -> Optional.ofNullable(c.getCategoryName()).orElse(""))
-                .filter(StringUtils::hasText)
-                .map(s -> s.toLowerCase(Locale.ROOT))
-                .collect(Collectors.toSet());
+        trace.begin();
+        String query = (q == null) ? "" : q.trim();
 
         String detectedCategory = null;
         String detectedColor = null;
         String detectedSize = null;
-        List<String> likeTokens = new ArrayList<>();
+        List<String> textTokens = new ArrayList<>();
 
         if (StringUtils.hasText(query)) {
             String[] tokens = query.split("\\s+");
             for (String t : tokens) {
                 String token = t.toLowerCase(Locale.ROOT);
-                if (detectedCategory == null && categoryNames.contains(token)) {
-                    detectedCategory = token;
+                Optional<Category> named = detectedCategory == null ? categoryRegistry.findByName(token)
+                        : Optional.empty();
+                if (named.isPresent()) {
+                    detectedCategory = named.get().getCategoryId();
                 } else if (detectedColor == null && COLOR_SET.contains(token)) {
                     detectedColor = token;
                 } else if (detectedSize == null && SIZE_SET.contains(token)) {
                     detectedSize = token;
                 } else {
-                    likeTokens.add(token);
+                    textTokens.add(token);
                 }
             }
         }
 
+        trace.end(SearchMetrics.Stage.PARSE);
+
+        trace.begin();
         if (StringUtils.hasText(categoryParam))
-            detectedCategory = categoryParam.toLowerCase(Locale.ROOT);
+            detectedCategory = categoryRegistry.findBySlugOrId(categoryParam)
+                    .or(() -> categoryRegistry.findByName(categoryParam))
+                    .map(Category::getCategoryId)
+                    .orElse(categoryParam);
+        trace.end(SearchMetrics.Stage.CATEGORY);
+
         if (StringUtils.hasText(colorParam))
             detectedColor = colorParam.toLowerCase(Locale.ROOT);
         if (StringUtils.hasText(sizeParam))
             detectedSize = sizeParam.toLowerCase(Locale.ROOT);
 
-        StringBuilder jpql = new StringBuilder(
-                "select p from Product p left join fetch p.category c where 1=1 ");
+        if (pageSize < 1)
+            pageSize = DEFAULT_PAGE_SIZE;
+        if (pageSize > MAX_PAGE_SIZE)
+            pageSize = MAX_PAGE_SIZE;
+
+        String text = String.join(" ", textTokens);
+        ProductSearchIndex.Filters filters = new ProductSearchIndex.Filters(detectedCategory, detectedColor,
+                detectedSize, priceMin, priceMax);
+        ProductSearchIndex.SearchHit after = decodeCursor(cursor);
+        int limit = pageSize;
+
+        String key = cacheKey(textTokens, detectedCategory, detectedColor, detectedSize, priceMin, priceMax,
+                cursor, pageSize);
+        trace.query(query, "category=" + detectedCategory + " color=" + detectedColor + " size=" + detectedSize
+                + " price=" + priceMin + ".." + priceMax + " limit=" + pageSize
+                + (cursor != null ? " (next page)" : ""));
+        SearchResultCache.Page page = resultCache.get(key, () -> load(text, filters, after, limit, trace));
+
+        trace.begin();
+        ProductSearchResultDTO response = new ProductSearchResultDTO();
+        response.setItems(hydrate(page.getProductIds()));
+        trace.end(SearchMetrics.Stage.HYDRATE);
+        response.setTotal(page.getTotal());
+        response.setFacets(page.getFacets());
+        response.setNextCursor(page.getNextCursor());
+        trace.result(response.getTotal(), response.getItems().size());
+        return response;
+    }
+
+    private SearchResultCache.Page load(String text, ProductSearchIndex.Filters filters,
+            ProductSearchIndex.SearchHit after, int pageSize, SearchMetrics.Trace trace) {
+        trace.loaded();
+        trace.begin();
+        ProductSearchIndex.Result result = searchIndex.search(text, filters, after, pageSize);
+        trace.end(SearchMetrics.Stage.QUERY);
+
+        List<ProductSearchIndex.SearchHit> hits = result.getHits();
+        List<String> pageIds = new ArrayList<>(hits.size());
+        for (ProductSearchIndex.SearchHit hit : hits) {
+            pageIds.add(hit.getProductId());
+        }
 
-        Map<String, Object> params = new HashMap<>();
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>(result.getFacets());
+        facets.put("category", categoryNames(facets.get("category")));
+        String nextCursor = result.hasMore() && !hits.isEmpty() ? encodeCursor(hits.get(hits.size() - 1)) : null;
+        return new SearchResultCache.Page(pageIds, result.getTotal(), facets, nextCursor);
+    }
 
-        for (int i = 0; i < likeTokens.size(); i++) {
-            String name = "t" + i;
-            jpql.append(" and ( lower(p.productName) like concat('%', :").append(name).append(", '%') ")
-                    .append(" or  lower(c.categoryName) like concat('%', :").append(name).append(", '%') ) ");
-            params.put(name, likeTokens.get(i));
+    /**
+     * The index counts categories by ID; the response shows their names.
+     */
+    private Map<String, Integer> categoryNames(Map<String, Integer> countsById) {
+        Map<String, Integer> countsByName = new LinkedHashMap<>();
+        if (countsById != null) {
+            countsById.forEach((categoryId, count) -> categoryRegistry.findById(categoryId)
+                    .ifPresent(category -> countsByName.merge(category.getCategoryName(), count, Integer::sum)));
         }
+        return countsByName;
+    }
+
+    /**
+     * Cache key for a search. Queries that differ only in word order, case,
+     * spacing, "gray"/"grey" or how a price is written ("50" / "50.00") share
+     * a key, since they return the same results.
+     */
+    static String cacheKey(List<String> textTokens, String category, String color, String size,
+            BigDecimal priceMin, BigDecimal priceMax, String cursor, int pageSize) {
+        List<String> sorted = new ArrayList<>(textTokens);
+        Collections.sort(sorted);
+        return String.join("\u0001",
+                String.join(" ", sorted),
+                category == null ? "" : category,
+                color == null ? "" : ColorNames.canonicalName(color),
+                size == null ? "" : size,
+                priceMin == null ? "" : priceMin.stripTrailingZeros().toPlainString(),
+                priceMax == null ? "" : priceMax.stripTrailingZeros().toPlainString(),
+                cursor == null ? "" : cursor,
+                Integer.toString(pageSize));
+    }
+
+    /**
+     * The cursor is the sort key of the last hit: its score (as exact float
+     * bits) and product ID.
+     */
+    static String encodeCursor(ProductSearchIndex.SearchHit last) {
+        String key = Integer.toHexString(Float.floatToIntBits(last.getScore())) + ":" + last.getProductId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
 
-        if (detectedCategory != null) {
-            jpql.append(" and lower(c.categoryName) = :category ");
-            params.put("category", detectedCategory);
+    static ProductSearchIndex.SearchHit decodeCursor(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
         }
-        if (detectedColor != null) {
-            jpql.append(" and lower(p.color) = :color ");
-            params.put("color", detectedColor);
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = key.indexOf(':');
+            float score = Float.intBitsToFloat(Integer.parseUnsignedInt(key.substring(0, colon), 16));
+            return new ProductSearchIndex.SearchHit(key.substring(colon + 1), score);
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
         }
-        if (detectedSize != null) {
-            jpql.append(" and lower(p.size) = :size ");
-            params.put("size", detectedSize);
+    }
+
+    /**
+     * Load the given products with their categories, in the given order.
+     */
+    private List<Product> hydrate(List<String> productIds) {
+        if (productIds.isEmpty()) {
+            return new ArrayList<>();
         }
-        if (priceMin != null) {
-            jpql.append(" and p.price >= :priceMin ");
-            params.put("priceMin", priceMin);
+        Map<String, Product> loaded = new HashMap<>();
+        for (Product product : productRepository.findAllWithCategoryByIdIn(productIds)) {
+            loaded.put(product.getProductId(), product);
         }
-        if (priceMax != null) {
-            jpql.append(" and p.price <= :priceMax ");
-            params.put("priceMax", priceMax);
+        List<Product> products = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            Product product = loaded.get(productId);
+            if (product != null) {
+                products.add(product);
+            }
         }
-
-        jpql.append(" order by p.productId desc ");
-
-        TypedQuery<Product> tq = em.createQuery(jpql.toString(), Product.class);
-        params.forEach(tq::setParameter);
-
-        return tq.getResultList();
+        return products;
     }
 }
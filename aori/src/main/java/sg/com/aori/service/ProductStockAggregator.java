@@ -0,0 +1,179 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import sg.com.aori.event.ProductChangedEvent;
+import sg.com.aori.event.SkuChangedEvent;
+import sg.com.aori.repository.ProductRepository;
+import sg.com.aori.repository.SkuRepository;
+
+/**
+ * Keeps Product.stockQuantity equal to the sum of the product's SKU
+ * quantities, so reading a product never has to recompute or save it.
+ *
+ * Every committed SKU change carries the change in quantity
+ * ({@link SkuChangedEvent#getDelta()}). Deltas are summed per product code
+ * in memory, so a burst of checkouts of one product becomes a single row
+ * update, and a short periodic job applies them all in one transaction, then
+ * publishes {@link ProductChangedEvent}s so the in-memory product indexes
+ * pick up the new totals.
+ *
+ * A nightly job recomputes every total from the sku table and corrects any
+ * drift (e.g. a delta lost in a restart). Products without SKUs are left
+ * alone, and so are products whose SKUs change while it runs: their delta may
+ * already be in the recomputed total, and writing that total would count it
+ * twice once the delta is flushed.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Reconcile skips products changed while it runs
+ */
+
+@Service
+public class ProductStockAggregator {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SkuRepository skuRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // product code -> sum of deltas not yet written
+    private final ConcurrentHashMap<String, Integer> pendingDeltas = new ConcurrentHashMap<>();
+
+    // product codes with deltas received during a reconcile, null otherwise
+    private volatile Set<String> changedDuringReconcile;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSkuChanged(SkuChangedEvent event) {
+        if (event.getDelta() != 0) {
+            pendingDeltas.merge(event.getProductCode(), event.getDelta(), Integer::sum);
+            Set<String> changed = changedDuringReconcile;
+            if (changed != null) {
+                changed.add(event.getProductCode());
+            }
+        }
+    }
+
+    /**
+     * @return Number of products with deltas not yet written
+     */
+    public int getPendingCount() {
+        return pendingDeltas.size();
+    }
+
+    /**
+     * Write the pending deltas to the product rows in one transaction.
+     *
+     * @return Number of products updated
+     */
+    @Scheduled(initialDelayString = "${aori.stock.flush-interval-ms:1000}", fixedDelayString = "${aori.stock.flush-interval-ms:1000}")
+    public synchronized int flush() {
+        if (pendingDeltas.isEmpty()) {
+            return 0;
+        }
+        Map<String, Integer> batch = new HashMap<>();
+        for (String productCode : pendingDeltas.keySet()) {
+            Integer delta = pendingDeltas.remove(productCode);
+            if (delta != null && delta != 0) {
+                batch.put(productCode, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (Map.Entry<String, Integer> entry : batch.entrySet()) {
+                    productRepository.addStockQuantity(entry.getKey(), entry.getValue());
+                }
+            });
+        } catch (RuntimeException e) {
+            // put the batch back so the next run retries it
+            batch.forEach((productCode, delta) -> pendingDeltas.merge(productCode, delta, Integer::sum));
+            System.err.println("[ProductStockAggregator] Error writing stock deltas: " + e.getMessage());
+            return 0;
+        }
+
+        publishChanged(batch.keySet());
+        System.out.println("[ProductStockAggregator] Applied stock deltas to " + batch.size() + " products");
+        return batch.size();
+    }
+
+    /**
+     * Recompute the stock total of every product that has SKUs and correct
+     * the ones that drifted.
+     *
+     * @return Number of products corrected
+     */
+    @Scheduled(cron = "${aori.stock.reconcile-cron:0 15 3 * * *}")
+    public synchronized int reconcile() {
+        Set<String> changed = ConcurrentHashMap.newKeySet();
+        changedDuringReconcile = changed;
+        try {
+            flush();
+
+            Map<String, Integer> skuTotals = sumSkuQuantities();
+            Map<String, Integer> corrections = new HashMap<>();
+            for (Object[] row : productRepository.findStockQuantities()) {
+                Integer expected = skuTotals.get((String) row[0]);
+                if (expected != null && !expected.equals(row[2])) {
+                    corrections.put((String) row[0], expected);
+                }
+            }
+            // left to the next run; their pending deltas are still applied
+            int skipped = corrections.size();
+            corrections.keySet().removeAll(changed);
+            skipped -= corrections.size();
+
+            writeCorrections(corrections);
+            System.out.println("[ProductStockAggregator] Reconciled " + skuTotals.size() + " products, corrected "
+                    + corrections.size() + ", skipped " + skipped + " changed meanwhile");
+            return corrections.size();
+        } finally {
+            changedDuringReconcile = null;
+        }
+    }
+
+    Map<String, Integer> sumSkuQuantities() {
+        Map<String, Integer> skuTotals = new HashMap<>();
+        for (Object[] row : skuRepository.sumQuantityByProductCode()) {
+            skuTotals.put((String) row[0], ((Number) row[1]).intValue());
+        }
+        return skuTotals;
+    }
+
+    private void writeCorrections(Map<String, Integer> corrections) {
+        if (!corrections.isEmpty()) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (Map.Entry<String, Integer> entry : corrections.entrySet()) {
+                    productRepository.setStockQuantity(entry.getKey(), entry.getValue());
+                }
+            });
+            publishChanged(corrections.keySet());
+        }
+    }
+
+    private void publishChanged(Collection<String> productCodes) {
+        for (Object[] row : productRepository.findIdsByProductCodeIn(productCodes)) {
+            eventPublisher.publishEvent(ProductChangedEvent.saved((String) row[1]));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package sg.com.aori.service;
+
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.dto.SuggestionDTO;
+import sg.com.aori.event.CategoryChangedEvent;
+import sg.com.aori.event.ProductChangedEvent;
+import sg.com.aori.model.Category;
+import sg.com.aori.model.Product;
+import sg.com.aori.utils.SuggestTrie;
+
+/**
+ * Typeahead suggestions of product names, category names and collections,
+ * served from an in-memory {@link SuggestTrie} without touching the database.
+ *
+ * Every word start of a name is a key, so "hoo" suggests "Relaxed Hoodie".
+ * Products are ranked by their popularity score; categories and collections
+ * by the summed score of their products, so they rank above single products
+ * that share the prefix. Products with the same name are suggested once.
+ *
+ * Product and category changes mark the trie dirty; it is rebuilt by a short
+ * periodic job (batching bursts of edits into one rebuild), and also after a
+ * longer interval to pick up new popularity scores.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Categories read from CategoryRegistry; category edits mark
+ *          the trie dirty
+ */
+
+@Service
+public class ProductSuggestService {
+
+    /** Suggestions cached per trie node, the largest limit served. */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    /** Keys are cut to this length; nobody types further before choosing. */
+    static final int MAX_KEY_LENGTH = 40;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    @Autowired
+    private PopularityIndex popularityIndex;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
+    @Value("${aori.suggest.refresh-interval-ms:600000}")
+    private long refreshIntervalMs = 600000;
+
+    private volatile SuggestTrie<SuggestionDTO> trie;
+
+    private volatile boolean dirty = false;
+
+    private volatile long builtAt;
+
+    /**
+     * Get suggestions for a typed prefix.
+     *
+     * @param prefix What the user has typed so far
+     * @param limit  Maximum number of suggestions (at most
+     *               {@link #MAX_SUGGESTIONS})
+     * @return Suggestions, best first
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String key = normalise(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SuggestTrie<SuggestionDTO> current = trie;
+        if (current == null) {
+            rebuild();
+            current = trie;
+        }
+        return current.suggest(key, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        dirty = true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        dirty = true;
+    }
+
+    @Scheduled(initialDelayString = "${aori.suggest.rebuild-delay-ms:5000}", fixedDelayString = "${aori.suggest.rebuild-delay-ms:5000}")
+    public void rebuildIfStale() {
+        if (dirty || System.currentTimeMillis() - builtAt > refreshIntervalMs) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuild the trie from the category index and the categories.
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        dirty = false;
+
+        SuggestTrie.Builder<SuggestionDTO> builder = new SuggestTrie.Builder<>();
+        Map<String, Integer> productEntries = new HashMap<>();
+        Map<String, Integer> collectionEntries = new HashMap<>();
+        Map<String, Double> categoryScores = new HashMap<>();
+
+        for (Product product : new ArrayList<>(categoryIndex.allProducts())) {
+            double score = popularityIndex.getScore(product.getProductId());
+
+            String name = product.getProductName();
+            String nameKey = normalise(name);
+            if (!nameKey.isEmpty()) {
+                Integer entry = productEntries.get(nameKey);
+                if (entry == null) {
+                    entry = builder.addEntry(new SuggestionDTO(name, "product", product.getProductId()), score);
+                    productEntries.put(nameKey, entry);
+                    addWordKeys(builder, entry, nameKey);
+                } else if (score > builder.getWeight(entry)) {
+                    builder.setWeight(entry, score);
+                }
+            }
+
+            String collectionKey = normalise(product.getCollection());
+            if (!collectionKey.isEmpty()) {
+                Integer entry = collectionEntries.get(collectionKey);
+                if (entry == null) {
+                    entry = builder.addEntry(new SuggestionDTO(product.getCollection().trim(), "collection", null),
+                            0);
+                    collectionEntries.put(collectionKey, entry);
+                    addWordKeys(builder, entry, collectionKey);
+                }
+                builder.setWeight(entry, builder.getWeight(entry) + score);
+            }
+
+            if (product.getCategoryId() != null) {
+                categoryScores.merge(product.getCategoryId(), score, Double::sum);
+            }
+        }
+
+        for (Category category : categoryRegistry.getAll()) {
+            String key = normalise(category.getCategoryName());
+            if (!key.isEmpty()) {
+                int entry = builder.addEntry(
+                        new SuggestionDTO(category.getCategoryName(), "category", category.getSlug()),
+                        categoryScores.getOrDefault(category.getCategoryId(), 0.0));
+                addWordKeys(builder, entry, key);
+            }
+        }
+
+        SuggestTrie<SuggestionDTO> rebuilt = builder.build(MAX_SUGGESTIONS);
+        trie = rebuilt;
+        builtAt = System.currentTimeMillis();
+        System.out.println("[ProductSuggestService] Built suggestion trie with " + rebuilt.size() + " entries, "
+                + rebuilt.nodeCount() + " nodes in " + (builtAt - start) + " ms");
+    }
+
+    /** Key the entry by every suffix of its name that starts a word. */
+    private static void addWordKeys(SuggestTrie.Builder<SuggestionDTO> builder, int entry, String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (i == 0 || key.charAt(i - 1) == ' ') {
+                String suffix = key.substring(i);
+                builder.addKey(entry, suffix.length() > MAX_KEY_LENGTH ? suffix.substring(0, MAX_KEY_LENGTH) : suffix);
+            }
+        }
+    }
+
+    /**
+     * Lower-case, with runs of anything but letters and digits collapsed to
+     * one space. A trailing space is kept so "linen " matches "linen shirt"
+     * but not "linens".
+     */
+    static String normalise(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(Math.min(text.length(), MAX_KEY_LENGTH));
+        boolean space = false;
+        for (int i = 0; i < text.length() && key.length() < MAX_KEY_LENGTH; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                if (space && key.length() > 0) {
+                    key.append(' ');
+                }
+                key.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        if (space && key.length() > 0 && key.length() < MAX_KEY_LENGTH) {
+            key.append(' ');
+        }
+        return key.toString();
+    }
+}
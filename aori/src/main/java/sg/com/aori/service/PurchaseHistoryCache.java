@@ -0,0 +1,213 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.OrderChangedEvent;
+import sg.com.aori.model.Orders;
+import sg.com.aori.repository.OrderItemRepository;
+
+/**
+ * Per-customer cache of the products a customer has already bought, used by
+ * the recommendation service to exclude them and to weight categories.
+ *
+ * Each entry is filled by a single grouped projection query over order_item
+ * (cancelled and returned orders are ignored) and then kept current from
+ * {@link OrderChangedEvent}s: placed and reactivated orders add their lines,
+ * cancelled and returned orders subtract them. The query runs outside the
+ * map; each customer has a version bumped by their order changes, and a load
+ * that overlapped one of them is returned but not cached.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Load outside computeIfAbsent, guarded by a per-customer
+ *          version
+ */
+
+@Service
+public class PurchaseHistoryCache {
+
+    static final int MAX_CUSTOMERS = 10_000;
+
+    static final List<Orders.OrderStatus> EXCLUDED_STATUSES = List.of(
+            Orders.OrderStatus.Cancelled,
+            Orders.OrderStatus.Returned);
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    private final Map<String, PurchasedProducts> cache = new ConcurrentHashMap<>();
+
+    // customer -> number of order changes seen, so a load can tell it raced one
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    // bumped whenever versions is cleared to keep it bounded
+    private final AtomicLong versionEpoch = new AtomicLong();
+
+    /**
+     * Get the products a customer has bought, loading them on first access.
+     *
+     * @param customerId The customer ID (blank for anonymous users)
+     * @return The purchased products, never null
+     */
+    public PurchasedProducts get(String customerId) {
+        if (customerId == null || customerId.isBlank()) {
+            return PurchasedProducts.EMPTY;
+        }
+        PurchasedProducts cached = cache.get(customerId);
+        if (cached != null) {
+            return cached;
+        }
+        if (cache.size() >= MAX_CUSTOMERS) {
+            evictOne();
+        }
+
+        long epoch = versionEpoch.get();
+        long version = versions.getOrDefault(customerId, 0L);
+        PurchasedProducts loaded = load(customerId);
+        if (changedSince(customerId, epoch, version)) {
+            return loaded;
+        }
+        PurchasedProducts raced = cache.putIfAbsent(customerId, loaded);
+        if (raced != null) {
+            return raced;
+        }
+        if (changedSince(customerId, epoch, version)) {
+            // an order changed between the check and the put
+            cache.remove(customerId, loaded);
+        }
+        return loaded;
+    }
+
+    public void invalidate(String customerId) {
+        bumpVersion(customerId);
+        cache.remove(customerId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.getCustomerId() == null) {
+            return;
+        }
+        bumpVersion(event.getCustomerId());
+        switch (event.getType()) {
+            case PLACED, REACTIVATED -> cache.computeIfPresent(event.getCustomerId(),
+                    (id, purchased) -> purchased.plus(event.getProductIds()));
+            case CANCELLED, RETURNED -> cache.computeIfPresent(event.getCustomerId(),
+                    (id, purchased) -> purchased.minus(event.getProductIds()));
+        }
+    }
+
+    private void bumpVersion(String customerId) {
+        if (versions.size() >= MAX_CUSTOMERS) {
+            versionEpoch.incrementAndGet();
+            versions.clear();
+        }
+        versions.merge(customerId, 1L, Long::sum);
+    }
+
+    private boolean changedSince(String customerId, long epoch, long version) {
+        return versionEpoch.get() != epoch || versions.getOrDefault(customerId, 0L) != version;
+    }
+
+    private PurchasedProducts load(String customerId) {
+        List<Object[]> rows = orderItemRepository.countPurchasedProductsByCustomer(customerId, EXCLUDED_STATUSES);
+        Map<String, Integer> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put((String) row[0], ((Number) row[1]).intValue());
+        }
+        return PurchasedProducts.of(counts);
+    }
+
+    private void evictOne() {
+        Iterator<String> it = cache.keySet().iterator();
+        if (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Immutable set of purchased product IDs, stored as a sorted array with the
+     * number of order lines per product alongside.
+     */
+    public static final class PurchasedProducts {
+
+        static final PurchasedProducts EMPTY = new PurchasedProducts(new String[0], new int[0]);
+
+        private final String[] productIds;
+
+        private final int[] lineCounts;
+
+        private PurchasedProducts(String[] productIds, int[] lineCounts) {
+            this.productIds = productIds;
+            this.lineCounts = lineCounts;
+        }
+
+        static PurchasedProducts of(Map<String, Integer> counts) {
+            if (counts.isEmpty()) {
+                return EMPTY;
+            }
+            String[] ids = counts.keySet().toArray(new String[0]);
+            Arrays.sort(ids);
+            int[] lines = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                lines[i] = counts.get(ids[i]);
+            }
+            return new PurchasedProducts(ids, lines);
+        }
+
+        public boolean contains(String productId) {
+            return productId != null && Arrays.binarySearch(productIds, productId) >= 0;
+        }
+
+        public boolean isEmpty() {
+            return productIds.length == 0;
+        }
+
+        public int size() {
+            return productIds.length;
+        }
+
+        public String getProductId(int i) {
+            return productIds[i];
+        }
+
+        /**
+         * Number of order lines (across all active orders) for the i-th product.
+         */
+        public int getLineCount(int i) {
+            return lineCounts[i];
+        }
+
+        PurchasedProducts plus(List<String> orderLines) {
+            Map<String, Integer> counts = toMap();
+            for (String productId : orderLines) {
+                counts.merge(productId, 1, Integer::sum);
+            }
+            return of(counts);
+        }
+
+        PurchasedProducts minus(List<String> orderLines) {
+            Map<String, Integer> counts = toMap();
+            for (String productId : orderLines) {
+                counts.computeIfPresent(productId, (id, n) -> n > 1 ? n - 1 : null);
+            }
+            return of(counts);
+        }
+
+        private Map<String, Integer> toMap() {
+            Map<String, Integer> counts = new HashMap<>();
+            for (int i = 0; i < productIds.length; i++) {
+                counts.put(productIds[i], lineCounts[i]);
+            }
+            return counts;
+        }
+    }
+}
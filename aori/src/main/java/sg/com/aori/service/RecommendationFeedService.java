@@ -0,0 +1,221 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import sg.com.aori.dto.RecommendationFeedDTO;
+import sg.com.aori.model.Product;
+import sg.com.aori.model.ShoppingCart;
+import sg.com.aori.model.ViewHistory;
+import sg.com.aori.repository.CartRepository;
+import sg.com.aori.service.PurchaseHistoryCache.PurchasedProducts;
+
+/**
+ * Builds the storefront home feed in one call instead of one request per
+ * recommendation source.
+ *
+ * The customer's purchases, cart and recent views are loaded once, in
+ * parallel, and shared by the purchase, cart and view-history sources, which
+ * also run in parallel alongside the popular-products source. Each source has
+ * a latency budget; a source that fails or misses it is replaced with popular
+ * products. The sections are then interleaved into one de-duplicated list.
+ * When the pool's queue is full, tasks are rejected rather than run on the
+ * request thread, so an overloaded pool degrades to the fallbacks instead of
+ * blocking requests on slow sources. A task that misses its budget is
+ * cancelled, so it gives its pool thread back instead of holding it.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Fall back on pool saturation instead of running on the caller
+ * @version 1.2 - Cancel tasks that miss their budget
+ */
+
+@Service
+public class RecommendationFeedService {
+
+    static final String PURCHASES = "purchases";
+    static final String CART = "cart";
+    static final String HISTORY = "history";
+    static final String POPULAR = "popular";
+
+    @Autowired
+    private ProductRecommendationService recommendationService;
+
+    @Autowired
+    private PurchaseHistoryCache purchaseHistoryCache;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Value("${aori.recommendation.feed.threads:8}")
+    private int threads;
+
+    @Value("${aori.recommendation.feed.source-timeout-ms:200}")
+    private long sourceTimeoutMs;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void startExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "recommendation-feed-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        // bounded queue; when saturated new tasks are rejected and fall back
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 32), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Build the blended home feed for a customer.
+     *
+     * @param customerId The customer ID (blank for anonymous users)
+     * @param limit      Maximum number of products per section and in the
+     *                   blended list
+     * @return The feed, never null
+     */
+    public RecommendationFeedDTO getFeed(String customerId, int limit) {
+        RecommendationFeedDTO feed = new RecommendationFeedDTO();
+        feed.setCustomerId(customerId);
+
+        CompletableFuture<List<Product>> popular = withBudget(
+                submit(() -> recommendationService.getPopularProducts(limit)));
+
+        Map<String, CompletableFuture<List<Product>>> sources = new LinkedHashMap<>();
+        PurchasedProducts purchased = PurchasedProducts.EMPTY;
+        Set<String> cartProductIds = Collections.emptySet();
+
+        if (customerId != null && !customerId.isBlank()) {
+            // shared customer context, each part loaded once
+            CompletableFuture<PurchasedProducts> purchases = load(
+                    () -> purchaseHistoryCache.get(customerId), PurchasedProducts.EMPTY);
+            CompletableFuture<List<String>> cart = load(() -> cartRepository.findByCustomerId(customerId)
+                    .stream()
+                    .map(ShoppingCart::getProductId)
+                    .collect(Collectors.toList()), Collections.emptyList());
+            CompletableFuture<List<ViewHistory>> views = load(
+                    () -> recommendationService.findRecentViews(customerId), Collections.emptyList());
+
+            sources.put(PURCHASES, withBudget(purchases.thenCompose(
+                    p -> submit(() -> recommendationService.recommendFromPurchases(p, limit)))));
+            sources.put(HISTORY, withBudget(CompletableFuture.allOf(views, purchases).thenCompose(
+                    done -> submit(() -> recommendationService.recommendFromViewHistory(views.join(),
+                            purchases.join(), limit)))));
+            sources.put(CART, withBudget(CompletableFuture.allOf(cart, purchases).thenCompose(
+                    done -> submit(() -> recommendationService.recommendFromCart(cart.join(), purchases.join(),
+                            limit)))));
+
+            purchased = purchases.join();
+            cartProductIds = new HashSet<>(cart.join());
+        }
+        sources.put(POPULAR, popular);
+
+        List<Product> popularFallback = null;
+        for (Map.Entry<String, CompletableFuture<List<Product>>> source : sources.entrySet()) {
+            List<Product> products = source.getValue().join();
+            if (products == null) {
+                feed.getFallbackSources().add(source.getKey());
+                if (popularFallback == null) {
+                    // the popular source may itself have missed its budget
+                    popularFallback = recommendationService.getPopularProducts(limit);
+                }
+                products = popularFallback;
+            }
+            feed.getSections().put(source.getKey(), products);
+        }
+
+        feed.setItems(blend(feed.getSections().values(), purchased, cartProductIds, limit));
+        return feed;
+    }
+
+    /**
+     * Interleave the sections round-robin, skipping duplicates and products the
+     * customer already bought or has in the cart.
+     */
+    static List<Product> blend(Collection<List<Product>> sections, PurchasedProducts purchased,
+            Set<String> cartProductIds, int limit) {
+        List<Product> blended = new ArrayList<>(limit);
+        Set<String> added = new HashSet<>();
+        List<Iterator<Product>> cursors = sections.stream().map(List::iterator).collect(Collectors.toList());
+
+        boolean progressed = true;
+        while (blended.size() < limit && progressed) {
+            progressed = false;
+            for (Iterator<Product> cursor : cursors) {
+                while (cursor.hasNext()) {
+                    Product product = cursor.next();
+                    String productId = product.getProductId();
+                    if (!purchased.contains(productId) && !cartProductIds.contains(productId)
+                            && added.add(productId)) {
+                        blended.add(product);
+                        progressed = true;
+                        break;
+                    }
+                }
+                if (blended.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return blended;
+    }
+
+    /**
+     * Run a task on the pool within the source budget. If the pool rejects it
+     * or it misses the budget, the returned future fails and the caller's
+     * fallback applies; a task still queued or running is then cancelled.
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        result.orTimeout(sourceTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((value, e) -> running.cancel(true));
+        return result;
+    }
+
+    private <T> CompletableFuture<T> load(Supplier<T> loader, T fallback) {
+        return submit(loader)
+                .completeOnTimeout(fallback, sourceTimeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    System.out.println("[RecommendationFeedService] Failed to load customer context: " + e);
+                    return fallback;
+                });
+    }
+
+    private CompletableFuture<List<Product>> withBudget(CompletableFuture<List<Product>> source) {
+        return source
+                .completeOnTimeout(null, sourceTimeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    System.out.println("[RecommendationFeedService] Recommendation source failed: " + e);
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,271 @@
+package sg.com.aori.service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import sg.com.aori.model.SearchStat;
+import sg.com.aori.repository.SearchStatRepository;
+import sg.com.aori.utils.SpaceSaving;
+
+/**
+ * Search analytics: how often each query is searched, which queries find
+ * nothing, and overall result counts and latency.
+ *
+ * Recording is cheap enough for the search path: a few striped LongAdder
+ * increments and an offer to a lock-free queue (samples are dropped, and
+ * counted, if the queue is full). A background job drains the queue into
+ * Space-Saving sketches ({@link SpaceSaving}) of the most frequent and the
+ * most frequent zero-result queries, and another periodically writes the
+ * window's top queries and totals to the search_stats table in one batch.
+ *
+ * The most searched queries of the last week are used to pre-warm the search
+ * result cache at startup.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Service
+public class SearchAnalytics {
+
+    /** Longest query kept; longer ones are cut. */
+    static final int MAX_QUERY_LENGTH = 120;
+
+    private static final int QUEUE_CAPACITY = 65536;
+
+    private static final class Sample {
+
+        final String query;
+
+        final int total;
+
+        final long nanos;
+
+        Sample(String query, int total, long nanos) {
+            this.query = query;
+            this.total = total;
+            this.nanos = nanos;
+        }
+    }
+
+    @Autowired
+    private SearchStatRepository searchStatRepository;
+
+    @Value("${aori.search.analytics.sketch-size:1000}")
+    private int sketchSize = 1000;
+
+    @Value("${aori.search.analytics.rows-per-flush:100}")
+    private int rowsPerFlush = 100;
+
+    @Value("${aori.search.analytics.prewarm-days:7}")
+    private int prewarmDays = 7;
+
+    private final LongAdder searches = new LongAdder();
+
+    private final LongAdder zeroResults = new LongAdder();
+
+    private final LongAdder totalResults = new LongAdder();
+
+    private final LongAdder latencyNanos = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final ConcurrentLinkedQueue<Sample> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    // the fields below are guarded by this
+
+    private SpaceSaving topQueries;
+
+    private SpaceSaving zeroResultQueries;
+
+    private SpaceSaving windowTop;
+
+    private SpaceSaving windowZero;
+
+    private LocalDateTime windowStart = LocalDateTime.now();
+
+    private long windowSearches;
+
+    private long windowZeroResults;
+
+    private long windowResults;
+
+    private long windowLatencyNanos;
+
+    /**
+     * Record one search. Never blocks.
+     *
+     * @param query The query as typed (blank for filter-only browsing)
+     * @param total Total hits
+     * @param nanos Time taken to answer the search
+     */
+    public void record(String query, int total, long nanos) {
+        searches.increment();
+        totalResults.add(total);
+        latencyNanos.add(nanos);
+        if (total == 0) {
+            zeroResults.increment();
+        }
+        if (queued.incrementAndGet() > QUEUE_CAPACITY) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(new Sample(query, total, nanos));
+    }
+
+    /**
+     * Move recorded samples into the sketches.
+     */
+    @Scheduled(initialDelayString = "${aori.search.analytics.drain-interval-ms:1000}", fixedDelayString = "${aori.search.analytics.drain-interval-ms:1000}")
+    public synchronized void drain() {
+        ensureSketches();
+        Sample sample;
+        while ((sample = queue.poll()) != null) {
+            queued.decrementAndGet();
+            windowSearches++;
+            windowResults += sample.total;
+            windowLatencyNanos += sample.nanos;
+            if (sample.total == 0) {
+                windowZeroResults++;
+            }
+            String query = normalise(sample.query);
+            if (query.isEmpty()) {
+                continue;
+            }
+            topQueries.offer(query);
+            windowTop.offer(query);
+            if (sample.total == 0) {
+                zeroResultQueries.offer(query);
+                windowZero.offer(query);
+            }
+        }
+    }
+
+    /**
+     * Write the current window's totals and most frequent queries to
+     * search_stats, then start a new window.
+     */
+    @Scheduled(initialDelayString = "${aori.search.analytics.flush-interval-ms:300000}", fixedDelayString = "${aori.search.analytics.flush-interval-ms:300000}")
+    public void flush() {
+        List<SearchStat> rows = new ArrayList<>();
+        synchronized (this) {
+            drain();
+            if (windowSearches == 0) {
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+
+            SearchStat total = new SearchStat(SearchStat.Kind.TOTAL, null, windowStart, now);
+            total.setSearches(windowSearches);
+            total.setZeroResults(windowZeroResults);
+            total.setTotalResults(windowResults);
+            total.setTotalLatencyMs(windowLatencyNanos / 1e6);
+            rows.add(total);
+
+            for (SpaceSaving.Counter counter : windowTop.top(rowsPerFlush)) {
+                SearchStat row = new SearchStat(SearchStat.Kind.TOP, counter.getItem(), windowStart, now);
+                row.setSearches(counter.getCount());
+                row.setCountError(counter.getError());
+                rows.add(row);
+            }
+            for (SpaceSaving.Counter counter : windowZero.top(rowsPerFlush)) {
+                SearchStat row = new SearchStat(SearchStat.Kind.ZERO_RESULT, counter.getItem(), windowStart, now);
+                row.setSearches(counter.getCount());
+                row.setZeroResults(counter.getCount());
+                row.setCountError(counter.getError());
+                rows.add(row);
+            }
+
+            windowTop.clear();
+            windowZero.clear();
+            windowStart = now;
+            windowSearches = 0;
+            windowZeroResults = 0;
+            windowResults = 0;
+            windowLatencyNanos = 0;
+        }
+        searchStatRepository.saveAll(rows);
+        System.out.println("[SearchAnalytics] Flushed " + rows.size() + " search stat rows");
+    }
+
+    /**
+     * Most searched queries since startup.
+     */
+    public synchronized List<SpaceSaving.Counter> getTopQueries(int limit) {
+        drain();
+        return topQueries.top(limit);
+    }
+
+    /**
+     * Most searched queries that found nothing, since startup.
+     */
+    public synchronized List<SpaceSaving.Counter> getZeroResultQueries(int limit) {
+        drain();
+        return zeroResultQueries.top(limit);
+    }
+
+    /**
+     * Totals since startup.
+     */
+    public Map<String, Object> getTotals() {
+        long searchCount = searches.sum();
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("searches", searchCount);
+        totals.put("zeroResults", zeroResults.sum());
+        totals.put("zeroResultRate", searchCount == 0 ? 0.0 : (double) zeroResults.sum() / searchCount);
+        totals.put("averageResults", searchCount == 0 ? 0.0 : (double) totalResults.sum() / searchCount);
+        totals.put("averageLatencyMillis", searchCount == 0 ? 0.0 : latencyNanos.sum() / 1e6 / searchCount);
+        totals.put("dropped", dropped.sum());
+        return totals;
+    }
+
+    /**
+     * Queries worth pre-warming the search cache with: the most searched of
+     * the last few days, from search_stats, or since startup if none are
+     * stored yet.
+     */
+    public List<String> getPrewarmQueries(int limit) {
+        List<String> queries = new ArrayList<>();
+        for (Object[] row : searchStatRepository.findTopQueriesSince(LocalDateTime.now().minusDays(prewarmDays),
+                PageRequest.of(0, limit))) {
+            queries.add((String) row[0]);
+        }
+        if (queries.isEmpty()) {
+            for (SpaceSaving.Counter counter : getTopQueries(limit)) {
+                queries.add(counter.getItem());
+            }
+        }
+        return queries;
+    }
+
+    private void ensureSketches() {
+        if (topQueries == null) {
+            topQueries = new SpaceSaving(sketchSize);
+            zeroResultQueries = new SpaceSaving(sketchSize);
+            windowTop = new SpaceSaving(sketchSize);
+            windowZero = new SpaceSaving(sketchSize);
+        }
+    }
+
+    /** Lower-cased, single-spaced and cut to {@link #MAX_QUERY_LENGTH}. */
+    static String normalise(String query) {
+        if (query == null) {
+            return "";
+        }
+        String normalised = query.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return normalised.length() > MAX_QUERY_LENGTH ? normalised.substring(0, MAX_QUERY_LENGTH) : normalised;
+    }
+}
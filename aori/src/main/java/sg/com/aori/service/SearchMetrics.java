@@ -0,0 +1,230 @@
+package sg.com.aori.service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Per-stage timing of product search requests.
+ *
+ * Each request carries a {@link Trace} through the controller and service,
+ * which note how long each {@link Stage} took. When the request finishes the
+ * stages are recorded as Micrometer timers (aori.search.stage, tagged by
+ * stage, exposed at /actuator/metrics), together with the overall time, a
+ * histogram of result counts, zero-result and cache hit counts.
+ *
+ * Every request is also a JFR event (sg.com.aori.Search) holding the query,
+ * filters and stage times, so slow searches can be found in a flight
+ * recording taken in production (jcmd PID JFR.start), e.g. with a threshold
+ * on the event's duration.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Service
+public class SearchMetrics {
+
+    public enum Stage {
+        /** Tokenising the query and classifying words as category/colour/size */
+        PARSE,
+        /** Resolving the category parameter in the category registry */
+        CATEGORY,
+        /** Looking up and ranking matches in the search index */
+        QUERY,
+        /** Loading the page of products from the database */
+        HYDRATE,
+        /** Writing the response as JSON */
+        SERIALIZE
+    }
+
+    @Name("sg.com.aori.Search")
+    @Label("Product Search")
+    @Category({ "Aori", "Search" })
+    @Description("One product search request with its stage timings")
+    static class SearchEvent extends jdk.jfr.Event {
+
+        @Label("Query")
+        String query;
+
+        @Label("Filters")
+        String filters;
+
+        @Label("Total Hits")
+        int total;
+
+        @Label("Returned")
+        int returned;
+
+        @Label("Cache Hit")
+        boolean cacheHit;
+
+        @Label("Parse")
+        @Timespan(Timespan.NANOSECONDS)
+        long parse;
+
+        @Label("Category Lookup")
+        @Timespan(Timespan.NANOSECONDS)
+        long category;
+
+        @Label("Index Query")
+        @Timespan(Timespan.NANOSECONDS)
+        long index;
+
+        @Label("Hydrate")
+        @Timespan(Timespan.NANOSECONDS)
+        long hydrate;
+
+        @Label("Serialize")
+        @Timespan(Timespan.NANOSECONDS)
+        long serialize;
+    }
+
+    /**
+     * Timings of one search request. Not thread-safe; owned by the request.
+     */
+    public static final class Trace {
+
+        private final long start = System.nanoTime();
+
+        private final SearchEvent event = new SearchEvent();
+
+        private final long[] nanos = new long[Stage.values().length];
+
+        private long stageStart = start;
+
+        private boolean cacheHit = true;
+
+        private int total = -1;
+
+        private int returned;
+
+        private Trace() {
+            event.begin();
+        }
+
+        /** Start timing a stage. */
+        public void begin() {
+            stageStart = System.nanoTime();
+        }
+
+        /** End the stage started by {@link #begin()}. */
+        public void end(Stage stage) {
+            nanos[stage.ordinal()] += System.nanoTime() - stageStart;
+        }
+
+        /** Called when the search ran rather than being served from cache. */
+        public void loaded() {
+            cacheHit = false;
+        }
+
+        public void query(String query, String filters) {
+            event.query = query;
+            event.filters = filters;
+        }
+
+        public void result(int total, int returned) {
+            this.total = total;
+            this.returned = returned;
+        }
+
+        public long getNanos(Stage stage) {
+            return nanos[stage.ordinal()];
+        }
+
+        public boolean isCacheHit() {
+            return cacheHit;
+        }
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+
+    private final Timer requestTimer;
+
+    private final DistributionSummary resultSizes;
+
+    private final Counter zeroResults;
+
+    private final Counter cacheHits;
+
+    private final Counter cacheMisses;
+
+    public SearchMetrics(ObjectProvider<MeterRegistry> registries) {
+        MeterRegistry registry = registries.getIfAvailable(SimpleMeterRegistry::new);
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("aori.search.stage")
+                    .description("Time spent in one stage of a product search")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry));
+        }
+        requestTimer = Timer.builder("aori.search.request")
+                .description("Time to answer a product search")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        resultSizes = DistributionSummary.builder("aori.search.results")
+                .description("Total hits per product search")
+                .serviceLevelObjectives(1, 10, 100, 1000, 10000)
+                .publishPercentiles(0.5, 0.95)
+                .register(registry);
+        zeroResults = Counter.builder("aori.search.zero_results")
+                .description("Product searches that matched nothing")
+                .register(registry);
+        cacheHits = Counter.builder("aori.search.cache").tag("result", "hit").register(registry);
+        cacheMisses = Counter.builder("aori.search.cache").tag("result", "miss").register(registry);
+    }
+
+    public Trace start() {
+        return new Trace();
+    }
+
+    /**
+     * Record a finished request: meters, then the JFR event.
+     */
+    public void finish(Trace trace) {
+        requestTimer.record(System.nanoTime() - trace.start, TimeUnit.NANOSECONDS);
+        for (Stage stage : Stage.values()) {
+            long nanos = trace.nanos[stage.ordinal()];
+            if (nanos > 0) {
+                stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (trace.total >= 0) {
+            resultSizes.record(trace.total);
+            if (trace.total == 0) {
+                zeroResults.increment();
+            }
+        }
+        (trace.cacheHit ? cacheHits : cacheMisses).increment();
+
+        SearchEvent event = trace.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.total = trace.total;
+            event.returned = trace.returned;
+            event.cacheHit = trace.cacheHit;
+            event.parse = trace.getNanos(Stage.PARSE);
+            event.category = trace.getNanos(Stage.CATEGORY);
+            event.index = trace.getNanos(Stage.QUERY);
+            event.hydrate = trace.getNanos(Stage.HYDRATE);
+            event.serialize = trace.getNanos(Stage.SERIALIZE);
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounded LRU cache of search result pages, keyed by the normalised query.
+ * A page holds the product IDs, total, facets and next cursor, not the
+ * products: their stock changes far more often than the results do, so the
+ * caller loads them per request.
+ *
+ * Entries are tagged with the {@link CatalogVersion} read before they were
+ * computed; an entry with an older tag is dropped on read, so a change that
+ * can alter results invalidates the whole cache without a scan.
+ *
+ * The cache is split into segments, each a synchronized access-ordered
+ * LinkedHashMap evicting its least recently used entry, so concurrent
+ * searches rarely wait on the same lock. Hits, misses, evictions,
+ * invalidations and load times are counted for sizing.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Declare serialVersionUID on Segment
+ * @version 1.2 - Caches product IDs instead of loaded products
+ */
+
+@Service
+public class SearchResultCache {
+
+    private static final int SEGMENTS = 16;
+
+    /**
+     * One page of search results, without the products themselves.
+     */
+    public static final class Page {
+
+        private final List<String> productIds;
+
+        private final int total;
+
+        private final Map<String, Map<String, Integer>> facets;
+
+        private final String nextCursor;
+
+        public Page(List<String> productIds, int total, Map<String, Map<String, Integer>> facets,
+                String nextCursor) {
+            this.productIds = List.copyOf(productIds);
+            this.total = total;
+            this.facets = facets;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<String> getProductIds() {
+            return productIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public Map<String, Map<String, Integer>> getFacets() {
+            return facets;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    private static final class Entry {
+
+        final long version;
+
+        final Page value;
+
+        Entry(long version, Page value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<String, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    private final int maxEntries;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private final LongAdder loadNanos = new LongAdder();
+
+    public SearchResultCache(@Value("${aori.search.cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxEntries / SEGMENTS));
+        }
+    }
+
+    /**
+     * Get the cached page for a key, or compute and cache it.
+     *
+     * @param key    Normalised query
+     * @param loader Computes the page on a miss
+     */
+    public Page get(String key, Supplier<Page> loader) {
+        if (maxEntries <= 0) {
+            return loader.get();
+        }
+        long version = catalogVersion.current();
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (entry != null) {
+                if (entry.version == version) {
+                    hits.increment();
+                    return entry.value;
+                }
+                segment.remove(key);
+                invalidations.increment();
+            }
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        Page value = loader.get();
+        loadNanos.add(System.nanoTime() - start);
+
+        synchronized (segment) {
+            segment.put(key, new Entry(version, value));
+        }
+        return value;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Counters since startup, for sizing the cache.
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", requests == 0 ? 0.0 : (double) hitCount / requests);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("averageLoadMillis", missCount == 0 ? 0.0 : loadNanos.sum() / 1e6 / missCount);
+        stats.put("catalogVersion", catalogVersion.current());
+        return stats;
+    }
+}
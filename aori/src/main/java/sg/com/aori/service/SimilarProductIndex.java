@@ -0,0 +1,178 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.ProductChangedEvent;
+import sg.com.aori.model.Product;
+import sg.com.aori.utils.HnswIndex;
+import sg.com.aori.utils.ProductVectorEncoder;
+
+/**
+ * Content-based "similar products" engine.
+ *
+ * Every product is encoded by {@link ProductVectorEncoder} and inserted into an
+ * in-process {@link HnswIndex}; a lookup is an approximate nearest-neighbour
+ * search from the product's own vector, with stock and caller exclusions
+ * applied during the search.
+ *
+ * The graph is built lazily from the category index and patched from
+ * {@link ProductChangedEvent}s: when a product's vector changes its old node
+ * is marked deleted and a new one inserted; other edits (such as stock) only
+ * replace the stored entity. The graph is rebuilt once a quarter of its
+ * nodes are deleted, and nightly.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Service
+public class SimilarProductIndex {
+
+    static final int M = 16;
+
+    static final int EF_CONSTRUCTION = 100;
+
+    static final int EF_SEARCH = 64;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    private volatile Graph graph;
+
+    /**
+     * Find the products most similar to the given one.
+     *
+     * @param productId The product ID
+     * @param limit     Maximum number of products to return
+     * @param exclude   Products matching this predicate are skipped (may be
+     *                  null); the product itself and out-of-stock products are
+     *                  always skipped
+     * @return Similar in-stock products, most similar first (empty if the
+     *         product is unknown)
+     */
+    public List<Product> findSimilar(String productId, int limit, Predicate<Product> exclude) {
+        Graph current = ensureBuilt();
+        Integer node = current.nodeByProductId.get(productId);
+        if (node == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        int[] nodes = current.hnsw.search(current.hnsw.getVector(node), limit, EF_SEARCH, n -> {
+            if (n == node) {
+                return false;
+            }
+            Product product = current.productAt(n);
+            return product != null && ProductCategoryIndex.inStock(product)
+                    && (exclude == null || !exclude.test(product));
+        });
+
+        List<Product> result = new ArrayList<>(nodes.length);
+        for (int n : nodes) {
+            Product product = current.productAt(n);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        Graph current = graph;
+        if (current == null) {
+            return;
+        }
+
+        Product product = event.isDeleted() ? null
+                : categoryIndex.getProduct(event.getProductId()).orElse(null);
+        Integer oldNode = current.nodeByProductId.get(event.getProductId());
+
+        if (product != null && oldNode != null
+                && Arrays.equals(ProductVectorEncoder.encode(product), current.hnsw.getVector(oldNode))) {
+            // stock or price-band-neutral edits: same vector, just swap the entity
+            current.productByNode[oldNode] = product;
+            return;
+        }
+        if (oldNode != null) {
+            current.nodeByProductId.remove(event.getProductId());
+            current.hnsw.markDeleted(oldNode);
+        }
+        if (product != null) {
+            current.add(product);
+        }
+
+        if (current.hnsw.deletedCount() * 4 > current.hnsw.size()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuild the graph from the category index.
+     */
+    @Scheduled(cron = "${aori.similarity.rebuild-cron:0 0 4 * * *}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Collection<Product> products = new ArrayList<>(categoryIndex.allProducts());
+        Graph rebuilt = new Graph(products.size());
+        for (Product product : products) {
+            rebuilt.add(product);
+        }
+        graph = rebuilt;
+        System.out.println("[SimilarProductIndex] Indexed " + products.size() + " product vectors in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private Graph ensureBuilt() {
+        Graph current = graph;
+        if (current == null) {
+            synchronized (this) {
+                if (graph == null) {
+                    rebuild();
+                }
+                current = graph;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * The HNSW graph plus the products behind its nodes. Writers hold the
+     * service lock; readers only see fully inserted nodes.
+     */
+    private static final class Graph {
+
+        final HnswIndex hnsw;
+
+        final Map<String, Integer> nodeByProductId = new ConcurrentHashMap<>();
+
+        volatile Product[] productByNode;
+
+        Graph(int expectedSize) {
+            hnsw = new HnswIndex(ProductVectorEncoder.DIMENSIONS, M, EF_CONSTRUCTION, expectedSize);
+            productByNode = new Product[Math.max(16, expectedSize)];
+        }
+
+        void add(Product product) {
+            int node = hnsw.size();
+            if (node >= productByNode.length) {
+                productByNode = Arrays.copyOf(productByNode, node * 2);
+            }
+            productByNode[node] = product;
+            hnsw.add(ProductVectorEncoder.encode(product));
+            nodeByProductId.put(product.getProductId(), node);
+        }
+
+        Product productAt(int node) {
+            Product[] products = productByNode;
+            return node < products.length ? products[node] : null;
+        }
+    }
+}
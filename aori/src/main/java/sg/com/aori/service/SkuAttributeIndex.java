@@ -0,0 +1,234 @@
+package sg.com.aori.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import sg.com.aori.event.SkuChangedEvent;
+import sg.com.aori.model.Product;
+import sg.com.aori.model.Sku;
+import sg.com.aori.repository.ProductRepository;
+import sg.com.aori.repository.SkuRepository;
+import sg.com.aori.utils.ColorNames;
+
+/**
+ * In-memory index of product variants from the SKU table, so search can
+ * filter on what is actually in stock ("black, size M") instead of the
+ * colours and sizes a product declares in its JSON columns.
+ *
+ * Each SKU (PRODUCTCODE&COLOR&SIZE) is parsed once, at load or when it
+ * changes, into its product's variant quantities. For lookups every product
+ * is also filed under the attribute keys of its in-stock variants: colour
+ * (as hex and as palette name), size, and each colour with each size. A
+ * filter is then one map lookup returning the matching product IDs.
+ *
+ * The index is loaded lazily on first use and kept current through
+ * {@link SkuChangedEvent}s published by SkuService.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Service
+public class SkuAttributeIndex {
+
+    private static final String SEPARATOR = "&";
+
+    @Autowired
+    private SkuRepository skuRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    // productId -> "hex&SIZE" -> quantity
+    private volatile Map<String, Map<String, Integer>> variantsByProduct = new ConcurrentHashMap<>();
+
+    // attribute key -> products with an in-stock variant under it
+    private volatile Map<String, Set<String>> inStockByKey = new ConcurrentHashMap<>();
+
+    // keys each product is currently filed under
+    private volatile Map<String, Set<String>> keysByProduct = new ConcurrentHashMap<>();
+
+    private final Map<String, String> productIdByCode = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded = false;
+
+    /**
+     * Products with at least one in-stock variant of the given colour and
+     * size.
+     *
+     * @param color Colour name or hex code (null for any colour)
+     * @param size  Size (null for any size)
+     * @return Matching product IDs (read-only)
+     */
+    public Set<String> productsInStock(String color, String size) {
+        ensureLoaded();
+        String key = filterKey(color) + SEPARATOR + (size == null ? "" : size.trim().toUpperCase(Locale.ROOT));
+        Set<String> products = inStockByKey.get(key);
+        return products == null ? Collections.emptySet() : Collections.unmodifiableSet(products);
+    }
+
+    /**
+     * Whether a product has any SKU rows; products without any are matched
+     * on their declared colours and sizes instead.
+     */
+    public boolean hasVariants(String productId) {
+        ensureLoaded();
+        return variantsByProduct.containsKey(productId);
+    }
+
+    /**
+     * Stock of one variant, or 0 if it has no SKU.
+     */
+    public int getQuantity(String productId, String color, String size) {
+        ensureLoaded();
+        Map<String, Integer> variants = variantsByProduct.get(productId);
+        if (variants == null || color == null || size == null) {
+            return 0;
+        }
+        return variants.getOrDefault(variantKey(color, size), 0);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE) // before CatalogVersion invalidates cached searches
+    public void onSkuChanged(SkuChangedEvent event) {
+        if (!loaded) {
+            return;
+        }
+        apply(event.getSku(), event.getQuantity());
+    }
+
+    /**
+     * Rebuild the whole index from the SKU table.
+     */
+    public synchronized void refresh() {
+        for (Product product : categoryIndex.allProducts()) {
+            if (product.getProductCode() != null) {
+                productIdByCode.put(product.getProductCode(), product.getProductId());
+            }
+        }
+        variantsByProduct = new ConcurrentHashMap<>();
+        inStockByKey = new ConcurrentHashMap<>();
+        keysByProduct = new ConcurrentHashMap<>();
+
+        List<Sku> skus = skuRepository.findAll();
+        Set<String> touched = new HashSet<>();
+        for (Sku sku : skus) {
+            String productId = putVariant(sku.getSku(), sku.getQuantity());
+            if (productId != null) {
+                touched.add(productId);
+            }
+        }
+        for (String productId : touched) {
+            refile(productId);
+        }
+        loaded = true;
+        System.out.println("[SkuAttributeIndex] Indexed " + skus.size() + " SKUs of " + touched.size()
+                + " products");
+    }
+
+    synchronized void apply(String sku, int quantity) {
+        String productId = putVariant(sku, quantity);
+        if (productId != null) {
+            refile(productId);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    refresh();
+                }
+            }
+        }
+    }
+
+    /**
+     * Record one SKU's quantity.
+     *
+     * @return The product ID, or null if the SKU is malformed or its product
+     *         is unknown
+     */
+    private String putVariant(String sku, int quantity) {
+        String[] parts = sku == null ? new String[0] : sku.split(SEPARATOR);
+        if (parts.length < 3) {
+            return null;
+        }
+        String productId = productIdByCode.get(parts[0]);
+        if (productId == null) {
+            productId = productRepository.findProductIdByProductCode(parts[0]);
+            if (productId == null) {
+                return null;
+            }
+            productIdByCode.put(parts[0], productId);
+        }
+        variantsByProduct.computeIfAbsent(productId, k -> new ConcurrentHashMap<>())
+                .put(variantKey(parts[1], parts[2]), quantity);
+        return productId;
+    }
+
+    /**
+     * File a product under the keys of its in-stock variants, dropping it
+     * from keys it no longer qualifies for.
+     */
+    private void refile(String productId) {
+        Set<String> keys = new HashSet<>();
+        variantsByProduct.getOrDefault(productId, Collections.emptyMap()).forEach((variant, quantity) -> {
+            if (quantity > 0) {
+                int split = variant.indexOf(SEPARATOR);
+                String hex = variant.substring(0, split);
+                String size = variant.substring(split + 1);
+                String name = ColorNames.isName(hex) ? ColorNames.canonicalName(hex) : ColorNames.nameOf(hex);
+                for (String color : new String[] { hex, name, "" }) {
+                    if (color != null) {
+                        keys.add(color + SEPARATOR + size);
+                        keys.add(color + SEPARATOR);
+                    }
+                }
+            }
+        });
+        keys.remove(SEPARATOR);
+
+        Set<String> previous = keysByProduct.getOrDefault(productId, Collections.emptySet());
+        for (String key : previous) {
+            if (!keys.contains(key)) {
+                Set<String> products = inStockByKey.get(key);
+                if (products != null) {
+                    products.remove(productId);
+                }
+            }
+        }
+        for (String key : keys) {
+            if (!previous.contains(key)) {
+                inStockByKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(productId);
+            }
+        }
+        keysByProduct.put(productId, keys);
+    }
+
+    /** SKU colours are stored as hex without '#'; names are kept as names. */
+    private static String variantKey(String color, String size) {
+        return filterKey(color) + SEPARATOR + size.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static String filterKey(String color) {
+        if (color == null) {
+            return "";
+        }
+        if (ColorNames.isName(color)) {
+            return ColorNames.canonicalName(color);
+        }
+        String value = color.trim().toLowerCase(Locale.ROOT);
+        return value.startsWith("#") ? value.substring(1) : value;
+    }
+}
@@ -1,13 +1,22 @@
 package sg.com.aori.service;
 
+import java.sql.Statement;
+import java.util.*;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import sg.com.aori.event.SkuChangedEvent;
+import sg.com.aori.dto.SkuMatrixDTO;
 import sg.com.aori.interfaces.ISku;
 import sg.com.aori.model.Product;
 import sg.com.aori.model.Sku;
 import sg.com.aori.repository.SkuRepository;
+import sg.com.aori.utils.ProductVectorEncoder;
 import sg.com.aori.utils.SkuTool;
 
 /**
@@ -25,143 +34,271 @@ import sg.com.aori.utils.SkuTool;
  * @date 2025-10-15
  * @version 1.2 - Added automatic product stock quantity calculation after SKU
  *          operations
+ * 
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.3 - Publish SkuChangedEvent on every SKU quantity change for the
+ *          SkuAttributeIndex
+ * @version 1.4 - Product stock totals are maintained by ProductStockAggregator
+ *          from the SkuChangedEvent deltas instead of being recomputed here
+ * @version 1.5 - Added getStockMatrix, all variants of a product in one query
+ * @version 1.6 - getQuantity no longer creates a missing SKU
+ * @version 1.7 - Stock is decremented with conditional UPDATEs (no
+ *          read-modify-write); added reserve for all SKUs of an order in one
+ *          JDBC batch
+ * @version 1.8 - Reads and reservations go through the InventoryLedger when
+ *          it is enabled
+ * @version 1.9 - getStockMatrix reads the InventoryLedger when it is enabled
+ * @version 1.10 - reserve only treats a zero update count as short; drivers
+ *          that report SUCCESS_NO_INFO are checked against the follow-up read
+ * @version 1.11 - createSku takes its change from the ledger's committed
+ *          quantity, not from what in-flight reservations left available
  */
 
 @Service
 @Transactional
 public class SkuService implements ISku {
+
+    /** Decrement that only applies when enough stock is left. */
+    static final String DECREMENT_SQL = "UPDATE sku SET quantity = quantity - ? WHERE sku = ? AND quantity >= ?";
+
     @Autowired
     private SkuRepository skuRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
     @Autowired
     private CRUDProductService productService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public String createSku(String sku, int quantity) {
         sku = SkuTool.convertUUIDSkutoProductCodeSku(sku, productService);
 
+        int previous = skuRepository.findById(sku).map(Sku::getQuantity).orElse(0);
         Sku newSku = new Sku();
         newSku.setSku(sku);
         newSku.setQuantity(quantity);
         skuRepository.save(newSku);
+        if (inventoryLedger.isEnabled()) {
+            previous = inventoryLedger.committed(sku);
+            inventoryLedger.set(sku, quantity);
+        }
+        eventPublisher.publishEvent(new SkuChangedEvent(sku, quantity, quantity - previous));
         System.out.println("Created SKU: " + sku + " with quantity: " + quantity);
 
-        updateProductStockQuantity(sku);
-
         return sku;
     }
 
     /**
-     * Update the product's total stock quantity by summing all its SKU quantities
-     * 
-     * @param sku the SKU string (format: PRODUCTCODE&COLOR&SIZE)
+     * Stock of every colour and size of a product, from one prefix query over
+     * its SKUs (or from memory when the {@link InventoryLedger} is enabled).
+     * Axes are the product's declared colours and sizes, followed by any
+     * others its SKUs use; combinations without a SKU read as zero.
+     *
+     * @param product The product
+     * @return The colour x size quantity matrix
      */
-    public void updateProductStockQuantity(String sku) {
-        try {
-            String[] parts = sku.split("&");
-            if (parts.length < 3) {
-                System.out.println("[SkuService] Invalid SKU format, cannot update product stock: " + sku);
-                return;
-            }
-
-            String productCode = parts[0];
+    @Transactional(readOnly = true)
+    public SkuMatrixDTO getStockMatrix(Product product) {
+        SkuMatrixDTO matrix = new SkuMatrixDTO();
+        Map<String, Integer> colorIndex = new HashMap<>();
+        Map<String, Integer> sizeIndex = new HashMap<>();
+        for (String color : ProductVectorEncoder.parseJsonStrings(product.getColors())) {
+            addAxisValue(matrix.getColors(), colorIndex, color.startsWith("#") ? color.substring(1) : color,
+                    colorKey(color));
+        }
+        for (String size : ProductVectorEncoder.parseJsonStrings(product.getSize())) {
+            addAxisValue(matrix.getSizes(), sizeIndex, size, sizeKey(size));
+        }
 
-            String productId = productService.findProductIdByProductCode(productCode);
-            if (productId == null) {
-                System.out.println("[SkuService] Product not found for code: " + productCode);
-                return;
+        Map<String, Integer> variants = new LinkedHashMap<>();
+        if (inventoryLedger.isEnabled()) {
+            variants.putAll(inventoryLedger.variants(product.getProductCode()));
+        } else {
+            for (Sku sku : skuRepository.findBySkuStartingWith(product.getProductCode() + "&")) {
+                variants.put(sku.getSku(), sku.getQuantity());
             }
+        }
+        variants.keySet().removeIf(sku -> sku.split("&").length < 3);
+        for (String sku : variants.keySet()) {
+            String[] parts = sku.split("&");
+            addAxisValue(matrix.getColors(), colorIndex, parts[1], colorKey(parts[1]));
+            addAxisValue(matrix.getSizes(), sizeIndex, parts[2], sizeKey(parts[2]));
+        }
 
-            Integer totalQuantity = skuRepository.getTotalQuantityByProductCode(productCode);
-
-            Product product = productService.getProductById(productId).orElse(null);
-            if (product != null) {
-                product.setStockQuantity(totalQuantity);
-                productService.saveProduct(product);
-                System.out.println(
-                        "[SkuService] Updated product " + productCode + " stock quantity to: " + totalQuantity);
-            }
-        } catch (Exception e) {
-            System.err.println("[SkuService] Error updating product stock quantity: " + e.getMessage());
-            e.printStackTrace();
+        int[][] quantities = new int[matrix.getColors().size()][matrix.getSizes().size()];
+        int total = 0;
+        for (Map.Entry<String, Integer> variant : variants.entrySet()) {
+            String[] parts = variant.getKey().split("&");
+            quantities[colorIndex.get(colorKey(parts[1]))][sizeIndex.get(sizeKey(parts[2]))] += variant.getValue();
+            total += variant.getValue();
         }
+        matrix.setQuantities(quantities);
+        matrix.setTotal(total);
+        return matrix;
     }
 
-    public void updateProductStockQuantityById(String id) {
-        try {
+    private static void addAxisValue(List<String> axis, Map<String, Integer> index, String value, String key) {
+        if (!key.isEmpty() && !index.containsKey(key)) {
+            index.put(key, axis.size());
+            axis.add(value.trim());
+        }
+    }
 
-            String productId = id;
-            Product product = productService.getProductById(productId).orElse(null);
-            if (product == null) {
-                System.out.println("[SkuService] Product not found for code: " + id);
-                return;
-            }
-            Integer totalQuantity = skuRepository.getTotalQuantityByProductCode(product.getProductCode());
+    private static String colorKey(String color) {
+        String key = color.trim().toLowerCase(Locale.ROOT);
+        return key.startsWith("#") ? key.substring(1) : key;
+    }
 
-            product.setStockQuantity(totalQuantity);
-            productService.saveProduct(product);
-            System.out.println(
-                    "[SkuService] Updated product " + product.getProductName() + " stock quantity to: "
-                            + totalQuantity + "----------------------------------------------------------");
-        } catch (Exception e) {
-            System.err.println("[SkuService] Error updating product stock quantity: " + e.getMessage());
-            e.printStackTrace();
-        }
+    private static String sizeKey(String size) {
+        return size.trim().toUpperCase(Locale.ROOT);
     }
 
+    /**
+     * Quantity of one SKU; a SKU that does not exist reads as zero (and is not
+     * created). Served from memory when the {@link InventoryLedger} is enabled.
+     */
     @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public int getQuantity(String sku) {
         sku = SkuTool.convertUUIDSkutoProductCodeSku(sku, productService);
+        if (inventoryLedger.isEnabled()) {
+            return inventoryLedger.available(sku);
+        }
 
         Sku existingSku = skuRepository.findById(sku).orElse(null);
         if (existingSku == null) {
             System.out.println("[SkuService] SKU not found: " + sku + ", returning quantity 0");
-            createSku(sku, 0);
             return 0;
-
         }
         return existingSku.getQuantity();
     }
 
     @Override
     public int checkoutSku(String sku) {
-        sku = SkuTool.convertUUIDSkutoProductCodeSku(sku, productService);
-        Sku existingSku = skuRepository.findById(sku).orElse(null);
-        if (existingSku == null || existingSku.getQuantity() <= 0) {
-            return -1;
-        }
-        existingSku.setQuantity(existingSku.getQuantity() - 1);
-        skuRepository.save(existingSku);
-
-        updateProductStockQuantity(sku);
-
-        return existingSku.getQuantity();
+        return decreaseQuantity(sku, 1);
     }
 
+    /**
+     * Decrease a SKU's quantity, atomically: the check and the decrement are one
+     * conditional UPDATE, so concurrent buyers cannot oversell.
+     *
+     * @return The remaining quantity, or -1 if the SKU does not exist or has
+     *         less than the requested quantity
+     */
     @Override
     public int decreaseQuantity(String sku, int quantity) {
         sku = SkuTool.convertUUIDSkutoProductCodeSku(sku, productService);
-        Sku existingSku = skuRepository.findById(sku).orElse(null);
-        if (existingSku == null) {
-            System.out.println("[SkuService] SKU not found: " + sku);
-            return -1;
+        int remaining;
+        if (inventoryLedger.isEnabled()) {
+            remaining = inventoryLedger.reserve(sku, quantity);
+        } else if (quantity > 0 && jdbcTemplate.update(DECREMENT_SQL, quantity, sku, quantity) > 0) {
+            remaining = jdbcTemplate.queryForObject("SELECT quantity FROM sku WHERE sku = ?", Integer.class, sku);
+        } else {
+            remaining = -1;
         }
-
-        if (existingSku.getQuantity() < quantity) {
-            System.out.println("[SkuService] Insufficient quantity for SKU: " + sku +
-                    ", available: " + existingSku.getQuantity() + ", requested: " + quantity);
+        if (remaining < 0) {
+            System.out.println("[SkuService] SKU not found or insufficient quantity for: " + sku +
+                    ", requested: " + quantity);
             return -1;
         }
 
-        existingSku.setQuantity(existingSku.getQuantity() - quantity);
-        skuRepository.save(existingSku);
+        eventPublisher.publishEvent(new SkuChangedEvent(sku, remaining, -quantity));
 
         System.out.println("[SkuService] Decreased SKU " + sku + " quantity by " + quantity +
-                ", new quantity: " + existingSku.getQuantity());
+                ", new quantity: " + remaining);
 
-        updateProductStockQuantity(sku);
+        return remaining;
+    }
 
-        return existingSku.getQuantity();
+    /**
+     * Reserve stock for every SKU of an order in one round-trip: a JDBC batch
+     * of conditional decrements, in SKU order so that concurrent orders lock
+     * rows in the same order and cannot deadlock.
+     *
+     * If any SKU is missing or short this throws, and the surrounding
+     * transaction (the caller's, when there is one) rolls back every
+     * decrement of the batch.
+     *
+     * With the {@link InventoryLedger} enabled the SKUs are reserved in memory
+     * instead, and given back if the surrounding transaction rolls back.
+     *
+     * @param quantities SKU (product code or UUID form) -> quantity; repeated
+     *                   SKUs are added up
+     * @return SKU (product code form) -> remaining quantity
+     * @throws RuntimeException if a SKU does not have enough stock
+     */
+    public Map<String, Integer> reserve(Map<String, Integer> quantities) {
+        SortedMap<String, Integer> bySku = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                continue;
+            }
+            String sku = entry.getKey() == null ? null
+                    : SkuTool.convertUUIDSkutoProductCodeSku(entry.getKey(), productService);
+            if (sku == null) {
+                throw new RuntimeException("Invalid SKU: " + entry.getKey());
+            }
+            bySku.merge(sku, entry.getValue(), Integer::sum);
+        }
+        if (bySku.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        if (inventoryLedger.isEnabled()) {
+            Map<String, Integer> remaining = inventoryLedger.reserveAll(bySku);
+            for (Map.Entry<String, Integer> entry : bySku.entrySet()) {
+                eventPublisher.publishEvent(
+                        new SkuChangedEvent(entry.getKey(), remaining.get(entry.getKey()), -entry.getValue()));
+            }
+            return remaining;
+        }
+
+        List<Object[]> batch = new ArrayList<>(bySku.size());
+        for (Map.Entry<String, Integer> entry : bySku.entrySet()) {
+            batch.add(new Object[] { entry.getValue(), entry.getKey(), entry.getValue() });
+        }
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, batch);
+        // a driver may report SUCCESS_NO_INFO instead of a count; those SKUs
+        // are checked against the read below
+        List<String> unreported = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            String sku = (String) batch.get(i)[1];
+            if (updated[i] == 0) {
+                System.out.println("[SkuService] Reservation failed, insufficient quantity for SKU: " + sku);
+                throw new RuntimeException("Insufficient inventory for SKU: " + sku);
+            }
+            if (updated[i] == Statement.SUCCESS_NO_INFO) {
+                unreported.add(sku);
+            }
+        }
+
+        Map<String, Integer> remaining = new HashMap<>();
+        String placeholders = String.join(",", Collections.nCopies(bySku.size(), "?"));
+        jdbcTemplate.query("SELECT sku, quantity FROM sku WHERE sku IN (" + placeholders + ")",
+                rs -> {
+                    remaining.put(rs.getString(1), rs.getInt(2));
+                }, bySku.keySet().toArray());
+        for (String sku : unreported) {
+            Integer left = remaining.get(sku);
+            if (left == null) {
+                System.out.println("[SkuService] Reservation failed, SKU not found after batch: " + sku);
+                throw new RuntimeException("Insufficient inventory for SKU: " + sku);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : bySku.entrySet()) {
+            eventPublisher.publishEvent(
+                    new SkuChangedEvent(entry.getKey(), remaining.get(entry.getKey()), -entry.getValue()));
+        }
+        System.out.println("[SkuService] Reserved " + bySku.size() + " SKUs in one batch");
+        return remaining;
     }
 
 }
@@ -16,6 +16,10 @@ import java.util.Map;
  * @Author Yunhe
  * @date 2025-10-12
  * @version 1.1 - Added more bypass rules
+ * 
+ * @Author Yunhe
+ * @date 2026-10-18
+ * @version 1.2 - Bypass the SKU matrix lookup
  */
 
 public class AuthFilter {
@@ -39,6 +43,7 @@ public class AuthFilter {
                 Map.of("path", "/favicon.ico", "method", "GET"),
                 Map.of("path", "/css/custom.css", "method", "GET"),
                 Map.of("path", "/api/product/sku", "method", "GET"),
+                Map.of("path", "/api/product/sku/matrix", "method", "GET"),
                 Map.of("path", "/images/aori-logo.png", "method", "GET"),
                 Map.of("path", "/api/products/collectionDisplay", "method", "GET"));
 
@@ -0,0 +1,105 @@
+package sg.com.aori.utils;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * One dictionary-encoded facet over numbered documents: every distinct value
+ * gets an ID and a bitset of the documents that have it. A document may have
+ * several values (a product in three colours).
+ *
+ * Counting a result set against the facet is one AND and popcount per value,
+ * 64 documents per step. Not thread-safe; callers guard it with their own
+ * lock.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class BitsetFacet {
+
+    private final Map<String, Integer> idByValue = new HashMap<>();
+
+    private final List<String> values = new ArrayList<>();
+
+    private final List<long[]> bitsByValue = new ArrayList<>();
+
+    /**
+     * Record that a document has a value.
+     */
+    public void add(int doc, String value) {
+        Integer id = idByValue.get(value);
+        if (id == null) {
+            id = values.size();
+            idByValue.put(value, id);
+            values.add(value);
+            bitsByValue.add(new long[words(doc + 1)]);
+        }
+        long[] bits = bitsByValue.get(id);
+        if (bits.length <= doc >>> 6) {
+            bits = Arrays.copyOf(bits, Math.max(words(doc + 1), bits.length * 2));
+            bitsByValue.set(id, bits);
+        }
+        bits[doc >>> 6] |= 1L << doc;
+    }
+
+    /**
+     * Union of the bitsets of every value passing a test.
+     *
+     * @param words Length of the returned bitset
+     */
+    public long[] union(Predicate<String> valueTest, int words) {
+        long[] result = new long[words];
+        for (int id = 0; id < values.size(); id++) {
+            if (valueTest.test(values.get(id))) {
+                long[] bits = bitsByValue.get(id);
+                for (int w = 0, n = Math.min(words, bits.length); w < n; w++) {
+                    result[w] |= bits[w];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Count the documents of a result set having each value.
+     *
+     * @return Non-zero counts, largest first (ties by value)
+     */
+    public Map<String, Integer> count(long[] result) {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (int id = 0; id < values.size(); id++) {
+            long[] bits = bitsByValue.get(id);
+            int count = 0;
+            for (int w = 0, n = Math.min(result.length, bits.length); w < n; w++) {
+                count += Long.bitCount(result[w] & bits[w]);
+            }
+            if (count > 0) {
+                counts.add(Map.entry(values.get(id), count));
+            }
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, Integer> ordered = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : counts) {
+            ordered.put(entry.getKey(), entry.getValue());
+        }
+        return ordered;
+    }
+
+    /** Number of longs needed for a bitset of the given number of documents. */
+    public static int words(int docs) {
+        return (docs + 63) >>> 6;
+    }
+
+    /** In-place intersection: a &= b. */
+    public static void and(long[] a, long[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int w = 0; w < n; w++) {
+            a[w] &= b[w];
+        }
+        Arrays.fill(a, n, a.length, 0L);
+    }
+}
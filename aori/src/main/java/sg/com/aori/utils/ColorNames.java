@@ -0,0 +1,112 @@
+package sg.com.aori.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps product colour swatches (hex codes such as "#0a2540") to the basic
+ * colour names shoppers search and filter by, by nearest palette colour.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class ColorNames {
+
+    private static final Map<String, int[]> PALETTE = new LinkedHashMap<>();
+
+    static {
+        PALETTE.put("black", new int[] { 0x20, 0x20, 0x20 });
+        PALETTE.put("white", new int[] { 0xf8, 0xf8, 0xf5 });
+        PALETTE.put("grey", new int[] { 0x80, 0x80, 0x80 });
+        PALETTE.put("red", new int[] { 0xc0, 0x30, 0x30 });
+        PALETTE.put("orange", new int[] { 0xe6, 0x7e, 0x22 });
+        PALETTE.put("yellow", new int[] { 0xf1, 0xc4, 0x0f });
+        PALETTE.put("green", new int[] { 0x2e, 0x7d, 0x32 });
+        PALETTE.put("blue", new int[] { 0x34, 0x78, 0xc8 });
+        PALETTE.put("navy", new int[] { 0x0a, 0x25, 0x40 });
+        PALETTE.put("purple", new int[] { 0x7d, 0x3c, 0x98 });
+        PALETTE.put("pink", new int[] { 0xf4, 0x8f, 0xb1 });
+        PALETTE.put("brown", new int[] { 0x6d, 0x4c, 0x41 });
+        PALETTE.put("beige", new int[] { 0xd8, 0xc8, 0xa8 });
+    }
+
+    private ColorNames() {
+    }
+
+    /**
+     * @return The palette name nearest to a hex colour, or null if the value
+     *         is not a hex colour
+     */
+    public static String nameOf(String hex) {
+        int[] rgb = parseHex(hex);
+        if (rgb == null) {
+            return null;
+        }
+        String nearest = null;
+        long best = Long.MAX_VALUE;
+        for (Map.Entry<String, int[]> entry : PALETTE.entrySet()) {
+            int[] p = entry.getValue();
+            // weighted RGB distance, closer to perceived difference than plain RGB
+            long dr = rgb[0] - p[0];
+            long dg = rgb[1] - p[1];
+            long db = rgb[2] - p[2];
+            long distance = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+            if (distance < best) {
+                best = distance;
+                nearest = entry.getKey();
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Whether a product colour matches a filter value, given either as a hex
+     * code or as a colour name.
+     */
+    public static boolean matches(String hex, String filter) {
+        if (hex == null || filter == null) {
+            return false;
+        }
+        String wanted = canonicalName(filter);
+        if (parseHex(wanted) != null) {
+            return normaliseHex(hex).equals(normaliseHex(wanted));
+        }
+        return wanted.equals(nameOf(hex));
+    }
+
+    /**
+     * Lower-cased filter value with "gray" spelled "grey".
+     */
+    public static String canonicalName(String name) {
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        return lower.equals("gray") ? "grey" : lower;
+    }
+
+    public static boolean isName(String name) {
+        return name != null && PALETTE.containsKey(canonicalName(name));
+    }
+
+    private static String normaliseHex(String hex) {
+        String value = hex.trim().toLowerCase(Locale.ROOT);
+        return value.startsWith("#") ? value.substring(1) : value;
+    }
+
+    private static int[] parseHex(String hex) {
+        if (hex == null) {
+            return null;
+        }
+        String value = normaliseHex(hex);
+        if (value.length() != 6) {
+            return null;
+        }
+        try {
+            int rgb = Integer.parseInt(value, 16);
+            return new int[] { (rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package sg.com.aori.utils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * In-process approximate nearest-neighbour index (HNSW: hierarchical
+ * navigable small world graph) over unit-length float vectors, using cosine
+ * distance (1 - dot product).
+ *
+ * Vectors are stored in one flat float array and graph links in int arrays,
+ * so the index holds no per-node objects. Nodes are identified by their
+ * insertion order. Removal only marks a node deleted: it keeps routing
+ * searches but is never returned; callers rebuild once too many nodes are
+ * deleted.
+ *
+ * Searches may run concurrently; inserts and deletes take a write lock.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class HnswIndex {
+
+    private final int dimensions;
+
+    private final int m;
+
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final Random random = new Random(42);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadLocal<VisitedSet> visited = ThreadLocal.withInitial(VisitedSet::new);
+
+    private float[] vectors;
+
+    // links[node][level] = {count, neighbour1, neighbour2, ...}
+    private int[][][] links;
+
+    private final BitSet deleted = new BitSet();
+
+    private int size;
+
+    private int deletedCount;
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    /**
+     * @param dimensions     Vector length
+     * @param m              Links per node on the upper levels (twice that on
+     *                       level 0)
+     * @param efConstruction Candidate list size while inserting
+     * @param expectedSize   Initial capacity
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, int expectedSize) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        int capacity = Math.max(16, expectedSize);
+        this.vectors = new float[capacity * dimensions];
+        this.links = new int[capacity][][];
+    }
+
+    /**
+     * Insert a vector.
+     *
+     * @return The new node's ID
+     */
+    public int add(float[] vector) {
+        lock.writeLock().lock();
+        try {
+            int node = size;
+            ensureCapacity(node + 1);
+            System.arraycopy(vector, 0, vectors, node * dimensions, dimensions);
+
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[maxM(l) + 1];
+            }
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            int ep = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                ep = closest(vector, ep, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                long[] candidates = sortedAscending(searchLayer(vector, ep, efConstruction, l, null));
+                int[] selected = selectNeighbours(candidates, maxM(l));
+                int[] own = links[node][l];
+                own[0] = selected.length;
+                System.arraycopy(selected, 0, own, 1, selected.length);
+                for (int neighbour : selected) {
+                    connect(neighbour, node, l);
+                }
+                ep = node(candidates[0]);
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Exclude a node from future results.
+     */
+    public void markDeleted(int node) {
+        lock.writeLock().lock();
+        try {
+            if (node >= 0 && node < size && !deleted.get(node)) {
+                deleted.set(node);
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the nodes nearest to a query vector.
+     *
+     * @param query  Unit-length query vector
+     * @param k      Maximum number of results
+     * @param ef     Candidate list size (higher is slower but more accurate)
+     * @param accept Only nodes passing this filter are returned (may be null)
+     * @return Node IDs, nearest first
+     */
+    public int[] search(float[] query, int k, int ef, IntPredicate accept) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return new int[0];
+            }
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                ep = closest(query, ep, l);
+            }
+            IntPredicate live = n -> !deleted.get(n) && (accept == null || accept.test(n));
+            long[] results = sortedAscending(searchLayer(query, ep, Math.max(ef, k), 0, live));
+
+            int[] nodes = new int[Math.min(k, results.length)];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = node(results[i]);
+            }
+            return nodes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copy of a node's vector.
+     */
+    public float[] getVector(int node) {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    private int maxM(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int closest(float[] query, int ep, int level) {
+        LongHeap results = searchLayer(query, ep, 1, level, null);
+        return node(~results.peek());
+    }
+
+    /**
+     * Best-first search of one level. Returns the ef nearest accepted nodes in
+     * a max-heap (entries are bit-inverted packed distance/node pairs).
+     */
+    private LongHeap searchLayer(float[] query, int ep, int ef, int level, IntPredicate accept) {
+        VisitedSet seen = visited.get();
+        seen.reset(size);
+
+        LongHeap candidates = new LongHeap();
+        LongHeap results = new LongHeap();
+
+        float d = distance(query, ep);
+        long packed = pack(d, ep);
+        seen.mark(ep);
+        candidates.push(packed);
+        float bound = Float.MAX_VALUE;
+        if (accept == null || accept.test(ep)) {
+            results.push(~packed);
+            bound = d;
+        }
+
+        while (candidates.size() > 0) {
+            long current = candidates.peek();
+            if (distance(current) > bound && results.size() >= ef) {
+                break;
+            }
+            candidates.pop();
+
+            int[] neighbours = links[node(current)][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int e = neighbours[i];
+                if (!seen.mark(e)) {
+                    continue;
+                }
+                float ed = distance(query, e);
+                if (results.size() < ef || ed < bound) {
+                    long pe = pack(ed, e);
+                    candidates.push(pe);
+                    if (accept == null || accept.test(e)) {
+                        results.push(~pe);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                        bound = distance(~results.peek());
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Neighbour selection heuristic: keep a candidate only if it is closer to
+     * the base node than to any neighbour already kept, which spreads links in
+     * different directions. Remaining slots are filled with the closest
+     * pruned candidates.
+     */
+    private int[] selectNeighbours(long[] sortedCandidates, int max) {
+        int[] selected = new int[Math.min(max, sortedCandidates.length)];
+        boolean[] used = new boolean[sortedCandidates.length];
+        int n = 0;
+        for (int i = 0; i < sortedCandidates.length && n < selected.length; i++) {
+            int e = node(sortedCandidates[i]);
+            float de = distance(sortedCandidates[i]);
+            boolean keep = true;
+            for (int j = 0; j < n; j++) {
+                if (distance(e, selected[j]) < de) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[n++] = e;
+                used[i] = true;
+            }
+        }
+        for (int i = 0; i < sortedCandidates.length && n < selected.length; i++) {
+            if (!used[i]) {
+                selected[n++] = node(sortedCandidates[i]);
+            }
+        }
+        return selected;
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbours = links[from][level];
+        int max = maxM(level);
+        if (neighbours[0] < max) {
+            neighbours[++neighbours[0]] = to;
+            return;
+        }
+
+        long[] candidates = new long[max + 1];
+        for (int i = 0; i < max; i++) {
+            candidates[i] = pack(distance(from, neighbours[i + 1]), neighbours[i + 1]);
+        }
+        candidates[max] = pack(distance(from, to), to);
+        Arrays.sort(candidates);
+        int[] selected = selectNeighbours(candidates, max);
+        neighbours[0] = selected.length;
+        System.arraycopy(selected, 0, neighbours, 1, selected.length);
+    }
+
+    private float distance(float[] query, int node) {
+        int offset = node * dimensions;
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vectors[offset + i];
+        }
+        return Math.max(0f, 1f - dot);
+    }
+
+    private float distance(int a, int b) {
+        int offsetA = a * dimensions;
+        int offsetB = b * dimensions;
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return Math.max(0f, 1f - dot);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > links.length) {
+            int capacity = Math.max(required, links.length * 2);
+            links = Arrays.copyOf(links, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        }
+    }
+
+    /** Non-negative floats order the same as their bit patterns. */
+    private static long pack(float distance, int node) {
+        return ((long) Float.floatToIntBits(distance) << 32) | (node & 0xffffffffL);
+    }
+
+    private static int node(long packed) {
+        return (int) packed;
+    }
+
+    private static float distance(long packed) {
+        return Float.intBitsToFloat((int) (packed >>> 32));
+    }
+
+    private static long[] sortedAscending(LongHeap maxHeap) {
+        long[] sorted = new long[maxHeap.size()];
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = ~maxHeap.pop();
+        }
+        return sorted;
+    }
+
+    /** Binary min-heap of longs. */
+    private static final class LongHeap {
+
+        private long[] heap = new long[32];
+
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+
+    /** Per-thread visited marks, reset by bumping a generation counter. */
+    private static final class VisitedSet {
+
+        private int[] marks = new int[0];
+
+        private int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /** @return true if the node had not been visited yet */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package sg.com.aori.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import sg.com.aori.model.Product;
+
+/**
+ * Encodes a product's content attributes (category, collection, material,
+ * season, tags, colours, sizes and price band) as a fixed-length, unit-length
+ * float vector, so that the dot product of two vectors measures how similar
+ * the products are.
+ *
+ * Attributes are feature-hashed: each "name:value" feature is hashed to one
+ * dimension and a sign, and its weight added there. No vocabulary is kept, so
+ * new tags or colours need no retraining.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - parseJsonStrings unwraps arrays stored as JSON strings
+ */
+
+public class ProductVectorEncoder {
+
+    public static final int DIMENSIONS = 64;
+
+    private static final Pattern JSON_STRING = Pattern.compile("\"([^\"]*)\"");
+
+    private static final double PRICE_BAND_BASE = Math.log(1.5);
+
+    private ProductVectorEncoder() {
+    }
+
+    public static float[] encode(Product product) {
+        float[] vector = new float[DIMENSIONS];
+
+        add(vector, "category:" + product.getCategoryId(), 3.0f);
+        add(vector, "collection:" + normalise(product.getCollection()), 1.5f);
+        add(vector, "material:" + normalise(product.getMaterial()), 1.0f);
+        if (product.getSeason() != null) {
+            add(vector, "season:" + product.getSeason().name(), 1.0f);
+        }
+
+        List<String> tags = splitTags(product.getTags());
+        for (String tag : tags) {
+            add(vector, "tag:" + tag, (float) (2.0 / Math.sqrt(tags.size())));
+        }
+
+        List<String> colors = parseJsonStrings(product.getColors());
+        for (String color : colors) {
+            add(vector, "color:" + colorBucket(color), (float) (1.0 / Math.sqrt(colors.size())));
+        }
+
+        List<String> sizes = parseJsonStrings(product.getSize());
+        for (String size : sizes) {
+            add(vector, "size:" + normalise(size), (float) (0.5 / Math.sqrt(sizes.size())));
+        }
+
+        if (product.getPrice() != null && product.getPrice().signum() > 0) {
+            // neighbouring bands get half weight so close prices still overlap
+            int band = (int) Math.floor(Math.log(product.getPrice().doubleValue()) / PRICE_BAND_BASE);
+            add(vector, "price:" + band, 1.0f);
+            add(vector, "price:" + (band - 1), 0.5f);
+            add(vector, "price:" + (band + 1), 0.5f);
+        }
+
+        normaliseLength(vector);
+        return vector;
+    }
+
+    /**
+     * Extract the string elements of a JSON array such as ["S", "M"]. Returns
+     * an empty list for null or malformed input. An array that was itself
+     * stored as a JSON string ("[\"S\"]") is unwrapped first.
+     */
+    public static List<String> parseJsonStrings(String json) {
+        List<String> values = new ArrayList<>();
+        if (json == null) {
+            return values;
+        }
+        json = json.trim();
+        if (json.length() > 1 && json.startsWith("\"") && json.endsWith("\"")) {
+            json = json.substring(1, json.length() - 1).replace("\\\"", "\"");
+        }
+        Matcher matcher = JSON_STRING.matcher(json);
+        while (matcher.find()) {
+            String value = matcher.group(1).trim();
+            if (!value.isEmpty()) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private static List<String> splitTags(String tags) {
+        List<String> values = new ArrayList<>();
+        if (tags == null) {
+            return values;
+        }
+        for (String tag : tags.split(",")) {
+            String value = normalise(tag);
+            if (!value.isEmpty()) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Quantise a #rrggbb colour to 4 levels per channel, so that similar shades
+     * share a feature.
+     */
+    private static String colorBucket(String hex) {
+        String value = hex.startsWith("#") ? hex.substring(1) : hex;
+        if (value.length() != 6) {
+            return normalise(hex);
+        }
+        try {
+            int rgb = Integer.parseInt(value, 16);
+            return ((rgb >> 22) & 3) + "" + ((rgb >> 14) & 3) + ((rgb >> 6) & 3);
+        } catch (NumberFormatException e) {
+            return normalise(hex);
+        }
+    }
+
+    private static String normalise(String value) {
+        return value == null ? "" : value.trim().toLowerCase();
+    }
+
+    private static void add(float[] vector, String feature, float weight) {
+        int h = feature.hashCode() * 0x9E3779B9;
+        h ^= h >>> 15;
+        int dimension = (h & 0x7fffffff) % DIMENSIONS;
+        vector[dimension] += (h & 0x40000000) != 0 ? weight : -weight;
+    }
+
+    private static void normaliseLength(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) {
+            return;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+}
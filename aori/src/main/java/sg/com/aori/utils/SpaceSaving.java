@@ -0,0 +1,182 @@
+package sg.com.aori.utils;
+
+import java.util.*;
+
+/**
+ * Space-Saving heavy-hitters sketch: approximate counts of the most frequent
+ * items of a stream in a fixed number of counters.
+ *
+ * While there is a free counter a new item takes it. Otherwise the item
+ * replaces the item with the smallest count and inherits that count (plus
+ * one), remembering it as the possible overcount. Any item occurring more
+ * than N / capacity times in a stream of N is guaranteed to be held, and its
+ * count is overestimated by at most N / capacity.
+ *
+ * Counters sit in a binary min-heap, so finding the smallest is O(1) and an
+ * update O(log capacity). Not thread-safe.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class SpaceSaving {
+
+    /** An item, its estimated count and the most it may be overcounted by. */
+    public static final class Counter {
+
+        private final String item;
+
+        private final long count;
+
+        private final long error;
+
+        Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    private final int capacity;
+
+    private final Map<String, Integer> slotByItem;
+
+    // heap of slots ordered by count; slot arrays hold the counter state
+    private final String[] items;
+
+    private final long[] counts;
+
+    private final long[] errors;
+
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slotByItem = new HashMap<>(capacity * 2);
+        this.items = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    public void offer(String item) {
+        offer(item, 1);
+    }
+
+    /**
+     * Count an item weight times.
+     */
+    public void offer(String item, long weight) {
+        Integer slot = slotByItem.get(item);
+        if (slot != null) {
+            counts[slot] += weight;
+            siftDown(slot);
+            return;
+        }
+        if (size < capacity) {
+            slot = size++;
+            items[slot] = item;
+            counts[slot] = weight;
+            errors[slot] = 0;
+            slotByItem.put(item, slot);
+            siftUp(slot);
+            return;
+        }
+        // replace the smallest counter at the heap root
+        slotByItem.remove(items[0]);
+        errors[0] = counts[0];
+        counts[0] += weight;
+        items[0] = item;
+        slotByItem.put(item, 0);
+        siftDown(0);
+    }
+
+    /**
+     * @return The estimated count of an item, or 0 if it is not held
+     */
+    public long estimate(String item) {
+        Integer slot = slotByItem.get(item);
+        return slot == null ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The most frequent items held, highest count first (ties by item).
+     */
+    public List<Counter> top(int limit) {
+        List<Counter> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(new Counter(items[i], counts[i], errors[i]));
+        }
+        counters.sort(Comparator.comparingLong(Counter::getCount).reversed().thenComparing(Counter::getItem));
+        return counters.size() > limit ? new ArrayList<>(counters.subList(0, limit)) : counters;
+    }
+
+    public void clear() {
+        slotByItem.clear();
+        Arrays.fill(items, null);
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (counts[parent] <= counts[slot]) {
+                return;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int smallest = slot;
+            int left = 2 * slot + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == slot) {
+                return;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        long error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+        slotByItem.put(items[a], a);
+        slotByItem.put(items[b], b);
+    }
+}
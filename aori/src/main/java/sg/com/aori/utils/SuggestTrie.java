@@ -0,0 +1,252 @@
+package sg.com.aori.utils;
+
+import java.util.*;
+
+/**
+ * Immutable compressed prefix tree (radix trie) for typeahead suggestions.
+ *
+ * Every entry is reachable through one or more keys. Each node caches the IDs
+ * of the best entries (highest weight) found anywhere below it, so a lookup
+ * walks the typed prefix and returns that cached list. It costs
+ * O(prefix length + k) whatever the number of entries.
+ *
+ * The trie is built in one pass over the sorted keys. Chains of single-child
+ * nodes are collapsed into one edge label.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class SuggestTrie<T> {
+
+    /** Collects entries and keys, then builds the trie. */
+    public static class Builder<T> {
+
+        private final List<T> values = new ArrayList<>();
+
+        private final List<Double> weights = new ArrayList<>();
+
+        private final List<String> keys = new ArrayList<>();
+
+        private final List<Integer> keyEntries = new ArrayList<>();
+
+        /**
+         * Add an entry.
+         *
+         * @return The entry's ID, for {@link #addKey}
+         */
+        public int addEntry(T value, double weight) {
+            values.add(value);
+            weights.add(weight);
+            return values.size() - 1;
+        }
+
+        public double getWeight(int entry) {
+            return weights.get(entry);
+        }
+
+        public void setWeight(int entry, double weight) {
+            weights.set(entry, weight);
+        }
+
+        /**
+         * Make an entry reachable by every prefix of a (normalised) key.
+         */
+        public void addKey(int entry, String key) {
+            if (!key.isEmpty()) {
+                keys.add(key);
+                keyEntries.add(entry);
+            }
+        }
+
+        /**
+         * @param topK Number of entries cached per node, the most a lookup
+         *             can return
+         */
+        public SuggestTrie<T> build(int topK) {
+            Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(keys::get));
+
+            String[] sortedKeys = new String[order.length];
+            int[] sortedEntries = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedKeys[i] = keys.get(order[i]);
+                sortedEntries[i] = keyEntries.get(order[i]);
+            }
+
+            double[] weightArray = new double[weights.size()];
+            for (int i = 0; i < weightArray.length; i++) {
+                weightArray[i] = weights.get(i);
+            }
+
+            NodeBuilder nodeBuilder = new NodeBuilder(sortedKeys, sortedEntries, weightArray, topK);
+            Node root = sortedKeys.length == 0 ? new Node(new char[0], new char[0], new Node[0], new int[0])
+                    : nodeBuilder.build(0, sortedKeys.length, 0, true);
+            return new SuggestTrie<>(root, new ArrayList<>(values), nodeBuilder.nodes);
+        }
+    }
+
+    private static final class Node {
+
+        final char[] label;
+
+        final char[] firstChars;
+
+        final Node[] children;
+
+        final int[] top;
+
+        Node(char[] label, char[] firstChars, Node[] children, int[] top) {
+            this.label = label;
+            this.firstChars = firstChars;
+            this.children = children;
+            this.top = top;
+        }
+    }
+
+    /** Recursive construction over a sorted key range. */
+    private static final class NodeBuilder {
+
+        final String[] keys;
+
+        final int[] entries;
+
+        final double[] weights;
+
+        final int topK;
+
+        int nodes;
+
+        NodeBuilder(String[] keys, int[] entries, double[] weights, int topK) {
+            this.keys = keys;
+            this.entries = entries;
+            this.weights = weights;
+            this.topK = topK;
+        }
+
+        /**
+         * Build the node for keys [from, to), which share their first
+         * {@code depth} characters. The root has an empty label.
+         */
+        Node build(int from, int to, int depth, boolean root) {
+            nodes++;
+            // keys are sorted, so the range's common prefix is that of its
+            // first and last key
+            int end = root ? depth : commonPrefix(keys[from], keys[to - 1]);
+            char[] label = keys[from].substring(depth, end).toCharArray();
+
+            List<Integer> candidates = new ArrayList<>();
+            int i = from;
+            // keys ending here sort first
+            while (i < to && keys[i].length() == end) {
+                candidates.add(entries[i]);
+                i++;
+            }
+
+            List<Node> children = new ArrayList<>();
+            StringBuilder firstChars = new StringBuilder();
+            while (i < to) {
+                char c = keys[i].charAt(end);
+                int j = i + 1;
+                while (j < to && keys[j].charAt(end) == c) {
+                    j++;
+                }
+                Node child = build(i, j, end, false);
+                children.add(child);
+                firstChars.append(c);
+                for (int entry : child.top) {
+                    candidates.add(entry);
+                }
+                i = j;
+            }
+
+            return new Node(label, firstChars.toString().toCharArray(), children.toArray(new Node[0]),
+                    best(candidates));
+        }
+
+        private int[] best(List<Integer> candidates) {
+            candidates.sort((a, b) -> {
+                int cmp = Double.compare(weights[b], weights[a]);
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            });
+            int[] top = new int[Math.min(topK, candidates.size())];
+            int n = 0;
+            int previous = -1;
+            for (int entry : candidates) {
+                if (n == top.length) {
+                    break;
+                }
+                // equal entries are adjacent after sorting
+                if (entry != previous) {
+                    top[n++] = entry;
+                    previous = entry;
+                }
+            }
+            return n == top.length ? top : Arrays.copyOf(top, n);
+        }
+
+        private static int commonPrefix(String a, String b) {
+            int n = Math.min(a.length(), b.length());
+            int i = 0;
+            while (i < n && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    private final Node root;
+
+    private final List<T> values;
+
+    private final int nodeCount;
+
+    private SuggestTrie(Node root, List<T> values, int nodeCount) {
+        this.root = root;
+        this.values = values;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Get the best entries having a key that starts with the prefix.
+     *
+     * @param prefix Normalised prefix, as the keys were
+     * @param limit  Maximum number of entries (at most the build's topK)
+     * @return Entries, best first
+     */
+    public List<T> suggest(String prefix, int limit) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int slot = Arrays.binarySearch(node.firstChars, prefix.charAt(i));
+            if (slot < 0) {
+                return Collections.emptyList();
+            }
+            node = node.children[slot];
+            char[] label = node.label;
+            for (int j = 0; j < label.length && i < prefix.length(); j++, i++) {
+                if (label[j] != prefix.charAt(i)) {
+                    return Collections.emptyList();
+                }
+            }
+        }
+
+        List<T> result = new ArrayList<>(Math.min(limit, node.top.length));
+        for (int k = 0; k < node.top.length && result.size() < limit; k++) {
+            result.add(values.get(node.top[k]));
+        }
+        return result;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+}
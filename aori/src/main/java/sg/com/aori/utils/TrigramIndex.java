@@ -0,0 +1,228 @@
+package sg.com.aori.utils;
+
+import java.util.*;
+
+/**
+ * Character trigram index over a vocabulary of words, for spelling
+ * correction: finds the known words within a small edit distance of a
+ * misspelt one ("blazr" to "blazer").
+ *
+ * Words are padded ("^blazer$") and split into trigrams, each with a postings
+ * list of word IDs. An edit changes at most three of a word's trigrams, so a
+ * word within k edits shares at least (grams - 3k) trigrams with the query.
+ * Candidates passing that count and a length check are verified with a
+ * bounded Levenshtein distance.
+ *
+ * Memory is capped: once the estimated size reaches the budget, further words
+ * are not indexed, so add the most useful words first. Not thread-safe;
+ * callers guard it with their own lock.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class TrigramIndex {
+
+    /** A known word and its edit distance from the query. */
+    public static final class Correction {
+
+        private final String word;
+
+        private final int distance;
+
+        Correction(String word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    // rough per-object costs on a 64-bit JVM with compressed pointers
+    private static final int WORD_OVERHEAD_BYTES = 64;
+
+    private static final int GRAM_OVERHEAD_BYTES = 48;
+
+    private final long budgetBytes;
+
+    private final Map<String, Integer> idByWord = new HashMap<>();
+
+    private final List<String> words = new ArrayList<>();
+
+    // postings.get(gram)[0] is the list's length
+    private final Map<String, int[]> postings = new HashMap<>();
+
+    private long estimatedBytes;
+
+    private final ThreadLocal<int[]> counters = ThreadLocal.withInitial(() -> new int[0]);
+
+    public TrigramIndex(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Index a word, unless it is known already or the budget is used up.
+     *
+     * @return false if the word was not indexed for lack of budget
+     */
+    public boolean add(String word) {
+        if (idByWord.containsKey(word)) {
+            return true;
+        }
+        if (estimatedBytes >= budgetBytes) {
+            return false;
+        }
+        int id = words.size();
+        idByWord.put(word, id);
+        words.add(word);
+        estimatedBytes += WORD_OVERHEAD_BYTES + 2L * word.length();
+
+        for (String gram : grams(word)) {
+            int[] list = postings.get(gram);
+            if (list == null) {
+                list = new int[4];
+                postings.put(gram, list);
+                estimatedBytes += GRAM_OVERHEAD_BYTES;
+            } else if (list[0] + 1 == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                postings.put(gram, list);
+            }
+            // a word repeating a trigram ("aaaa") is listed once
+            if (list[0] == 0 || list[list[0]] != id) {
+                list[++list[0]] = id;
+                estimatedBytes += 4;
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(String word) {
+        return idByWord.containsKey(word);
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Find the indexed words within a number of edits of a word.
+     *
+     * @param word     The (misspelt) word
+     * @param maxEdits Largest accepted edit distance
+     * @param limit    Maximum number of corrections
+     * @return Corrections, closest first (ties by word)
+     */
+    public List<Correction> correct(String word, int maxEdits, int limit) {
+        if (maxEdits <= 0 || words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> queryGrams = new HashSet<>(grams(word));
+        int minShared = Math.max(1, queryGrams.size() - 3 * maxEdits);
+
+        int[] counts = counters.get();
+        if (counts.length < words.size()) {
+            counts = new int[Math.max(words.size(), counts.length * 2)];
+            counters.set(counts);
+        }
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        for (String gram : queryGrams) {
+            int[] list = postings.get(gram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 1; i <= list[0]; i++) {
+                int id = list[i];
+                if (counts[id]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        List<Correction> corrections = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            int shared = counts[id];
+            counts[id] = 0;
+            String candidate = words.get(id);
+            if (shared < minShared || Math.abs(candidate.length() - word.length()) > maxEdits) {
+                continue;
+            }
+            int distance = boundedLevenshtein(word, candidate, maxEdits);
+            if (distance <= maxEdits) {
+                corrections.add(new Correction(candidate, distance));
+            }
+        }
+        corrections.sort(Comparator.comparingInt(Correction::getDistance).thenComparing(Correction::getWord));
+        return corrections.size() > limit ? new ArrayList<>(corrections.subList(0, limit)) : corrections;
+    }
+
+    /**
+     * Levenshtein distance, computed only within a diagonal band of width
+     * 2 * max + 1 and abandoned once every cell exceeds max.
+     *
+     * @return The distance, or max + 1 if it is larger than max
+     */
+    public static int boundedLevenshtein(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        int big = max + 1;
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j <= max ? j : big;
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            current[0] = i <= max ? i : big;
+            if (from > 1) {
+                current[from - 1] = big;
+            }
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                current[j] = Math.min(value, big);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) {
+                current[to + 1] = big;
+            }
+            if (rowMin > max) {
+                return big;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[m], big);
+    }
+
+    private static List<String> grams(String word) {
+        String padded = "^" + word + "$";
+        List<String> grams = new ArrayList<>(padded.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,217 @@
+package sg.com.aori.benchmark;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sg.com.aori.model.Category;
+import sg.com.aori.model.Product;
+import sg.com.aori.repository.SkuRepository;
+import sg.com.aori.service.CatalogVersion;
+import sg.com.aori.service.ProductCategoryIndex;
+import sg.com.aori.service.ProductSearchIndex;
+import sg.com.aori.service.SkuAttributeIndex;
+
+/**
+ * Measures the in-memory search index on a synthetic catalogue (100k
+ * products by default): build time, heap used, and p50/p99 latency of exact,
+ * multi-word, prefix, misspelt and filter-only queries. It also reports how
+ * often a misspelt query finds the intended word.
+ *
+ * Runs only with the benchmark profile: mvn test -Pbenchmark. The size can be
+ * changed with -Dbenchmark.searchProducts. No database is involved; the index
+ * reads its products from a stubbed category index, and no product has SKUs,
+ * so colour and size filters use the declared attributes.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Stubbed SKU index
+ */
+
+@Tag("benchmark")
+class ProductSearchBenchmarkTest {
+
+    private static final int QUERIES = 2000;
+
+    private static final int PAGE_SIZE = 24;
+
+    private static final double MIN_TYPO_RECALL = 0.9;
+
+    private static final String[] ADJECTIVES = { "Relaxed", "Slim", "Oversized", "Cropped", "Classic", "Tailored",
+            "Boxy", "Pleated", "Quilted", "Washed", "Brushed", "Ribbed", "Structured", "Draped", "Utility",
+            "Everyday", "Lightweight", "Heavyweight", "Textured", "Wrap" };
+
+    private static final String[] MATERIALS = { "Linen", "Cotton", "Wool", "Cashmere", "Silk", "Denim", "Corduroy",
+            "Tweed", "Jersey", "Fleece", "Poplin", "Chambray", "Satin", "Velvet", "Leather" };
+
+    private static final String[] GARMENTS = { "Shirt", "Blazer", "Hoodie", "Trousers", "Jacket", "Cardigan",
+            "Sweater", "Skirt", "Dress", "Coat", "Vest", "Chinos", "Shorts", "Blouse", "Parka", "Tunic", "Jumpsuit",
+            "Overshirt", "Anorak", "Kimono", "Poncho", "Bomber", "Trench", "Pullover", "Turtleneck", "Culottes",
+            "Joggers", "Camisole", "Henley", "Windbreaker" };
+
+    private static final String[] COLORS = { "#252524", "#7a7a7a", "#f5f5f0", "#0a2540", "#4ecdc4", "#a1947f",
+            "#c0392b", "#2e7d32" };
+
+    private static final String[] SIZES = { "XS", "S", "M", "L", "XL" };
+
+    private static final String SYLLABLES = "ka,ri,mo,to,sa,no,ha,ze,lu,vi,en,or,ta,ne,shi,ra,ko,mi";
+
+    @Test
+    void searchLatencyOnLargeCatalogue() {
+        int productCount = Integer.getInteger("benchmark.searchProducts", 100_000);
+        Random random = new Random(42);
+        List<Product> products = generateCatalogue(random, productCount);
+
+        ProductCategoryIndex categoryIndex = mock(ProductCategoryIndex.class);
+        when(categoryIndex.allProducts()).thenReturn(products);
+        SkuAttributeIndex skuIndex = new SkuAttributeIndex();
+        ReflectionTestUtils.setField(skuIndex, "categoryIndex", categoryIndex);
+        ReflectionTestUtils.setField(skuIndex, "skuRepository", mock(SkuRepository.class));
+        ProductSearchIndex index = new ProductSearchIndex();
+        ReflectionTestUtils.setField(index, "categoryIndex", categoryIndex);
+        ReflectionTestUtils.setField(index, "skuIndex", skuIndex);
+        ReflectionTestUtils.setField(index, "catalogVersion", new CatalogVersion());
+
+        long heapBefore = usedHeap();
+        long buildStart = System.currentTimeMillis();
+        index.rebuild();
+        long buildMillis = System.currentTimeMillis() - buildStart;
+        long heapAfter = usedHeap();
+        System.out.println(String.format("[Benchmark] Indexed %d products in %d ms, ~%.1f MB heap", productCount,
+                buildMillis, (heapAfter - heapBefore) / 1024.0 / 1024.0));
+
+        Map<String, Function<Random, String>> queries = new LinkedHashMap<>();
+        queries.put("word", r -> pick(r, GARMENTS));
+        queries.put("two words", r -> pick(r, MATERIALS) + " " + pick(r, GARMENTS));
+        queries.put("prefix", r -> {
+            String garment = pick(r, GARMENTS);
+            return garment.substring(0, Math.min(garment.length(), 4));
+        });
+        queries.put("typo", r -> misspell(r, pick(r, GARMENTS).toLowerCase(Locale.ROOT)));
+        queries.put("typo + word", r -> pick(r, ADJECTIVES) + " " + misspell(r, pick(r, GARMENTS)
+                .toLowerCase(Locale.ROOT)));
+        queries.put("filters only", r -> "");
+
+        ProductSearchIndex.Filters filters = new ProductSearchIndex.Filters(null, "navy", "M", null,
+                new BigDecimal("150"));
+
+        // warm up the JIT on every query kind
+        for (Function<Random, String> query : queries.values()) {
+            for (int i = 0; i < 200; i++) {
+                index.search(query.apply(random), null, null, PAGE_SIZE);
+            }
+        }
+
+        System.out.println(String.format("%-14s %8s %9s %9s %11s", "query", "calls", "p50 ms", "p99 ms",
+                "avg hits"));
+        for (Map.Entry<String, Function<Random, String>> query : queries.entrySet()) {
+            long[] nanos = new long[QUERIES];
+            long totalHits = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                String text = query.getValue().apply(random);
+                ProductSearchIndex.Filters applied = text.isEmpty() ? filters : null;
+                long start = System.nanoTime();
+                ProductSearchIndex.Result result = index.search(text, applied, null, PAGE_SIZE);
+                nanos[i] = System.nanoTime() - start;
+                totalHits += result.getTotal();
+            }
+            Arrays.sort(nanos);
+            System.out.println(String.format("%-14s %8d %9.3f %9.3f %11.1f", query.getKey(), QUERIES,
+                    percentile(nanos, 0.50) / 1e6, percentile(nanos, 0.99) / 1e6, (double) totalHits / QUERIES));
+        }
+
+        Map<String, String> nameById = new HashMap<>();
+        products.forEach(p -> nameById.put(p.getProductId(), p.getProductName().toLowerCase(Locale.ROOT)));
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            String garment = pick(random, GARMENTS).toLowerCase(Locale.ROOT);
+            List<ProductSearchIndex.SearchHit> hits = index.search(misspell(random, garment), null, null, 1)
+                    .getHits();
+            if (!hits.isEmpty() && nameById.get(hits.get(0).getProductId()).contains(garment)) {
+                found++;
+            }
+        }
+        double recall = (double) found / QUERIES;
+        System.out.println(String.format("[Benchmark] Misspelt garment found as top hit: %.3f", recall));
+        assertTrue(recall >= MIN_TYPO_RECALL, "typo recall " + recall + " below " + MIN_TYPO_RECALL);
+    }
+
+    private static List<Product> generateCatalogue(Random random, int count) {
+        String[] syllables = SYLLABLES.split(",");
+        String[] collections = new String[2000];
+        for (int i = 0; i < collections.length; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int s = 2 + random.nextInt(2); s > 0; s--) {
+                name.append(syllables[random.nextInt(syllables.length)]);
+            }
+            collections[i] = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        Category[] categories = new Category[50];
+        for (int c = 0; c < categories.length; c++) {
+            categories[c] = new Category("cat-" + c, "BC-" + c, pick(random, GARMENTS) + "s " + c,
+                    Category.BroadCategory.values()[c % 3]);
+        }
+
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Category category = categories[random.nextInt(categories.length)];
+            String material = pick(random, MATERIALS);
+            Product product = new Product(pick(random, ADJECTIVES) + " " + material + " " + pick(random, GARMENTS),
+                    category.getCategoryId());
+            product.setProductId(String.format("p-%08d", i));
+            product.setCategory(category);
+            product.setCollection(pick(random, collections));
+            product.setMaterial(material);
+            product.setDescription("Made in " + pick(random, collections) + " from " + material.toLowerCase(
+                    Locale.ROOT) + ", cut for " + pick(random, ADJECTIVES).toLowerCase(Locale.ROOT) + " wear.");
+            product.setTags(pick(random, ADJECTIVES) + ", " + pick(random, collections));
+            product.setColors("[\"" + pick(random, COLORS) + "\", \"" + pick(random, COLORS) + "\"]");
+            product.setSize("[\"" + String.join("\", \"", Arrays.copyOfRange(SIZES, random.nextInt(2),
+                    3 + random.nextInt(3))) + "\"]");
+            product.setPrice(BigDecimal.valueOf(39 + random.nextInt(200)));
+            product.setStockQuantity(1 + random.nextInt(100));
+            products.add(product);
+        }
+        return products;
+    }
+
+    /** One random substitution, deletion, insertion or transposition. */
+    private static String misspell(Random random, String word) {
+        int at = 1 + random.nextInt(word.length() - 2);
+        char letter = (char) ('a' + random.nextInt(26));
+        switch (random.nextInt(4)) {
+            case 0:
+                return word.substring(0, at) + letter + word.substring(at + 1);
+            case 1:
+                return word.substring(0, at) + word.substring(at + 1);
+            case 2:
+                return word.substring(0, at) + letter + word.substring(at);
+            default:
+                return word.substring(0, at) + word.charAt(at + 1) + word.charAt(at) + word.substring(at + 2);
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.round(p * (sorted.length - 1))];
+    }
+}
@@ -0,0 +1,174 @@
+package sg.com.aori.benchmark;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Function;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import sg.com.aori.benchmark.SyntheticShopHistory.Timeline;
+import sg.com.aori.model.Product;
+import sg.com.aori.service.*;
+
+/**
+ * Replays synthetic customer timelines against every recommendation method
+ * and reports p50/p99 latency, SQL statements, allocated bytes and
+ * hit-rate@K (share of customers for whom at least one product of their
+ * held-out next order is recommended).
+ *
+ * Runs only with the benchmark profile: mvn test -Pbenchmark. Sizes can be
+ * changed with -Dbenchmark.customers and -Dbenchmark.products. The test fails
+ * if a method issues more SQL statements per call than its budget, which
+ * catches N+1 regressions in the hot path.
+ *
+ * Allocation is measured on the calling thread only, so the feed's parallel
+ * work is not included in its figure.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@Tag("benchmark")
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false",
+        "aori.recommendation.feed.source-timeout-ms=2000" })
+@Import({ ProductRecommendationService.class, ProductCategoryIndex.class, PurchaseHistoryCache.class,
+        CoPurchaseIndex.class, PopularityIndex.class, SimilarProductIndex.class, CategoryRegistry.class,
+        RecommendationFeedService.class, PrecomputedRecommendationService.class,
+        InMemoryRecommendationStore.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // data must be visible to the feed's worker threads
+class RecommendationReplayBenchmarkTest {
+
+    private static final int K = 10;
+
+    private static final int WARM_UP_CUSTOMERS = 50;
+
+    private static final int MAX_STATEMENTS_PER_CALL = 3;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProductRecommendationService recommendationService;
+
+    @Autowired
+    private RecommendationFeedService feedService;
+
+    @Autowired
+    private PrecomputedRecommendationService precomputedService;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    @Autowired
+    private PopularityIndex popularityIndex;
+
+    @Autowired
+    private CoPurchaseIndex coPurchaseIndex;
+
+    @Autowired
+    private SimilarProductIndex similarProductIndex;
+
+    @Test
+    void replayCustomerTimelines() {
+        int customers = Integer.getInteger("benchmark.customers", 300);
+        int products = Integer.getInteger("benchmark.products", 2000);
+        SyntheticShopHistory history = new SyntheticShopHistory(42, 20, products, customers);
+
+        long seedStart = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> history.persistCatalogue(em));
+        transactionTemplate.executeWithoutResult(status -> history.persistTimelines(em));
+        System.out.println("[Benchmark] Seeded " + history.getProducts().size() + " products and " + customers
+                + " customers in " + (System.currentTimeMillis() - seedStart) + " ms");
+
+        categoryIndex.refresh();
+        popularityIndex.refresh();
+        coPurchaseIndex.rebuild();
+        similarProductIndex.rebuild();
+        precomputedService.precomputeActiveCustomers();
+
+        Map<String, Function<Timeline, List<Product>>> methods = new LinkedHashMap<>();
+        methods.put("purchases", t -> recommendationService.getRecommendations(t.customerId, K));
+        methods.put("cart", t -> recommendationService.getRecommendationsFromCart(t.customerId, K));
+        methods.put("history", t -> recommendationService.getRecommendationsFromViewHistory(t.customerId, K));
+        methods.put("popular", t -> recommendationService.getPopularProducts(K));
+        methods.put("similar", t -> recommendationService.getSimilarProducts(t.lastPurchased(), t.customerId, K));
+        methods.put("boughtTogether", t -> recommendationService.getBoughtTogether(t.lastPurchased(), K));
+        methods.put("precomputed", t -> precomputedService.getRecommendations(t.customerId, K));
+        methods.put("feed", t -> feedService.getFeed(t.customerId, K).getItems());
+
+        List<Timeline> timelines = history.getTimelines();
+        for (Timeline timeline : timelines.subList(0, Math.min(WARM_UP_CUSTOMERS, timelines.size()))) {
+            methods.values().forEach(method -> method.apply(timeline));
+        }
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        System.out.println(String.format("%-16s %8s %9s %9s %11s %11s %8s", "method", "calls", "p50 ms",
+                "p99 ms", "stmts/call", "KB/call", "hit@" + K));
+        List<String> overBudget = new ArrayList<>();
+        for (Map.Entry<String, Function<Timeline, List<Product>>> method : methods.entrySet()) {
+            long[] nanos = new long[timelines.size()];
+            long statements = 0;
+            long allocated = 0;
+            int hits = 0;
+
+            for (int i = 0; i < timelines.size(); i++) {
+                Timeline timeline = timelines.get(i);
+                statistics.clear();
+                long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+
+                List<Product> recommended = method.getValue().apply(timeline);
+
+                nanos[i] = System.nanoTime() - start;
+                allocated += threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+                statements += statistics.getPrepareStatementCount();
+                if (recommended.stream().anyMatch(p -> timeline.heldOut.contains(p.getProductId()))) {
+                    hits++;
+                }
+            }
+
+            Arrays.sort(nanos);
+            double statementsPerCall = (double) statements / timelines.size();
+            System.out.println(String.format("%-16s %8d %9.3f %9.3f %11.2f %11.1f %8.3f", method.getKey(),
+                    timelines.size(), percentile(nanos, 0.50) / 1e6, percentile(nanos, 0.99) / 1e6,
+                    statementsPerCall, allocated / 1024.0 / timelines.size(), (double) hits / timelines.size()));
+            if (statementsPerCall > MAX_STATEMENTS_PER_CALL) {
+                overBudget.add(method.getKey() + " (" + statementsPerCall + ")");
+            }
+        }
+
+        assertTrue(overBudget.isEmpty(), "SQL statements per call over budget of " + MAX_STATEMENTS_PER_CALL
+                + ": " + overBudget);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.round(p * (sorted.length - 1))];
+    }
+}
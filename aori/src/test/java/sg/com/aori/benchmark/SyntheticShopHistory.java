@@ -0,0 +1,202 @@
+package sg.com.aori.benchmark;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import jakarta.persistence.EntityManager;
+import sg.com.aori.model.*;
+
+/**
+ * Deterministic synthetic catalogue and customer timelines for the replay
+ * benchmarks.
+ *
+ * Each customer favours two categories: their orders, views and cart mostly
+ * come from those. The customer's last order is held out (not persisted) so
+ * that recommendation quality can be scored as hit-rate@K against it.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+public class SyntheticShopHistory {
+
+    private static final String[] TAGS = { "Casual", "Formal", "Tops", "Bottoms", "Outerwear", "Best Seller",
+            "New Arrival", "Shizen", "Minimal", "Linen", "Summer", "Layering" };
+
+    private static final String[] MATERIALS = { "Cotton", "Linen", "Wool", "Wool Blend", "Silk", "Denim" };
+
+    private static final String[] COLORS = { "#252524", "#7a7a7a", "#f5f5f0", "#0a2540", "#4ecdc4", "#a1947f",
+            "#c0392b", "#2e7d32" };
+
+    private static final String[] SIZES = { "XS", "S", "M", "L", "XL" };
+
+    /** One customer's persisted history and held-out next order. */
+    public static class Timeline {
+
+        public final String customerId;
+
+        public final List<String> purchased = new ArrayList<>();
+
+        public final List<String> viewed = new ArrayList<>();
+
+        public final List<String> cart = new ArrayList<>();
+
+        public final Set<String> heldOut = new LinkedHashSet<>();
+
+        Timeline(String customerId) {
+            this.customerId = customerId;
+        }
+
+        public String lastPurchased() {
+            return purchased.isEmpty() ? null : purchased.get(purchased.size() - 1);
+        }
+    }
+
+    private final Random random;
+
+    private final int categoryCount;
+
+    private final int productCount;
+
+    private final int customerCount;
+
+    private final List<Product> products = new ArrayList<>();
+
+    private final List<List<Product>> productsByCategory = new ArrayList<>();
+
+    private final List<Timeline> timelines = new ArrayList<>();
+
+    public SyntheticShopHistory(long seed, int categoryCount, int productCount, int customerCount) {
+        this.random = new Random(seed);
+        this.categoryCount = categoryCount;
+        this.productCount = productCount;
+        this.customerCount = customerCount;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public List<Timeline> getTimelines() {
+        return timelines;
+    }
+
+    /**
+     * Persist the catalogue only.
+     */
+    public void persistCatalogue(EntityManager em) {
+        for (int c = 0; c < categoryCount; c++) {
+            Category category = new Category(null, "BC-" + c, "Bench Category " + c,
+                    Category.BroadCategory.values()[c % 3]);
+            category.setSlug("bench-category-" + c);
+            em.persist(category);
+            productsByCategory.add(new ArrayList<>());
+
+            int perCategory = productCount / categoryCount;
+            for (int i = 0; i < perCategory; i++) {
+                Product product = newProduct(category.getCategoryId(), c, i);
+                em.persist(product);
+                products.add(product);
+                productsByCategory.get(c).add(product);
+            }
+            em.flush();
+            em.clear();
+        }
+    }
+
+    /**
+     * Persist customers, their orders, views and carts. Requires the
+     * catalogue.
+     */
+    public void persistTimelines(EntityManager em) {
+        long now = System.currentTimeMillis();
+        for (int n = 0; n < customerCount; n++) {
+            Customer customer = new Customer();
+            customer.setCustomerId(UUID.randomUUID().toString());
+            customer.setFirstName("Bench");
+            customer.setLastName("Customer");
+            customer.setEmail("bench" + n + "@aori.test");
+            customer.setPassword("Password123!");
+            em.persist(customer);
+
+            Timeline timeline = new Timeline(customer.getCustomerId());
+            int[] favourites = { random.nextInt(categoryCount), random.nextInt(categoryCount) };
+
+            int orders = 2 + random.nextInt(4);
+            for (int o = 0; o < orders; o++) {
+                Orders order = new Orders("BENCH-" + n + "-" + o, customer.getCustomerId(),
+                        Orders.OrderStatus.Delivered, BigDecimal.valueOf(100), Orders.PaymentStatus.Paid);
+                em.persist(order);
+                int lines = 1 + random.nextInt(3);
+                for (int l = 0; l < lines; l++) {
+                    Product product = pick(favourites);
+                    em.persist(new OrderItem(order.getOrderId(), product.getProductId(), 1, product.getPrice()));
+                    timeline.purchased.add(product.getProductId());
+                }
+            }
+
+            int views = 10 + random.nextInt(50);
+            for (int v = 0; v < views; v++) {
+                Product product = pick(favourites);
+                ViewHistory view = new ViewHistory(customer.getCustomerId(), product.getProductId());
+                view.setTimestamp(now - (views - v) * 60_000L);
+                em.persist(view);
+                timeline.viewed.add(product.getProductId());
+            }
+
+            int cartLines = random.nextInt(4);
+            for (int c = 0; c < cartLines; c++) {
+                Product product = pick(favourites);
+                if (!timeline.cart.contains(product.getProductId())) {
+                    em.persist(new ShoppingCart(customer.getCustomerId(), product.getProductId(), 1,
+                            product.getProductCode() + "&252524&M"));
+                    timeline.cart.add(product.getProductId());
+                }
+            }
+
+            // the next order: products from the favourite categories not bought yet
+            while (timeline.heldOut.size() < 2) {
+                Product product = pick(favourites);
+                if (!timeline.purchased.contains(product.getProductId())) {
+                    timeline.heldOut.add(product.getProductId());
+                }
+            }
+
+            timelines.add(timeline);
+            if (n % 50 == 49) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private Product pick(int[] favourites) {
+        // 85% from a favourite category, skewed towards its first products
+        List<Product> pool = random.nextInt(100) < 85
+                ? productsByCategory.get(favourites[random.nextInt(favourites.length)])
+                : productsByCategory.get(random.nextInt(categoryCount));
+        int index = (int) (Math.abs(random.nextGaussian()) * pool.size() / 4) % pool.size();
+        return pool.get(index);
+    }
+
+    private Product newProduct(String categoryId, int c, int i) {
+        Product product = new Product("Bench Product " + c + "-" + i, categoryId);
+        product.setProductCode("B-" + c + "-" + i);
+        product.setDescription("Synthetic product " + i + " in category " + c);
+        product.setCollection(random.nextBoolean() ? "Shizen" : "Summer 2025");
+        product.setMaterial(MATERIALS[random.nextInt(MATERIALS.length)]);
+        product.setSeason(Product.Season.values()[random.nextInt(Product.Season.values().length)]);
+        product.setTags(TAGS[random.nextInt(TAGS.length)] + ", " + TAGS[random.nextInt(TAGS.length)]);
+        product.setColors("[\"" + COLORS[random.nextInt(COLORS.length)] + "\", \""
+                + COLORS[random.nextInt(COLORS.length)] + "\"]");
+        product.setSize("[\"" + String.join("\", \"", Arrays.copyOfRange(SIZES, random.nextInt(2),
+                3 + random.nextInt(3))) + "\"]");
+        product.setPrice(BigDecimal.valueOf(39 + random.nextInt(200)));
+        product.setStockQuantity(random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(200));
+        product.setRating(Math.round(random.nextFloat() * 50) / 10f);
+        return product;
+    }
+}
@@ -0,0 +1,114 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.server.ResponseStatusException;
+
+import sg.com.aori.dto.ProductCardDTO;
+import sg.com.aori.dto.ProductCardPageDTO;
+import sg.com.aori.model.Category;
+import sg.com.aori.model.Product;
+
+/**
+ * Checks the paged product card listing: name order, cursors that neither
+ * skip nor repeat cards, and the category filter.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({ CRUDProductService.class, CategoryRegistry.class })
+class CRUDProductServiceTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private CRUDProductService productService;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
+    private Category tops;
+
+    @BeforeEach
+    void seedCatalog() {
+        tops = new Category(null, "TOPS", "Tops", Category.BroadCategory.Unisex);
+        tops.setSlug("tops");
+        em.persist(tops);
+        Category outerwear = new Category(null, "OUTER", "Outerwear", Category.BroadCategory.Unisex);
+        outerwear.setSlug("outerwear");
+        em.persist(outerwear);
+
+        product("Linen Shirt", tops, 10);
+        product("Wool Hoodie", outerwear, 0);
+        product("Cotton Trousers", tops, 3);
+        product("Linen Shirt", outerwear, 5);
+        product("Bomber Jacket", outerwear, 1);
+        em.flush();
+        em.clear();
+        categoryRegistry.refresh();
+    }
+
+    @Test
+    void pagesWalkTheWholeListingInNameOrder() {
+        List<ProductCardDTO> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ProductCardPageDTO page = productService.getProductCards(null, cursor, 2);
+            assertTrue(page.getItems().size() <= 2);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(List.of("Bomber Jacket", "Cotton Trousers", "Linen Shirt", "Linen Shirt", "Wool Hoodie"),
+                all.stream().map(ProductCardDTO::getProductName).toList());
+        assertEquals(5, all.stream().map(ProductCardDTO::getProductId).distinct().count());
+
+        ProductCardDTO hoodie = all.get(4);
+        assertFalse(hoodie.isInStock());
+        assertEquals("outerwear", hoodie.getCategorySlug());
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(hoodie.getPrice()));
+    }
+
+    @Test
+    void categoryFilterAcceptsSlugOrId() {
+        ProductCardPageDTO bySlug = productService.getProductCards("tops", null, 24);
+        ProductCardPageDTO byId = productService.getProductCards(tops.getCategoryId(), null, 24);
+
+        assertEquals(List.of("Cotton Trousers", "Linen Shirt"),
+                bySlug.getItems().stream().map(ProductCardDTO::getProductName).toList());
+        assertNull(bySlug.getNextCursor());
+        assertEquals(bySlug.getItems().size(), byId.getItems().size());
+        assertTrue(productService.getProductCards("no-such-category", null, 24).getItems().isEmpty());
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(ResponseStatusException.class, () -> productService.getProductCards(null, "%%%", 24));
+    }
+
+    private void product(String name, Category category, int stock) {
+        Product product = new Product(name, category.getCategoryId());
+        product.setProductCode("P-" + UUID.randomUUID().toString().substring(0, 8));
+        product.setCollection("Essentials");
+        product.setColors("[\"#000000\"]");
+        product.setPrice(BigDecimal.valueOf(100));
+        product.setStockQuantity(stock);
+        em.persist(product);
+    }
+}
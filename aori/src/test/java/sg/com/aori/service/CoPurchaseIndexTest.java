@@ -0,0 +1,130 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import sg.com.aori.event.OrderChangedEvent;
+import sg.com.aori.model.*;
+
+/**
+ * Checks that co-purchase counts come out the same whether an order reaches
+ * the index through a rebuild's scan, its event, or both.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({ CoPurchaseIndex.class, ProductCategoryIndex.class })
+class CoPurchaseIndexTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private CoPurchaseIndex coPurchaseIndex;
+
+    private String customerId;
+
+    private String a;
+
+    private String b;
+
+    private String c;
+
+    @BeforeEach
+    void seedCatalog() {
+        Category category = new Category(null, "CAT-CP", "Co-purchase", Category.BroadCategory.Unisex);
+        category.setSlug("co-purchase");
+        em.persist(category);
+        a = persistProduct(category, "A");
+        b = persistProduct(category, "B");
+        c = persistProduct(category, "C");
+
+        Customer customer = new Customer();
+        customer.setCustomerId(UUID.randomUUID().toString());
+        customer.setFirstName("Test");
+        customer.setLastName("Customer");
+        customer.setEmail(customer.getCustomerId() + "@aori.test");
+        customer.setPassword("Password123!");
+        em.persist(customer);
+        customerId = customer.getCustomerId();
+    }
+
+    @Test
+    void rebuildCountsActiveOrdersOnly() {
+        persistOrder(Orders.OrderStatus.Delivered, a, b);
+        persistOrder(Orders.OrderStatus.Delivered, a, b, c);
+        persistOrder(Orders.OrderStatus.Cancelled, a, c);
+
+        coPurchaseIndex.rebuild();
+
+        assertEquals(2, coPurchaseIndex.getCoPurchaseCount(a, b));
+        assertEquals(2, coPurchaseIndex.getCoPurchaseCount(b, a));
+        assertEquals(1, coPurchaseIndex.getCoPurchaseCount(a, c));
+        assertEquals(1, coPurchaseIndex.getCoPurchaseCount(b, c));
+    }
+
+    @Test
+    void placedOrdersAreFoldedIn() {
+        persistOrder(Orders.OrderStatus.Delivered, a, b);
+        coPurchaseIndex.rebuild();
+
+        placed(UUID.randomUUID().toString(), b, c);
+        coPurchaseIndex.applyPendingOrders();
+
+        assertEquals(1, coPurchaseIndex.getCoPurchaseCount(a, b));
+        assertEquals(1, coPurchaseIndex.getCoPurchaseCount(b, c));
+    }
+
+    @Test
+    void ordersSeenByTheScanAreNotCountedTwice() {
+        String queuedBefore = persistOrder(Orders.OrderStatus.Delivered, a, b);
+        placed(queuedBefore, a, b);
+        String committedDuringScan = persistOrder(Orders.OrderStatus.Delivered, a, b);
+
+        coPurchaseIndex.rebuild();
+        // the event of an order the scan already saw arrives after the rebuild
+        placed(committedDuringScan, a, b);
+        coPurchaseIndex.applyPendingOrders();
+
+        assertEquals(2, coPurchaseIndex.getCoPurchaseCount(a, b));
+    }
+
+    private void placed(String orderId, String... productIds) {
+        coPurchaseIndex.onOrderChanged(new OrderChangedEvent(OrderChangedEvent.Type.PLACED, customerId, orderId,
+                List.of(productIds)));
+    }
+
+    private String persistProduct(Category category, String name) {
+        Product product = new Product("Product " + name, category.getCategoryId());
+        product.setProductCode("CP-" + name);
+        product.setCollection("Test Collection");
+        product.setColors("[\"#000000\"]");
+        product.setPrice(BigDecimal.valueOf(100));
+        product.setStockQuantity(10);
+        em.persist(product);
+        return product.getProductId();
+    }
+
+    private String persistOrder(Orders.OrderStatus status, String... productIds) {
+        Orders order = new Orders("CP-" + UUID.randomUUID(), customerId, status, BigDecimal.valueOf(100),
+                Orders.PaymentStatus.Paid);
+        em.persist(order);
+        for (String productId : productIds) {
+            em.persist(new OrderItem(order.getOrderId(), productId, 1, BigDecimal.valueOf(100)));
+        }
+        em.flush();
+        return order.getOrderId();
+    }
+}
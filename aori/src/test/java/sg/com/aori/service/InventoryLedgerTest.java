@@ -0,0 +1,230 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import sg.com.aori.model.Sku;
+import sg.com.aori.repository.SkuRepository;
+
+/**
+ * Checks the in-memory inventory ledger: compare-and-set reservations that
+ * never oversell, all-or-nothing multi-SKU reservations, journaling on commit
+ * only, coalesced write-behind, and recovery from the journal after a crash.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Uncommitted reservations are not journaled; variants
+ * @version 1.2 - Restocks while a reservation is in flight
+ */
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryLedgerTest {
+
+    private static final int BUYERS = 300;
+
+    @TempDir
+    Path journalDir;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SkuRepository skuRepository;
+
+    private final List<InventoryLedger> started = new ArrayList<>();
+
+    private InventoryLedger ledger;
+
+    @BeforeEach
+    void seedStock() throws Exception {
+        sku("TEE&000000&M", 5);
+        sku("TEE&FFFFFF&M", 2);
+        ledger = newLedger();
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        for (InventoryLedger each : started) {
+            each.stop();
+        }
+        skuRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+        try {
+            List<Future<?>> buyers = new ArrayList<>();
+            for (int i = 0; i < BUYERS; i++) {
+                buyers.add(pool.submit(() -> {
+                    start.await();
+                    if (ledger.reserve("TEE&000000&M", 1) >= 0) {
+                        reserved.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> buyer : buyers) {
+                buyer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(5, reserved.get());
+        assertEquals(0, ledger.available("TEE&000000&M"));
+        // not written yet, then written as one row update
+        assertEquals(5, quantityInDb("TEE&000000&M"));
+        assertEquals(1, ledger.flush());
+        assertEquals(0, quantityInDb("TEE&000000&M"));
+        assertEquals(0, ledger.flush());
+    }
+
+    @Test
+    void reserveAllIsAllOrNothing() {
+        SortedMap<String, Integer> order = new TreeMap<>(Map.of("TEE&000000&M", 2, "TEE&FFFFFF&M", 3));
+        assertThrows(RuntimeException.class, () -> ledger.reserveAll(order));
+        assertEquals(5, ledger.available("TEE&000000&M"));
+        assertEquals(2, ledger.available("TEE&FFFFFF&M"));
+
+        order.put("TEE&FFFFFF&M", 2);
+        assertEquals(Map.of("TEE&000000&M", 3, "TEE&FFFFFF&M", 0), ledger.reserveAll(order));
+        assertEquals(-1, ledger.reserve("NO-SUCH&000000&M", 1));
+        assertEquals(0, ledger.available("NO-SUCH&000000&M"));
+    }
+
+    @Test
+    void variantsAreListedPerProduct() {
+        ledger.reserve("TEE&000000&M", 1);
+        assertEquals(Map.of("TEE&000000&M", 4, "TEE&FFFFFF&M", 2), ledger.variants("TEE"));
+        assertTrue(ledger.variants("TE").isEmpty());
+    }
+
+    @Test
+    void rollbackGivesReservationsBack() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertEquals(3, ledger.reserve("TEE&000000&M", 2));
+            status.setRollbackOnly();
+        });
+        assertEquals(5, ledger.available("TEE&000000&M"));
+
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> ledger.reserve("TEE&000000&M", 2));
+        assertEquals(3, ledger.available("TEE&000000&M"));
+    }
+
+    @Test
+    void restocksDuringAReservationDoNotOversell() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertEquals(3, ledger.reserve("TEE&000000&M", 2));
+            // an admin restock commits while the order is still open
+            CompletableFuture.runAsync(() -> ledger.set("TEE&000000&M", 10)).join();
+            assertEquals(8, ledger.available("TEE&000000&M"));
+            status.setRollbackOnly();
+        });
+        assertEquals(10, ledger.available("TEE&000000&M"));
+        assertEquals(10, ledger.committed("TEE&000000&M"));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ledger.reserve("TEE&000000&M", 4);
+            CompletableFuture.runAsync(() -> ledger.set("TEE&000000&M", 12)).join();
+        });
+        assertEquals(8, ledger.available("TEE&000000&M"));
+        assertEquals(8, ledger.committed("TEE&000000&M"));
+    }
+
+    @Test
+    void uncommittedReservationsAreNotJournaled() throws Exception {
+        Path journal = journalDir.resolve("journal.log");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ledger.reserve("TEE&000000&M", 2);
+            assertEquals("", read(journal));
+        });
+        assertEquals("TEE&000000&M\t3\n", Files.readString(journal));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ledger.reserve("TEE&000000&M", 3);
+            // crash before commit: the restart must not see this reservation
+            assertEquals("TEE&000000&M\t3\n", read(journal));
+            status.setRollbackOnly();
+        });
+        assertEquals(3, ledger.available("TEE&000000&M"));
+
+        InventoryLedger restarted = newLedger();
+        assertEquals(3, quantityInDb("TEE&000000&M"));
+        assertEquals(3, restarted.available("TEE&000000&M"));
+    }
+
+    @Test
+    void journalIsReplayedAfterACrash() throws Exception {
+        ledger.reserve("TEE&000000&M", 1);
+        ledger.flush();
+        ledger.reserve("TEE&000000&M", 2);
+        ledger.reserve("TEE&FFFFFF&M", 1);
+        assertEquals(4, quantityInDb("TEE&000000&M"));
+
+        // crash: no flush, no stop; a torn line was being written
+        Files.writeString(journalDir.resolve("journal.log"), "TEE&FFFFFF&M\t9",
+                java.nio.file.StandardOpenOption.APPEND);
+
+        InventoryLedger restarted = newLedger();
+        assertEquals(2, quantityInDb("TEE&000000&M"));
+        assertEquals(1, quantityInDb("TEE&FFFFFF&M"));
+        assertEquals(2, restarted.available("TEE&000000&M"));
+        assertEquals(1, restarted.available("TEE&FFFFFF&M"));
+        assertEquals(0, Files.size(journalDir.resolve("journal.log")));
+    }
+
+    private InventoryLedger newLedger() throws Exception {
+        InventoryLedger newLedger = new InventoryLedger(jdbcTemplate, transactionManager, true,
+                journalDir.resolve("journal.log").toString());
+        newLedger.start();
+        started.add(newLedger);
+        return newLedger;
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int quantityInDb(String sku) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM sku WHERE sku = ?", Integer.class, sku);
+    }
+
+    private void sku(String code, int quantity) {
+        Sku sku = new Sku();
+        sku.setSku(code);
+        sku.setQuantity(quantity);
+        skuRepository.save(sku);
+    }
+}
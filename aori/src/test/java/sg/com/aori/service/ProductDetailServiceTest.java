@@ -0,0 +1,172 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sg.com.aori.dto.ProductDetailDTO;
+import sg.com.aori.dto.SkuMatrixDTO;
+import sg.com.aori.model.*;
+import sg.com.aori.repository.*;
+
+/**
+ * Checks the aggregate product detail: the stock matrix from one SKU prefix
+ * query, rating figures and approved reviews from one review query, and the
+ * wishlist flag.
+ *
+ * The detail is loaded on worker threads, so the data is committed rather
+ * than kept in a rolled-back test transaction.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Stock matrix lookups; reads never create SKUs
+ */
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ ProductDetailService.class, SkuService.class, InventoryLedger.class, CRUDProductService.class,
+        CategoryRegistry.class })
+class ProductDetailServiceTest {
+
+    @Autowired
+    private ProductDetailService detailService;
+
+    @Autowired
+    private SkuService skuService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SkuRepository skuRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ProductReviewRepository reviewRepository;
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    private Product shirt;
+
+    private Customer customer;
+
+    @BeforeEach
+    void seedCatalog() {
+        Category tops = new Category(null, "TOPS", "Tops", Category.BroadCategory.Unisex);
+        tops.setSlug("tops");
+        tops = categoryRepository.save(tops);
+
+        shirt = new Product("Linen Shirt", tops.getCategoryId());
+        shirt.setProductCode("LINEN-SHIRT");
+        shirt.setCollection("Essentials");
+        shirt.setColors("[\"#F5F5F0\", \"#0A2540\"]");
+        shirt.setSize("[\"S\", \"M\", \"L\"]");
+        shirt.setPrice(BigDecimal.valueOf(89));
+        shirt = productRepository.save(shirt);
+
+        sku("LINEN-SHIRT&f5f5f0&M", 4);
+        sku("LINEN-SHIRT&0a2540&S", 2);
+        // a colour the product no longer declares still shows its stock
+        sku("LINEN-SHIRT&252524&L", 1);
+        // a product whose code shares the prefix is not included
+        sku("LINEN-SHIRT-2&f5f5f0&M", 9);
+
+        customer = new Customer();
+        customer.setCustomerId(UUID.randomUUID().toString());
+        customer.setFirstName("Mei");
+        customer.setLastName("Tan");
+        customer.setEmail(customer.getCustomerId() + "@aori.test");
+        customer.setPassword("Password123!");
+        customer = customerRepository.save(customer);
+
+        review(5, ProductReview.ReviewStatus.Approved);
+        review(3, ProductReview.ReviewStatus.Approved);
+        review(1, ProductReview.ReviewStatus.Pending);
+        wishlistRepository.save(new Wishlist(customer.getCustomerId(), shirt.getProductId()));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        wishlistRepository.deleteAll();
+        reviewRepository.deleteAll();
+        customerRepository.deleteAll();
+        skuRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void detailGathersEveryPart() {
+        ProductDetailDTO detail = detailService.getDetail(shirt.getProductId(), customer.getCustomerId())
+                .orElseThrow();
+
+        assertEquals("Linen Shirt", detail.getProduct().getProductName());
+        assertEquals("tops", detail.getProduct().getCategory().getSlug());
+
+        SkuMatrixDTO stock = detail.getStock();
+        assertEquals(List.of("F5F5F0", "0A2540", "252524"), stock.getColors());
+        assertEquals(List.of("S", "M", "L"), stock.getSizes());
+        assertArrayEquals(new int[] { 0, 4, 0 }, stock.getQuantities()[0]);
+        assertArrayEquals(new int[] { 2, 0, 0 }, stock.getQuantities()[1]);
+        assertArrayEquals(new int[] { 0, 0, 1 }, stock.getQuantities()[2]);
+        assertEquals(7, stock.getTotal());
+
+        assertEquals(3.0, detail.getAverageRating(), 1e-9);
+        assertEquals(1L, detail.getRatingBuckets().get(5));
+        assertEquals(0L, detail.getRatingBuckets().get(4));
+        assertEquals(2, detail.getReviews().size());
+        assertEquals("Mei Tan", detail.getReviews().get(0).get("customerName"));
+        assertTrue(detail.getWishlisted());
+    }
+
+    @Test
+    void anonymousAndMissing() {
+        assertNull(detailService.getDetail(shirt.getProductId(), null).orElseThrow().getWishlisted());
+        assertFalse(detailService.getDetail(shirt.getProductId(), UUID.randomUUID().toString()).orElseThrow()
+                .getWishlisted());
+        assertTrue(detailService.getDetail(UUID.randomUUID().toString(), null).isEmpty());
+    }
+
+    @Test
+    void stockReadsNeverWrite() {
+        long skus = skuRepository.count();
+
+        assertEquals(0, skuService.getQuantity("LINEN-SHIRT&f5f5f0&XL"));
+        assertEquals(4, skuService.getQuantity("LINEN-SHIRT&f5f5f0&M"));
+        SkuMatrixDTO stock = skuService.getStockMatrix(shirt);
+        assertEquals(4, stock.quantityOf("#f5f5f0", "m"));
+        assertEquals(0, stock.quantityOf("#F5F5F0", "XL"));
+        assertEquals(skus, skuRepository.count());
+    }
+
+    private void sku(String code, int quantity) {
+        Sku sku = new Sku();
+        sku.setSku(code);
+        sku.setQuantity(quantity);
+        skuRepository.save(sku);
+    }
+
+    private void review(int rating, ProductReview.ReviewStatus status) {
+        ProductReview review = new ProductReview(shirt.getProductId(), customer.getCustomerId(), rating, "Nice",
+                status);
+        review.setCreatedAt(java.time.LocalDateTime.now());
+        reviewRepository.save(review);
+    }
+}
@@ -0,0 +1,181 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import jakarta.persistence.EntityManagerFactory;
+import sg.com.aori.model.*;
+
+/**
+ * Checks that cart and view-history recommendations issue a fixed number of
+ * SQL statements per call, however long the customer's history is.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true" })
+@Import({ ProductRecommendationService.class, ProductCategoryIndex.class, PurchaseHistoryCache.class,
+        CoPurchaseIndex.class, PopularityIndex.class, SimilarProductIndex.class, CategoryRegistry.class })
+class ProductRecommendationServiceTest {
+
+    private static final int CATEGORIES = 3;
+    private static final int PRODUCTS_PER_CATEGORY = 100;
+    private static final int LIMIT = 10;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private ProductRecommendationService recommendationService;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    @Autowired
+    private PopularityIndex popularityIndex;
+
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void seedCatalog() {
+        for (int c = 0; c < CATEGORIES; c++) {
+            Category category = new Category(null, "CAT-" + c, "Category " + c, Category.BroadCategory.Unisex);
+            category.setSlug("category-" + c);
+            em.persist(category);
+
+            for (int i = 0; i < PRODUCTS_PER_CATEGORY; i++) {
+                Product product = new Product("Product " + c + "-" + i, category.getCategoryId());
+                product.setProductCode("P-" + c + "-" + i);
+                product.setCollection("Test Collection");
+                product.setColors("[\"#000000\"]");
+                product.setPrice(BigDecimal.valueOf(100 + i));
+                product.setStockQuantity(10);
+                product.setRating((i % 50) / 10f);
+                em.persist(product);
+                products.add(product);
+            }
+        }
+        em.flush();
+        categoryIndex.refresh();
+    }
+
+    @Test
+    void viewHistoryRecommendations_statementCountDoesNotGrowWithHistory() {
+        String shortHistory = seedViews(10);
+        String longHistory = seedViews(200);
+
+        long shortCount = countStatements(
+                () -> recommendationService.getRecommendationsFromViewHistory(shortHistory, LIMIT));
+        long longCount = countStatements(
+                () -> recommendationService.getRecommendationsFromViewHistory(longHistory, LIMIT));
+
+        assertEquals(shortCount, longCount);
+        assertTrue(longCount <= 2, "expected at most 2 statements, got " + longCount);
+    }
+
+    @Test
+    void cartRecommendations_statementCountDoesNotGrowWithCart() {
+        String smallCart = seedCart(2);
+        String largeCart = seedCart(40);
+
+        long smallCount = countStatements(
+                () -> recommendationService.getRecommendationsFromCart(smallCart, LIMIT));
+        long largeCount = countStatements(
+                () -> recommendationService.getRecommendationsFromCart(largeCart, LIMIT));
+
+        assertEquals(smallCount, largeCount);
+        assertTrue(largeCount <= 2, "expected at most 2 statements, got " + largeCount);
+    }
+
+    @Test
+    void viewHistoryRecommendations_excludeRecentlyViewedProducts() {
+        String customerId = seedViews(20);
+        Set<String> viewed = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            viewed.add(products.get(i).getProductId());
+        }
+
+        List<Product> recommendations = recommendationService.getRecommendationsFromViewHistory(customerId, LIMIT);
+
+        assertEquals(LIMIT, recommendations.size());
+        recommendations.forEach(p -> assertFalse(viewed.contains(p.getProductId())));
+    }
+
+    @Test
+    void popularProducts_recentViewsOutrankRating() {
+        Product unrated = products.get(0);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 200; i++) {
+            ViewHistory view = new ViewHistory(UUID.randomUUID().toString(), unrated.getProductId());
+            view.setTimestamp(now - i * 60_000L);
+            em.persist(view);
+        }
+        em.flush();
+        popularityIndex.refresh();
+
+        List<Product> popular = recommendationService.getPopularProducts(5);
+
+        assertEquals(5, popular.size());
+        assertEquals(unrated.getProductId(), popular.get(0).getProductId());
+    }
+
+    private String seedViews(int count) {
+        String customerId = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            ViewHistory view = new ViewHistory(customerId, products.get(i % products.size()).getProductId());
+            view.setTimestamp(now - i * 1000L);
+            em.persist(view);
+        }
+        em.flush();
+        return customerId;
+    }
+
+    private String seedCart(int count) {
+        Customer customer = new Customer();
+        customer.setCustomerId(UUID.randomUUID().toString());
+        customer.setFirstName("Test");
+        customer.setLastName("Customer");
+        customer.setEmail(customer.getCustomerId() + "@aori.test");
+        customer.setPassword("Password123!");
+        em.persist(customer);
+
+        for (int i = 0; i < count; i++) {
+            Product product = products.get(i * 7 % products.size());
+            ShoppingCart item = new ShoppingCart();
+            item.setCustomerId(customer.getCustomerId());
+            item.setProductId(product.getProductId());
+            item.setSku(product.getProductCode() + "&000000&M");
+            item.setQuantity(1);
+            em.persist(item);
+        }
+        em.flush();
+        return customer.getCustomerId();
+    }
+
+    private long countStatements(Runnable call) {
+        em.clear();
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        call.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,384 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import sg.com.aori.dto.ProductSearchResultDTO;
+import sg.com.aori.event.CategoryChangedEvent;
+import sg.com.aori.event.ProductChangedEvent;
+import sg.com.aori.event.SkuChangedEvent;
+import sg.com.aori.model.*;
+import sg.com.aori.repository.SearchStatRepository;
+import sg.com.aori.utils.SpaceSaving;
+
+/**
+ * Checks index-backed product search: ranking, prefix matching, every term
+ * required, the category/color/size/price filters and their facet counts.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Facet counts
+ * @version 1.2 - Cursor paging
+ * @version 1.3 - Typo tolerance
+ * @version 1.4 - Result cache
+ * @version 1.5 - Category filter by ID
+ * @version 1.6 - Colour and size filters from SKU stock
+ * @version 1.7 - Stage timings
+ * @version 1.8 - Search analytics
+ * @version 1.9 - Cached pages are hydrated per request; stock changes keep
+ *          them
+ * @version 2.0 - Category renames
+ */
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({ ProductSearchService.class, ProductSearchIndex.class, ProductCategoryIndex.class,
+        SearchResultCache.class, CatalogVersion.class, CategoryRegistry.class, SkuAttributeIndex.class,
+        SearchMetrics.class, SearchAnalytics.class })
+class ProductSearchServiceTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ProductSearchService searchService;
+
+    @Autowired
+    private ProductCategoryIndex categoryIndex;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private SearchResultCache resultCache;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
+    @Autowired
+    private SkuAttributeIndex skuIndex;
+
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    @Autowired
+    private SearchAnalytics searchAnalytics;
+
+    @Autowired
+    private SearchStatRepository searchStatRepository;
+
+    private Product linenShirt;
+    private Product linenHoodie;
+    private Product woolHoodie;
+
+    @BeforeEach
+    void seedCatalog() {
+        Category tops = new Category(null, "TOPS", "Tops", Category.BroadCategory.Unisex);
+        tops.setSlug("tops");
+        em.persist(tops);
+        Category outerwear = new Category(null, "OUTER", "Outerwear", Category.BroadCategory.Unisex);
+        outerwear.setSlug("outerwear");
+        em.persist(outerwear);
+
+        linenShirt = product("Linen Shirt", tops, "Linen", "[\"#f5f5f0\"]", "[\"S\",\"M\"]", 89);
+        linenHoodie = product("Relaxed Hoodie", outerwear, "Linen", "[\"#0a2540\"]", "[\"M\",\"L\"]", 149);
+        woolHoodie = product("Wool Hoodie", outerwear, "Wool", "[\"#252524\"]", "[\"L\"]", 199);
+        product("Cotton Trousers", tops, "Cotton", "[\"#a1947f\"]", "[\"M\"]", 120);
+        em.flush();
+        em.clear();
+        categoryIndex.refresh();
+        searchIndex.rebuild();
+        categoryRegistry.refresh();
+        skuIndex.refresh();
+        resultCache.clear();
+    }
+
+    @Test
+    void nameMatchesOutrankDescriptionMatches() {
+        ProductSearchResultDTO results = searchService.search("linen", null, null, null, null, null, null, 50);
+
+        assertEquals(List.of(linenShirt.getProductId(), linenHoodie.getProductId()), ids(results));
+    }
+
+    @Test
+    void prefixAndPluralMatch() {
+        assertEquals(Set.of(linenHoodie.getProductId(), woolHoodie.getProductId()),
+                new HashSet<>(ids(searchService.search("hood", null, null, null, null, null, null, 50))));
+        assertEquals(2,
+                searchService.search("hoodies", null, null, null, null, null, null, 50).getItems().size());
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        assertEquals(List.of(woolHoodie.getProductId()),
+                ids(searchService.search("wool hoodie", null, null, null, null, null, null, 50)));
+        assertTrue(
+                searchService.search("wool shirt", null, null, null, null, null, null, 50).getItems().isEmpty());
+    }
+
+    @Test
+    void typosAreCorrected() {
+        assertEquals(Set.of(linenHoodie.getProductId(), woolHoodie.getProductId()),
+                new HashSet<>(ids(searchService.search("hoody", null, null, null, null, null, null, 50))));
+        assertEquals(List.of(linenShirt.getProductId()),
+                ids(searchService.search("lnen shrit", null, null, null, null, null, null, 50)));
+        assertTrue(searchService.search("xyzzy", null, null, null, null, null, null, 50).getItems().isEmpty());
+    }
+
+    @Test
+    void filtersApplyToIndexedProducts() {
+        assertEquals(List.of(linenHoodie.getProductId()),
+                ids(searchService.search("hoodie navy", null, null, null, null, null, null, 50)));
+        assertEquals(List.of(woolHoodie.getProductId()),
+                ids(searchService.search("hoodie", null, null, "l", new BigDecimal("150"), null, null, 50)));
+        assertEquals(List.of(linenShirt.getProductId()),
+                ids(searchService.search("linen", "tops", null, null, null, null, null, 50)));
+        assertEquals(List.of(linenShirt.getProductId()),
+                ids(searchService.search("linen", linenShirt.getCategoryId(), null, null, null, null, null, 50)));
+    }
+
+    @Test
+    void variantFiltersUseSkuStock() {
+        sku("WOOL-HOODIE&252524&L", 0);
+        sku("WOOL-HOODIE&0a2540&M", 3);
+        em.flush();
+        skuIndex.refresh();
+
+        // the wool hoodie's declared black is sold out, but it has a navy M in stock
+        assertEquals(Set.of(linenHoodie.getProductId(), woolHoodie.getProductId()),
+                new HashSet<>(ids(searchService.search("hoodie", null, "navy", null, null, null, null, 50))));
+        assertEquals(Set.of(linenHoodie.getProductId(), woolHoodie.getProductId()),
+                new HashSet<>(ids(searchService.search("hoodie", null, "#0A2540", "m", null, null, null, 50))));
+        assertTrue(searchService.search("hoodie", null, "black", null, null, null, null, 50).getItems().isEmpty());
+        assertEquals(List.of(linenHoodie.getProductId()),
+                ids(searchService.search("hoodie", null, null, "L", null, null, null, 50)));
+
+        SkuChangedEvent restocked = new SkuChangedEvent("WOOL-HOODIE&252524&L", 2);
+        skuIndex.onSkuChanged(restocked);
+        catalogVersion.onSkuChanged(restocked);
+        assertEquals(List.of(woolHoodie.getProductId()),
+                ids(searchService.search("hoodie", null, "black", "l", null, null, null, 50)));
+        assertEquals(2, skuIndex.getQuantity(woolHoodie.getProductId(), "#252524", "L"));
+    }
+
+    @Test
+    void facetsCountTheWholeResultSet() {
+        Map<String, Map<String, Integer>> facets = searchService.search("", null, null, null, null, null, null, 50)
+                .getFacets();
+
+        assertEquals(Map.of("Tops", 2, "Outerwear", 2), facets.get("category"));
+        assertEquals(Map.of("M", 3, "L", 2, "S", 1), facets.get("size"));
+        assertEquals(Map.of("50-100", 1, "100-200", 3), facets.get("price"));
+        assertEquals(4, facets.get("color").size());
+
+        Map<String, Map<String, Integer>> hoodieFacets = searchService
+                .search("hoodie", null, null, null, null, null, null, 50).getFacets();
+        assertEquals(Map.of("Outerwear", 2), hoodieFacets.get("category"));
+        assertEquals(Map.of("L", 2, "M", 1), hoodieFacets.get("size"));
+        assertEquals(List.of("L", "M"), new ArrayList<>(hoodieFacets.get("size").keySet()));
+    }
+
+    @Test
+    void cursorWalksEveryPageOnce() {
+        for (String query : List.of("", "made")) {
+            List<String> all = ids(searchService.search(query, null, null, null, null, null, null, 50));
+            assertEquals(4, all.size());
+
+            List<String> walked = new ArrayList<>();
+            String cursor = null;
+            do {
+                ProductSearchResultDTO page = searchService.search(query, null, null, null, null, null, cursor, 3);
+                assertEquals(4, page.getTotal());
+                walked.addAll(ids(page));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(all, walked);
+        }
+    }
+
+    @Test
+    void productUpdatesAreIndexed() {
+        Product renamed = em.find(Product.class, woolHoodie.getProductId());
+        renamed.setProductName("Wool Cardigan");
+        em.flush();
+        em.clear();
+        categoryIndex.refresh();
+        searchIndex.onProductChanged(ProductChangedEvent.saved(renamed.getProductId()));
+
+        assertEquals(List.of(linenHoodie.getProductId()),
+                ids(searchService.search("hoodie", null, null, null, null, null, null, 50)));
+        assertEquals(List.of(woolHoodie.getProductId()),
+                ids(searchService.search("cardigan", null, null, null, null, null, null, 50)));
+    }
+
+    @Test
+    void equivalentQueriesShareACachedResult() {
+        long hits = (Long) resultCache.getStats().get("hits");
+        ProductSearchResultDTO first = searchService.search("Linen  Hoodie", null, "Gray", null,
+                new BigDecimal("50.00"), null, null, 50);
+
+        assertEquals(ids(first), ids(searchService.search("hoodie linen", null, "grey", null,
+                new BigDecimal("50"), null, null, 50)));
+        assertEquals(hits + 1, resultCache.getStats().get("hits"));
+        searchService.search("hoodie linen", null, "grey", null, null, null, null, 50);
+        assertEquals(hits + 1, resultCache.getStats().get("hits"));
+    }
+
+    @Test
+    void stagesAreTimedAndCacheHitsSkipTheQuery() {
+        SearchMetrics.Trace miss = searchMetrics.start();
+        searchService.search("linen shirt", "tops", null, null, null, null, null, 50, miss);
+
+        assertFalse(miss.isCacheHit());
+        assertTrue(miss.getNanos(SearchMetrics.Stage.PARSE) > 0);
+        assertTrue(miss.getNanos(SearchMetrics.Stage.CATEGORY) > 0);
+        assertTrue(miss.getNanos(SearchMetrics.Stage.QUERY) > 0);
+        assertTrue(miss.getNanos(SearchMetrics.Stage.HYDRATE) > 0);
+
+        SearchMetrics.Trace hit = searchMetrics.start();
+        searchService.search("shirt linen", "tops", null, null, null, null, null, 50, hit);
+
+        assertTrue(hit.isCacheHit());
+        assertEquals(0, hit.getNanos(SearchMetrics.Stage.QUERY));
+        // cached pages hold IDs, so hits still load the products
+        assertTrue(hit.getNanos(SearchMetrics.Stage.HYDRATE) > 0);
+    }
+
+    @Test
+    void analyticsCountFirstPagesAndFlushRollups() {
+        // start from an empty window; the bean outlives each test
+        searchAnalytics.flush();
+        searchStatRepository.deleteAll();
+
+        searchService.search("Qqzzx", null, null, null, null, null, null, 50);
+        searchService.search("qqzzx ", null, null, null, null, null, null, 50);
+        ProductSearchResultDTO first = searchService.search("made", null, null, null, null, null, null, 2);
+        searchService.search("made", null, null, null, null, null, first.getNextCursor(), 2);
+
+        searchAnalytics.flush();
+
+        SpaceSaving.Counter zero = searchAnalytics.getZeroResultQueries(200).stream()
+                .filter(c -> c.getItem().equals("qqzzx")).findFirst().orElseThrow();
+        assertEquals(2, zero.getCount());
+
+        List<SearchStat> rows = searchStatRepository.findAll();
+        SearchStat total = rows.stream().filter(r -> r.getKind() == SearchStat.Kind.TOTAL).findFirst()
+                .orElseThrow();
+        assertEquals(3, total.getSearches());
+        assertEquals(2, total.getZeroResults());
+        assertTrue(rows.stream().anyMatch(r -> r.getKind() == SearchStat.Kind.TOP && r.getQuery().equals("made")
+                && r.getSearches() == 1));
+        assertEquals(List.of("qqzzx", "made"), searchAnalytics.getPrewarmQueries(5));
+    }
+
+    @Test
+    void catalogChangesInvalidateCachedResults() {
+        long invalidations = (Long) resultCache.getStats().get("invalidations");
+        ProductSearchResultDTO before = searchService.search("hoodie", null, null, null, null, null, null, 50);
+        assertEquals(2, before.getTotal());
+
+        Product renamed = em.find(Product.class, woolHoodie.getProductId());
+        renamed.setProductName("Wool Cardigan");
+        em.flush();
+        em.clear();
+        categoryIndex.refresh();
+        searchIndex.onProductChanged(ProductChangedEvent.saved(renamed.getProductId()));
+
+        assertEquals(List.of(linenHoodie.getProductId()),
+                ids(searchService.search("hoodie", null, null, null, null, null, null, 50)));
+        assertEquals(invalidations + 1, resultCache.getStats().get("invalidations"));
+    }
+
+    @Test
+    void stockChangesKeepCachedResults() {
+        searchService.search("hoodie", null, null, null, null, null, null, 50);
+        long version = catalogVersion.current();
+        long hits = (Long) resultCache.getStats().get("hits");
+
+        // an update of the stock column alone, as SkuService makes it
+        em.getEntityManager().createQuery("update Product p set p.stockQuantity = 3 where p.productId = :id")
+                .setParameter("id", woolHoodie.getProductId()).executeUpdate();
+        em.clear();
+        categoryIndex.refresh();
+        searchIndex.onProductChanged(ProductChangedEvent.saved(woolHoodie.getProductId()));
+        SkuChangedEvent sold = new SkuChangedEvent("WOOL-HOODIE&252524&L", 4, -1);
+        skuIndex.onSkuChanged(sold);
+        catalogVersion.onSkuChanged(sold);
+
+        assertEquals(version, catalogVersion.current());
+        ProductSearchResultDTO after = searchService.search("hoodie", null, null, null, null, null, null, 50);
+        assertEquals(hits + 1, resultCache.getStats().get("hits"));
+        // the cached page is hydrated with the current stock
+        assertEquals(3, after.getItems().stream()
+                .filter(p -> p.getProductId().equals(woolHoodie.getProductId()))
+                .findFirst().orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void categoryRenamesAreReKeyed() {
+        searchService.search("hoodie", null, null, null, null, null, null, 50);
+        String outerwearId = linenHoodie.getCategoryId();
+        em.getEntityManager().createQuery("update Category c set c.categoryName = 'Jackets' where c.categoryId = :id")
+                .setParameter("id", outerwearId).executeUpdate();
+        em.clear();
+        CategoryChangedEvent event = CategoryChangedEvent.saved(outerwearId);
+        categoryRegistry.onCategoryChanged(event);
+        categoryIndex.onCategoryChanged(event);
+        searchIndex.onCategoryChanged(event);
+        catalogVersion.onCategoryChanged(event);
+
+        Set<String> hoodies = Set.of(linenHoodie.getProductId(), woolHoodie.getProductId());
+        assertEquals(Map.of("Jackets", 2),
+                searchService.search("hoodie", null, null, null, null, null, null, 50).getFacets().get("category"));
+        assertEquals(hoodies, new HashSet<>(ids(searchService.search("jackets", null, null, null, null, null,
+                null, 50))));
+        assertEquals(hoodies, new HashSet<>(ids(searchService.search("", "outerwear", null, null, null, null,
+                null, 50))));
+        assertEquals(hoodies, new HashSet<>(ids(searchService.search("", "Jackets", null, null, null, null,
+                null, 50))));
+        assertTrue(searchService.search("outerwear", null, null, null, null, null, null, 50).getItems().isEmpty());
+    }
+
+    private Product product(String name, Category category, String material, String colors, String sizes,
+            int price) {
+        Product product = new Product(name, category.getCategoryId());
+        product.setProductCode(name.toUpperCase(Locale.ROOT).replace(' ', '-'));
+        product.setCollection("Essentials");
+        product.setMaterial(material);
+        product.setDescription("Made from " + material.toLowerCase(Locale.ROOT));
+        product.setColors(colors);
+        product.setSize(sizes);
+        product.setPrice(BigDecimal.valueOf(price));
+        product.setStockQuantity(10);
+        em.persist(product);
+        return product;
+    }
+
+    private void sku(String code, int quantity) {
+        Sku sku = new Sku();
+        sku.setSku(code);
+        sku.setQuantity(quantity);
+        em.persist(sku);
+    }
+
+    private static List<String> ids(ProductSearchResultDTO result) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : result.getItems()) {
+            ids.add(product.getProductId());
+        }
+        return ids;
+    }
+}
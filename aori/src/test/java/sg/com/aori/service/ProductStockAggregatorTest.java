@@ -0,0 +1,139 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import sg.com.aori.event.SkuChangedEvent;
+import sg.com.aori.model.Category;
+import sg.com.aori.model.Product;
+import sg.com.aori.model.Sku;
+
+/**
+ * Checks that SKU deltas are coalesced per product and written in one flush,
+ * and that reconciliation corrects drifted stock totals without counting a
+ * delta that arrives while it runs twice.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Delta arriving during reconciliation
+ */
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(ProductStockAggregatorTest.RacingAggregator.class)
+class ProductStockAggregatorTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ProductStockAggregator aggregator;
+
+    private Product shirt;
+
+    private Product hoodie;
+
+    @BeforeEach
+    void seedCatalog() {
+        aggregator.flush();
+        Category tops = new Category(null, "TOPS", "Tops", Category.BroadCategory.Unisex);
+        em.persist(tops);
+        shirt = product("SHIRT", tops, 5);
+        hoodie = product("HOODIE", tops, 7);
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void deltasAreCoalescedPerProduct() {
+        aggregator.onSkuChanged(new SkuChangedEvent("SHIRT&000000&M", 4, -1));
+        aggregator.onSkuChanged(new SkuChangedEvent("SHIRT&000000&L", 2, -2));
+        aggregator.onSkuChanged(new SkuChangedEvent("SHIRT&FFFFFF&M", 10, 10));
+        aggregator.onSkuChanged(new SkuChangedEvent("HOODIE&000000&M", 3, 0));
+
+        assertEquals(1, aggregator.getPendingCount());
+        assertEquals(1, aggregator.flush());
+        assertEquals(0, aggregator.getPendingCount());
+
+        em.clear();
+        assertEquals(12, em.find(Product.class, shirt.getProductId()).getStockQuantity());
+        assertEquals(7, em.find(Product.class, hoodie.getProductId()).getStockQuantity());
+    }
+
+    @Test
+    void reconcileRecomputesProductsWithSkus() {
+        sku("SHIRT&000000&M", 3);
+        sku("SHIRT&000000&L", 4);
+        em.flush();
+
+        assertEquals(1, aggregator.reconcile());
+        assertEquals(0, aggregator.reconcile());
+
+        em.clear();
+        assertEquals(7, em.find(Product.class, shirt.getProductId()).getStockQuantity());
+        // no SKUs: left as is
+        assertEquals(7, em.find(Product.class, hoodie.getProductId()).getStockQuantity());
+    }
+
+    @Test
+    void reconcileLeavesProductsChangedMeanwhile() {
+        sku("SHIRT&000000&M", 3);
+        sku("SHIRT&000000&L", 4);
+        em.flush();
+        assertEquals(1, aggregator.reconcile());
+
+        // a checkout commits before the totals are read, its event lands after
+        em.getEntityManager().createQuery("UPDATE Sku s SET s.quantity = 1 WHERE s.sku = 'SHIRT&000000&M'")
+                .executeUpdate();
+        ((RacingAggregator) aggregator).duringSum = () -> aggregator
+                .onSkuChanged(new SkuChangedEvent("SHIRT&000000&M", 1, -2));
+
+        assertEquals(0, aggregator.reconcile());
+        aggregator.flush();
+
+        em.clear();
+        assertEquals(5, em.find(Product.class, shirt.getProductId()).getStockQuantity());
+    }
+
+    static class RacingAggregator extends ProductStockAggregator {
+
+        Runnable duringSum;
+
+        @Override
+        Map<String, Integer> sumSkuQuantities() {
+            Map<String, Integer> totals = super.sumSkuQuantities();
+            if (duringSum != null) {
+                duringSum.run();
+                duringSum = null;
+            }
+            return totals;
+        }
+    }
+
+    private Product product(String code, Category category, int stock) {
+        Product product = new Product(code, category.getCategoryId());
+        product.setProductCode(code);
+        product.setCollection("Essentials");
+        product.setColors("[\"#000000\"]");
+        product.setPrice(BigDecimal.valueOf(100));
+        product.setStockQuantity(stock);
+        em.persist(product);
+        return product;
+    }
+
+    private void sku(String code, int quantity) {
+        Sku sku = new Sku();
+        sku.setSku(code);
+        sku.setQuantity(quantity);
+        em.persist(sku);
+    }
+}
@@ -0,0 +1,147 @@
+package sg.com.aori.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import sg.com.aori.model.Sku;
+import sg.com.aori.repository.SkuRepository;
+
+/**
+ * Checks that SKU reservations never oversell: hundreds of concurrent buyers
+ * of the last few items, and all-or-nothing multi-SKU reservations.
+ *
+ * Each reservation runs in its own committed transaction, as in production,
+ * so the test itself is not transactional.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ * @version 1.1 - Batch update counts reported as SUCCESS_NO_INFO
+ */
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ SkuService.class, InventoryLedger.class, CRUDProductService.class, CategoryRegistry.class })
+class SkuReservationTest {
+
+    private static final int BUYERS = 300;
+
+    @Autowired
+    private SkuService skuService;
+
+    @Autowired
+    private SkuRepository skuRepository;
+
+    @MockitoSpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedStock() {
+        sku("TEE&000000&M", 5);
+        sku("TEE&FFFFFF&M", 2);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        skuRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentBuyersNeverOversell() throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Throwable> unexpected = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+        try {
+            List<Future<?>> buyers = new ArrayList<>();
+            for (int i = 0; i < BUYERS; i++) {
+                boolean batch = i % 2 == 0;
+                buyers.add(pool.submit(() -> {
+                    start.await();
+                    if (batch) {
+                        try {
+                            skuService.reserve(Map.of("TEE&000000&M", 1));
+                            reserved.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            if (e.getMessage() != null && e.getMessage().startsWith("Insufficient inventory")) {
+                                rejected.incrementAndGet();
+                            } else {
+                                unexpected.add(e);
+                            }
+                        }
+                    } else if (skuService.decreaseQuantity("TEE&000000&M", 1) >= 0) {
+                        reserved.incrementAndGet();
+                    } else {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> buyer : buyers) {
+                buyer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), unexpected.toString());
+        assertEquals(5, reserved.get());
+        assertEquals(BUYERS - 5, rejected.get());
+        assertEquals(0, skuRepository.findById("TEE&000000&M").orElseThrow().getQuantity());
+    }
+
+    @Test
+    void reservationIsAllOrNothing() {
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> skuService.reserve(Map.of("TEE&000000&M", 2, "TEE&FFFFFF&M", 3)));
+
+        assertEquals("Insufficient inventory for SKU: TEE&FFFFFF&M", e.getMessage());
+        assertEquals(5, skuRepository.findById("TEE&000000&M").orElseThrow().getQuantity());
+        assertEquals(2, skuRepository.findById("TEE&FFFFFF&M").orElseThrow().getQuantity());
+
+        Map<String, Integer> remaining = skuService.reserve(Map.of("TEE&000000&M", 2, "TEE&FFFFFF&M", 2));
+        assertEquals(Map.of("TEE&000000&M", 3, "TEE&FFFFFF&M", 0), remaining);
+    }
+
+    @Test
+    void unreportedBatchCountsAreCheckedByTheRead() {
+        doAnswer(invocation -> {
+            int[] counts = (int[]) invocation.callRealMethod();
+            Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+            return counts;
+        }).when(jdbcTemplate).batchUpdate(eq(SkuService.DECREMENT_SQL), anyList());
+
+        assertEquals(Map.of("TEE&000000&M", 4), skuService.reserve(Map.of("TEE&000000&M", 1)));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> skuService.reserve(Map.of("TEE&000000&M", 1, "TEE&MISSING&M", 1)));
+        assertEquals("Insufficient inventory for SKU: TEE&MISSING&M", e.getMessage());
+    }
+
+    private void sku(String code, int quantity) {
+        Sku sku = new Sku();
+        sku.setSku(code);
+        sku.setQuantity(quantity);
+        skuRepository.save(sku);
+    }
+}
@@ -0,0 +1,65 @@
+package sg.com.aori.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the heavy-hitters sketch against exact counts of a skewed stream.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+class SpaceSavingTest {
+
+    @Test
+    void heavyHittersAreKeptWithinTheErrorBound() {
+        Random random = new Random(11);
+        SpaceSaving sketch = new SpaceSaving(50);
+        Map<String, Long> exact = new HashMap<>();
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            // Zipf-like: item k with probability proportional to 1 / (k + 1)
+            int item = (int) Math.floor(Math.pow(2000, random.nextDouble())) - 1;
+            String key = "q" + item;
+            sketch.offer(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        // every item seen more than n / capacity times must be held
+        long bound = n / 50;
+        List<String> held = sketch.top(50).stream().map(SpaceSaving.Counter::getItem).toList();
+        List<String> frequent = exact.entrySet().stream()
+                .filter(e -> e.getValue() > bound)
+                .map(Map.Entry::getKey)
+                .toList();
+        assertFalse(frequent.isEmpty());
+        assertTrue(held.containsAll(frequent), frequent.toString());
+        assertEquals("q0", held.get(0));
+
+        for (SpaceSaving.Counter counter : sketch.top(50)) {
+            long actual = exact.get(counter.getItem());
+            assertTrue(counter.getCount() >= actual, counter.getItem());
+            assertTrue(counter.getCount() - counter.getError() <= actual, counter.getItem());
+            assertTrue(counter.getError() <= bound, counter.getItem());
+        }
+    }
+
+    @Test
+    void smallStreamsAreCountedExactly() {
+        SpaceSaving sketch = new SpaceSaving(4);
+        for (String item : List.of("a", "b", "a", "c", "a", "b")) {
+            sketch.offer(item);
+        }
+
+        assertEquals(3, sketch.estimate("a"));
+        assertEquals(2, sketch.estimate("b"));
+        assertEquals(0, sketch.estimate("z"));
+        assertEquals("a", sketch.top(1).get(0).getItem());
+        assertEquals(0, sketch.top(1).get(0).getError());
+    }
+}
@@ -0,0 +1,65 @@
+package sg.com.aori.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks radix-trie lookups against a brute-force scan of the keys.
+ *
+ * @author Yunhe
+ * @date 2026-10-18
+ * @version 1.0
+ */
+
+class SuggestTrieTest {
+
+    private static final String[] WORDS = { "linen", "line", "lining", "shirt", "shorts", "short", "hoodie",
+            "hood", "wool", "wo", "w", "summer", "sum" };
+
+    @Test
+    void suggestMatchesBruteForce() {
+        Random random = new Random(7);
+        SuggestTrie.Builder<String> builder = new SuggestTrie.Builder<>();
+        List<String> names = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            double weight = random.nextInt(50);
+            int entry = builder.addEntry(name, weight);
+            builder.addKey(entry, name);
+            builder.addKey(entry, name.substring(name.indexOf(' ') + 1));
+            names.add(name);
+            weights.add(weight);
+        }
+        SuggestTrie<String> trie = builder.build(5);
+
+        for (String prefix : List.of("l", "lin", "line", "linen ", "s", "sho", "short", "w", "wo", "wool h",
+                "x", "hoodie w", "summer summer 1")) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                if (name.startsWith(prefix) || name.substring(name.indexOf(' ') + 1).startsWith(prefix)) {
+                    expected.add(i);
+                }
+            }
+            expected.sort((a, b) -> {
+                int cmp = Double.compare(weights.get(b), weights.get(a));
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            });
+            List<String> expectedNames = new ArrayList<>();
+            for (int i = 0; i < Math.min(5, expected.size()); i++) {
+                expectedNames.add(names.get(expected.get(i)));
+            }
+
+            assertEquals(expectedNames, trie.suggest(prefix, 5), prefix);
+        }
+    }
+
+    @Test
+    void emptyTrieSuggestsNothing() {
+        assertTrue(new SuggestTrie.Builder<String>().build(5).suggest("a", 5).isEmpty());
+    }
+}